@@ -1,8 +1,13 @@
 package com.onelostlogician.aws.proxy;
 
 import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
@@ -17,6 +22,8 @@ public class ApiGatewayProxyRequest {
     private Context context;
     private String body;
     private Boolean isBase64Encoded;
+    private long maxDecompressedBodySize = RequestBodies.DEFAULT_MAX_DECOMPRESSED_SIZE;
+    private Map<AttachmentKey<?>, Object> attachments;
 
     public ApiGatewayProxyRequest() {}
 
@@ -56,8 +63,92 @@ public class ApiGatewayProxyRequest {
         return body;
     }
 
+    /**
+     * Returns the body as bytes, decoding base64 as it is read, so that large bodies can be parsed without first
+     * materialising a decoded copy. Bodies with a gzip or deflate {@code Content-Encoding} are decompressed as they
+     * are read, and reading past the maximum body size throws a {@link RequestBodyTooLargeException}.
+     */
+    @JsonIgnore
+    public InputStream getBodyAsInputStream() {
+        return RequestBodies.inputStream(getBody(), getIsBase64Encoded(), getContentEncoding(), maxDecompressedBodySize);
+    }
+
+    /**
+     * Returns the body as characters, decoding base64 and any {@code Content-Encoding} as they are read, as UTF-8.
+     */
+    @JsonIgnore
+    public Reader getBodyAsReader() {
+        return RequestBodies.reader(getBody(), getIsBase64Encoded(), getContentEncoding(), maxDecompressedBodySize);
+    }
+
+    private String getContentEncoding() {
+        return RequestValidator.getHeader(getHeaders(), "content-encoding");
+    }
+
+    void setMaxDecompressedBodySize(long maxDecompressedBodySize) {
+        this.maxDecompressedBodySize = maxDecompressedBodySize;
+    }
+
+    /**
+     * Returns the value attached to this request under the key, or {@code null} if there is none.
+     */
+    public <T> T getAttachment(AttachmentKey<T> key) {
+        return attachments == null ? null : (T) attachments.get(key);
+    }
+
+    public <T> void setAttachment(AttachmentKey<T> key, T value) {
+        if (attachments == null) {
+            attachments = new HashMap<>();
+        }
+        attachments.put(requireNonNull(key), value);
+    }
+
+    /**
+     * Returns the value attached under the key, loading and attaching it first if there is none, so that a
+     * representation of the body parsed by one stage of the pipeline, such as a validation hook or signature check, is
+     * reused by the later ones. Attachments last until {@link LambdaProxyHandler} has produced the response, when
+     * values that are {@link AutoCloseable} are closed.
+     */
+    public <T, E extends Exception> T computeAttachmentIfAbsent(AttachmentKey<T> key, AttachmentLoader<T, E> loader) throws E {
+        if (attachments != null && attachments.containsKey(key)) {
+            return (T) attachments.get(key);
+        }
+        T value = loader.load();
+        setAttachment(key, value);
+        return value;
+    }
+
+    /**
+     * Removes every attachment, closing those that are {@link AutoCloseable}, and throws the first failure to close.
+     */
+    void closeAttachments() throws Exception {
+        if (attachments == null || attachments.isEmpty()) {
+            return;
+        }
+        Exception failure = null;
+        for (Object value : attachments.values()) {
+            if (value instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) value).close();
+                }
+                catch (Exception e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        attachments.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     public boolean getIsBase64Encoded() {
-        return isBase64Encoded;
+        return isBase64Encoded != null && isBase64Encoded;
     }
 
     public void setResource(String resource) {
@@ -113,19 +204,44 @@ public class ApiGatewayProxyRequest {
         this.isBase64Encoded = requireNonNull(isBase64Encoded);
     }
 
+    /**
+     * Identifies a value attached to a request. Keys are compared by identity, so they are best kept in static fields.
+     */
+    public static final class AttachmentKey<T> {
+        private final String name;
+
+        public AttachmentKey(String name) {
+            this.name = requireNonNull(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "AttachmentKey{" + name + '}';
+        }
+    }
+
+    @FunctionalInterface
+    public interface AttachmentLoader<T, E extends Exception> {
+        T load() throws E;
+    }
+
     @Override
     public String toString() {
         return "ApiGatewayProxyRequest{" +
-                "resource='" + resource + '\'' +
-                ", path='" + path + '\'' +
-                ", httpMethod='" + httpMethod + '\'' +
-                ", headers=" + headers +
-                ", queryStringParameters=" + queryStringParameters +
-                ", pathParameters=" + pathParameters +
-                ", stageVariables=" + stageVariables +
-                ", context=" + context +
-                ", body='" + body + '\'' +
-                ", isBase64Encoded=" + isBase64Encoded +
+                "resource='" + getResource() + '\'' +
+                ", path='" + getPath() + '\'' +
+                ", httpMethod='" + getHttpMethod() + '\'' +
+                ", headers=" + getHeaders() +
+                ", queryStringParameters=" + getQueryStringParameters() +
+                ", pathParameters=" + getPathParameters() +
+                ", stageVariables=" + getStageVariables() +
+                ", context=" + getContext() +
+                ", body='" + getBody() + '\'' +
+                ", isBase64Encoded=" + getIsBase64Encoded() +
                 '}';
     }
 
@@ -136,35 +252,30 @@ public class ApiGatewayProxyRequest {
 
         ApiGatewayProxyRequest that = (ApiGatewayProxyRequest) o;
 
-        if (isBase64Encoded != that.isBase64Encoded) return false;
-        if (resource != null ? !resource.equals(that.resource) : that.resource != null) return false;
-        if (path != null ? !path.equals(that.path) : that.path != null) return false;
-        if (httpMethod != null ? !httpMethod.equals(that.httpMethod) : that.httpMethod != null) return false;
-        if (headers != null ? !headers.equals(that.headers) : that.headers != null) return false;
-        if (queryStringParameters != null ? !queryStringParameters.equals(that.queryStringParameters) : that.queryStringParameters != null)
-            return false;
-        if (pathParameters != null ? !pathParameters.equals(that.pathParameters) : that.pathParameters != null)
-            return false;
-        if (stageVariables != null ? !stageVariables.equals(that.stageVariables) : that.stageVariables != null)
-            return false;
-        if (context != null ? !context.equals(that.context) : that.context != null)
-            return false;
-        return body != null ? body.equals(that.body) : that.body == null;
-
+        if (getIsBase64Encoded() != that.getIsBase64Encoded()) return false;
+        if (!Objects.equals(getResource(), that.getResource())) return false;
+        if (!Objects.equals(getPath(), that.getPath())) return false;
+        if (!Objects.equals(getHttpMethod(), that.getHttpMethod())) return false;
+        if (!Objects.equals(getHeaders(), that.getHeaders())) return false;
+        if (!Objects.equals(getQueryStringParameters(), that.getQueryStringParameters())) return false;
+        if (!Objects.equals(getPathParameters(), that.getPathParameters())) return false;
+        if (!Objects.equals(getStageVariables(), that.getStageVariables())) return false;
+        if (!Objects.equals(getContext(), that.getContext())) return false;
+        return Objects.equals(getBody(), that.getBody());
     }
 
     @Override
     public int hashCode() {
-        int result = resource != null ? resource.hashCode() : 0;
-        result = 31 * result + (path != null ? path.hashCode() : 0);
-        result = 31 * result + (httpMethod != null ? httpMethod.hashCode() : 0);
-        result = 31 * result + (headers != null ? headers.hashCode() : 0);
-        result = 31 * result + (queryStringParameters != null ? queryStringParameters.hashCode() : 0);
-        result = 31 * result + (pathParameters != null ? pathParameters.hashCode() : 0);
-        result = 31 * result + (stageVariables != null ? stageVariables.hashCode() : 0);
-        result = 31 * result + (context != null ? context.hashCode() : 0);
-        result = 31 * result + (body != null ? body.hashCode() : 0);
-        result = 31 * result + (isBase64Encoded ? 1 : 0);
+        int result = Objects.hashCode(getResource());
+        result = 31 * result + Objects.hashCode(getPath());
+        result = 31 * result + Objects.hashCode(getHttpMethod());
+        result = 31 * result + Objects.hashCode(getHeaders());
+        result = 31 * result + Objects.hashCode(getQueryStringParameters());
+        result = 31 * result + Objects.hashCode(getPathParameters());
+        result = 31 * result + Objects.hashCode(getStageVariables());
+        result = 31 * result + Objects.hashCode(getContext());
+        result = 31 * result + Objects.hashCode(getBody());
+        result = 31 * result + (getIsBase64Encoded() ? 1 : 0);
         return result;
     }
 }
@@ -1,5 +1,7 @@
 package com.onelostlogician.aws.proxy;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,6 +10,7 @@ public class ApiGatewayProxyResponse {
     private Map<String, String> headers;
     private String body;
     private boolean isBase64Encoded;
+    private RangeBodySource bodySource;
 
     public ApiGatewayProxyResponse() {
     }
@@ -28,11 +31,21 @@ public class ApiGatewayProxyResponse {
         return isBase64Encoded;
     }
 
-    private ApiGatewayProxyResponse(int statusCode, Map<String, String> headers, String body, boolean isBase64Encoded) {
+    /**
+     * Returns the source the body is still to be produced from, which {@link LambdaProxyHandler} replaces with the
+     * bytes of the whole body or of the requested range.
+     */
+    @JsonIgnore
+    RangeBodySource getBodySource() {
+        return bodySource;
+    }
+
+    private ApiGatewayProxyResponse(int statusCode, Map<String, String> headers, String body, boolean isBase64Encoded, RangeBodySource bodySource) {
         this.statusCode = statusCode;
         this.headers = headers;
         this.body = body;
         this.isBase64Encoded = isBase64Encoded;
+        this.bodySource = bodySource;
     }
 
     public ApiGatewayProxyResponseBuilder builder() {
@@ -40,7 +53,8 @@ public class ApiGatewayProxyResponse {
                 .withStatusCode(this.getStatusCode())
                 .withHeaders(this.getHeaders())
                 .withBody(this.getBody())
-                .withBase64Encoded(this.getIsBase64Encoded());
+                .withBase64Encoded(this.getIsBase64Encoded())
+                .withBodySource(this.getBodySource());
     }
 
     public static class ApiGatewayProxyResponseBuilder {
@@ -48,6 +62,7 @@ public class ApiGatewayProxyResponse {
         private Map<String, String> headers = new HashMap<>();
         private String body = "";
         private boolean isBase64Encoded = false;
+        private RangeBodySource bodySource;
 
         public ApiGatewayProxyResponseBuilder withStatusCode(int statusCode) {
             this.statusCode = statusCode;
@@ -69,8 +84,16 @@ public class ApiGatewayProxyResponse {
             return this;
         }
 
+        /**
+         * Produces the body from the source, only as far as a {@code Range} request asks for it.
+         */
+        public ApiGatewayProxyResponseBuilder withBodySource(RangeBodySource bodySource) {
+            this.bodySource = bodySource;
+            return this;
+        }
+
         public ApiGatewayProxyResponse build() {
-            return new ApiGatewayProxyResponse(statusCode, headers, body, isBase64Encoded);
+            return new ApiGatewayProxyResponse(statusCode, headers, body, isBase64Encoded, bodySource);
         }
     }
 
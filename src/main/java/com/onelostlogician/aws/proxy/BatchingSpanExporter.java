@@ -0,0 +1,192 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Queues ended spans and writes them in batches from a background thread, so the request thread never waits on I/O.
+ * When the queue is full, spans are dropped and counted rather than blocking the request.
+ *
+ * Lambda freezes the container between invocations, so spans queued at the end of one invocation may only be written
+ * during the next; call {@link #flush()} where that matters, for example in tests or before a shutdown.
+ */
+public class BatchingSpanExporter implements SpanExporter, AutoCloseable {
+    private static final long DEFAULT_FLUSH_TIMEOUT_IN_MILLIS = 5_000;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final BlockingQueue<Object> queue;
+    private final Consumer<List<Span>> sink;
+    private final int maximumBatchSize;
+    private final long flushIntervalInMillis;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    public BatchingSpanExporter(Consumer<List<Span>> sink, int maximumQueueSize, int maximumBatchSize, long flushIntervalInMillis) {
+        if (maximumQueueSize < 1 || maximumBatchSize < 1 || flushIntervalInMillis < 1) {
+            throw new IllegalArgumentException("Queue size, batch size and flush interval must be positive");
+        }
+        this.sink = requireNonNull(sink);
+        this.queue = new ArrayBlockingQueue<>(maximumQueueSize);
+        this.maximumBatchSize = maximumBatchSize;
+        this.flushIntervalInMillis = flushIntervalInMillis;
+        this.worker = new Thread(this::run, "span-exporter");
+        this.worker.setDaemon(true);
+        this.worker.setUncaughtExceptionHandler((thread, e) -> logger.error("Span exporter stopped; spans will no longer be written", e));
+        this.worker.start();
+    }
+
+    /**
+     * Writes each span as a line of JSON to the stream, such as {@code System.out}, where CloudWatch Logs collects it.
+     */
+    public static Consumer<List<Span>> toJsonLines(PrintStream out) {
+        requireNonNull(out);
+        return spans -> {
+            StringBuilder lines = new StringBuilder();
+            for (Span span : spans) {
+                lines.append(toJson(span)).append('\n');
+            }
+            out.print(lines);
+            out.flush();
+        };
+    }
+
+    /**
+     * Appends each span as a line of JSON to the file, such as one under {@code /tmp}.
+     */
+    public static Consumer<List<Span>> toJsonLines(Path file) {
+        requireNonNull(file);
+        return spans -> {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Span span : spans) {
+                    writer.write(toJson(span));
+                    writer.write('\n');
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @Override
+    public void export(Span span) {
+        if (closed || !queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedSpans() {
+        return dropped.get();
+    }
+
+    /**
+     * Blocks until every span exported before the call has been written, or for at most
+     * {@value #DEFAULT_FLUSH_TIMEOUT_IN_MILLIS} milliseconds.
+     */
+    public void flush() throws InterruptedException {
+        if (!flush(DEFAULT_FLUSH_TIMEOUT_IN_MILLIS)) {
+            logger.warn("Spans were not written within " + DEFAULT_FLUSH_TIMEOUT_IN_MILLIS + " ms of a flush");
+        }
+    }
+
+    /**
+     * Blocks until every span exported before the call has been written, returning false if that did not happen within
+     * the timeout or cannot happen because the exporter is closed or its worker has died.
+     */
+    public boolean flush(long timeoutInMillis) throws InterruptedException {
+        if (closed || !worker.isAlive()) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+        CountDownLatch written = new CountDownLatch(1);
+        return queue.offer(written, timeoutInMillis, TimeUnit.MILLISECONDS)
+                && written.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (!closed) {
+            flush();
+            closed = true;
+            worker.interrupt();
+            worker.join();
+        }
+    }
+
+    private void run() {
+        List<Span> batch = new ArrayList<>(maximumBatchSize);
+        while (!closed) {
+            try {
+                Object item = queue.poll(flushIntervalInMillis, TimeUnit.MILLISECONDS);
+                while (item != null) {
+                    if (item instanceof CountDownLatch) {
+                        write(batch);
+                        ((CountDownLatch) item).countDown();
+                    }
+                    else {
+                        batch.add((Span) item);
+                        if (batch.size() >= maximumBatchSize) {
+                            write(batch);
+                        }
+                    }
+                    item = queue.poll();
+                }
+                write(batch);
+            }
+            catch (InterruptedException e) {
+                write(batch);
+                return;
+            }
+        }
+    }
+
+    private void write(List<Span> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.accept(new ArrayList<>(batch));
+        }
+        catch (RuntimeException e) {
+            logger.warn("Failed to export " + batch.size() + " spans", e);
+        }
+        batch.clear();
+    }
+
+    static String toJson(Span span) {
+        ObjectNode json = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        json.put("traceId", span.getTraceId());
+        json.put("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.put("parentSpanId", span.getParentSpanId());
+        }
+        json.put("name", span.getName());
+        json.put("startTimeMillis", span.getStartTimeInMillis());
+        json.put("durationNanos", span.getDurationInNanos());
+        if (!span.getAttributes().isEmpty()) {
+            ObjectNode attributes = json.putObject("attributes");
+            span.getAttributes().forEach(attributes::put);
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import static java.util.Objects.requireNonNull;
+
+public class BinaryAcceptMapper<Output> implements AcceptMapper<Output> {
+    private final BinaryFormat format;
+    private final ObjectWriter writer;
+
+    private BinaryAcceptMapper(BinaryFormat format, Class<Output> outputClass) {
+        this.format = format;
+        this.writer = format.writerFor(requireNonNull(outputClass));
+    }
+
+    public static <Output> BinaryAcceptMapper<Output> cbor(Class<Output> outputClass) {
+        return new BinaryAcceptMapper<>(BinaryFormat.CBOR, outputClass);
+    }
+
+    public static <Output> BinaryAcceptMapper<Output> messagePack(Class<Output> outputClass) {
+        return new BinaryAcceptMapper<>(BinaryFormat.MESSAGE_PACK, outputClass);
+    }
+
+    @Override
+    public ApiGatewayProxyResponse outputToResponse(Output output) throws Exception {
+        return format.toResponse(writer.writeValueAsBytes(output));
+    }
+}
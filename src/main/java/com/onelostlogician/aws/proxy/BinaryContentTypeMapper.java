@@ -0,0 +1,44 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+public class BinaryContentTypeMapper<Input> implements ContentTypeMapper<Input> {
+    private final BinaryFormat format;
+    private final ObjectReader reader;
+
+    private BinaryContentTypeMapper(BinaryFormat format, Class<Input> inputClass) {
+        this.format = format;
+        this.reader = format.readerFor(requireNonNull(inputClass));
+    }
+
+    public static <Input> BinaryContentTypeMapper<Input> cbor(Class<Input> inputClass) {
+        return new BinaryContentTypeMapper<>(BinaryFormat.CBOR, inputClass);
+    }
+
+    public static <Input> BinaryContentTypeMapper<Input> messagePack(Class<Input> inputClass) {
+        return new BinaryContentTypeMapper<>(BinaryFormat.MESSAGE_PACK, inputClass);
+    }
+
+    @Override
+    public Input toInput(ApiGatewayProxyRequest request, Context context) throws Exception {
+        try {
+            return reader.readValue(BinaryFormat.bodyStream(request));
+        }
+        catch (JsonProcessingException e) {
+            RequestBodies.rethrowIfTooLarge(e);
+            throw BinaryFormat.badRequest(String.format("Malformed %s body. %s", format.getMediaType(), e.getOriginalMessage()));
+        }
+        catch (RequestBodies.MalformedEncodingException e) {
+            throw BinaryFormat.badRequest(RequestBodies.describeReadFailure(e));
+        }
+        catch (IOException e) {
+            throw BinaryFormat.badRequest(String.format("Malformed %s body. %s", format.getMediaType(), e.getMessage()));
+        }
+    }
+}
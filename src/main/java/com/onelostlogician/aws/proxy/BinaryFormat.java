@@ -0,0 +1,91 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+import static com.onelostlogician.aws.proxy.HttpStatus.OK;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+public enum BinaryFormat {
+    CBOR(MediaType.create("application", "cbor")),
+    MESSAGE_PACK(MediaType.create("application", "msgpack"));
+
+    private final MediaType mediaType;
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    BinaryFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    ObjectReader readerFor(Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, objectMapper()::readerFor);
+    }
+
+    ObjectWriter writerFor(Class<?> clazz) {
+        return writers.computeIfAbsent(clazz, objectMapper()::writerFor);
+    }
+
+    // The dataformat dependencies are optional: each factory is only loaded once its format is used.
+    private ObjectMapper objectMapper() {
+        return this == CBOR ? CborMapper.INSTANCE : MessagePackMapper.INSTANCE;
+    }
+
+    private static final class CborMapper {
+        static final ObjectMapper INSTANCE = new ObjectMapper(new CBORFactory())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private static final class MessagePackMapper {
+        static final ObjectMapper INSTANCE = new ObjectMapper(new MessagePackFactory())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    ApiGatewayProxyResponse toResponse(byte[] body) {
+        return toResponse(mediaType, body);
+    }
+
+    static ApiGatewayProxyResponse toResponse(MediaType mediaType, byte[] body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, mediaType.toString());
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK)
+                .withHeaders(headers)
+                .withBody(Base64.getEncoder().encodeToString(body))
+                .withBase64Encoded(true)
+                .build();
+    }
+
+    static InputStream bodyStream(ApiGatewayProxyRequest request) throws LambdaException {
+        if (!request.getIsBase64Encoded()) {
+            throw badRequest("Binary request bodies must be base64 encoded");
+        }
+        return request.getBodyAsInputStream();
+    }
+
+    static LambdaException badRequest(String message) {
+        ApiGatewayProxyResponse badRequest = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(BAD_REQUEST)
+                .withBody(message)
+                .build();
+        return new LambdaException(badRequest);
+    }
+}
@@ -0,0 +1,14 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * Holds response bodies that are too large to return through API Gateway, so that the client can download them
+ * instead; see {@link LambdaProxyHandler#registerBlobStore(BlobStore, OffloadMode)}.
+ *
+ * Implementations must be safe to use from multiple threads.
+ */
+public interface BlobStore {
+    /**
+     * Stores the content under the key and returns the URL the client can download it from.
+     */
+    String put(String key, byte[] content, String contentType) throws Exception;
+}
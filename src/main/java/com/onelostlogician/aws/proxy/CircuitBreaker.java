@@ -0,0 +1,303 @@
+package com.onelostlogician.aws.proxy;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fails calls to a named downstream dependency fast while it is degraded, instead of letting every request wait for
+ * the dependency's full timeout.
+ *
+ * The breaker records the outcome of the most recent calls in a rolling window. Once the window holds at least the
+ * minimum number of calls and the rate of failed or of slow calls reaches its threshold, the breaker opens and rejects
+ * calls with a {@link CircuitBreakerOpenException}. After the open duration it lets a few trial calls through: if they
+ * all succeed it closes again, and if any fails it reopens.
+ *
+ * Method handlers are created per request, so a breaker must outlive them to be of any use; keep it in a
+ * {@link CircuitBreakerRegistry} held in a static field or in the {@link ContainerState}. Breakers are safe to use from
+ * multiple threads.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Is told about every change of state, for example to publish it as a metric; see
+     * {@link EmfCircuitBreakerListener}. It is called while the breaker is locked, so it should be quick.
+     */
+    public interface Listener {
+        void onStateTransition(CircuitBreaker circuitBreaker, State from, State to);
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final String name;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationInMillis;
+    private final int minimumCalls;
+    private final long openDurationInMillis;
+    private final int trialCalls;
+    private final Predicate<Exception> failurePredicate;
+    private final Listener listener;
+    private final LongSupplier clock;
+
+    private final byte[] window;
+    private int windowIndex = 0;
+    private int windowCalls = 0;
+    private int windowFailures = 0;
+    private int windowSlowCalls = 0;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialCallsPermitted;
+    private int trialCallsSucceeded;
+
+    private CircuitBreaker(CircuitBreakerBuilder builder) {
+        this.name = builder.name;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDurationInMillis = builder.slowCallDurationInMillis;
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.openDurationInMillis = builder.openDurationInMillis;
+        this.trialCalls = builder.trialCalls;
+        this.failurePredicate = builder.failurePredicate;
+        this.listener = builder.listener;
+        this.clock = builder.clock;
+        this.window = new byte[builder.windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Runs the call if the breaker permits it, recording its outcome and duration.
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+        acquirePermission();
+        long start = clock.getAsLong();
+        T result;
+        try {
+            result = call.call();
+        }
+        catch (Throwable e) {
+            onError(e, clock.getAsLong() - start);
+            throw e;
+        }
+        onSuccess(clock.getAsLong() - start);
+        return result;
+    }
+
+    /**
+     * Throws a {@link CircuitBreakerOpenException} unless the breaker is closed, or half open with trial calls left. A
+     * permitted call must be followed by {@link #onSuccess(long)} or {@link #onError(Throwable, long)}.
+     */
+    public synchronized void acquirePermission() throws CircuitBreakerOpenException {
+        long now = clock.getAsLong();
+        if (state == State.OPEN) {
+            long remaining = openedAt + openDurationInMillis - now;
+            if (remaining > 0) {
+                throw new CircuitBreakerOpenException(name, remaining);
+            }
+            transitionTo(State.HALF_OPEN, now);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialCallsPermitted >= trialCalls) {
+                throw new CircuitBreakerOpenException(name, 0);
+            }
+            trialCallsPermitted++;
+        }
+    }
+
+    public synchronized void onSuccess(long durationInMillis) {
+        record(false, durationInMillis);
+    }
+
+    /**
+     * Records a failed call, unless the failure predicate says the exception does not reflect on the dependency's
+     * health, in which case the call counts as a success. Errors always count as failures.
+     */
+    public synchronized void onError(Throwable throwable, long durationInMillis) {
+        record(!(throwable instanceof Exception) || failurePredicate.test((Exception) throwable), durationInMillis);
+    }
+
+    private void record(boolean failed, long durationInMillis) {
+        long now = clock.getAsLong();
+        boolean slow = durationInMillis >= slowCallDurationInMillis;
+        switch (state) {
+            case HALF_OPEN:
+                if (failed || slow) {
+                    transitionTo(State.OPEN, now);
+                }
+                else if (++trialCallsSucceeded >= trialCalls) {
+                    transitionTo(State.CLOSED, now);
+                }
+                break;
+            case CLOSED:
+                byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+                if (windowCalls == window.length) {
+                    byte evicted = window[windowIndex];
+                    windowFailures -= evicted & FAILED;
+                    windowSlowCalls -= (evicted & SLOW) >> 1;
+                }
+                else {
+                    windowCalls++;
+                }
+                window[windowIndex] = outcome;
+                windowIndex = (windowIndex + 1) % window.length;
+                windowFailures += outcome & FAILED;
+                windowSlowCalls += (outcome & SLOW) >> 1;
+                if (windowCalls >= minimumCalls
+                        && (windowFailures >= failureRateThreshold * windowCalls || windowSlowCalls >= slowCallRateThreshold * windowCalls)) {
+                    transitionTo(State.OPEN, now);
+                }
+                break;
+            default:
+                // A call permitted before the breaker opened; the breaker already knows the dependency is unhealthy.
+                break;
+        }
+    }
+
+    private void transitionTo(State to, long now) {
+        State from = state;
+        state = to;
+        switch (to) {
+            case OPEN:
+                openedAt = now;
+                break;
+            case HALF_OPEN:
+                trialCallsPermitted = 0;
+                trialCallsSucceeded = 0;
+                break;
+            default:
+                windowIndex = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+                windowSlowCalls = 0;
+                break;
+        }
+        logger.info(String.format("Circuit breaker %s changed from %s to %s.\n", name, from, to));
+        try {
+            listener.onStateTransition(this, from, to);
+        }
+        catch (RuntimeException e) {
+            logger.warn("Circuit breaker listener failed", e);
+        }
+    }
+
+    public static class CircuitBreakerBuilder {
+        private final String name;
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 1.0;
+        private long slowCallDurationInMillis = Long.MAX_VALUE;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private long openDurationInMillis = 30_000;
+        private int trialCalls = 2;
+        private Predicate<Exception> failurePredicate = CircuitBreakerBuilder::isServerFailure;
+        private Listener listener = (circuitBreaker, from, to) -> {};
+        private LongSupplier clock = System::currentTimeMillis;
+
+        public CircuitBreakerBuilder(String name) {
+            this.name = requireNonNull(name);
+        }
+
+        /**
+         * Sets the fraction of failed calls in the window, from 0 to 1, at which the breaker opens.
+         */
+        public CircuitBreakerBuilder withFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = rate(failureRateThreshold);
+            return this;
+        }
+
+        /**
+         * Counts calls that take at least the given duration as slow, and opens the breaker once the fraction of slow
+         * calls in the window reaches the threshold. Slow calls are not counted by default.
+         */
+        public CircuitBreakerBuilder withSlowCalls(long slowCallDurationInMillis, double slowCallRateThreshold) {
+            if (slowCallDurationInMillis <= 0) {
+                throw new IllegalArgumentException("Slow call duration must be positive: " + slowCallDurationInMillis);
+            }
+            this.slowCallDurationInMillis = slowCallDurationInMillis;
+            this.slowCallRateThreshold = rate(slowCallRateThreshold);
+            return this;
+        }
+
+        /**
+         * Sets how many of the most recent calls the rates are computed over, and how many calls the window must hold
+         * before the breaker can open.
+         */
+        public CircuitBreakerBuilder withWindow(int windowSize, int minimumCalls) {
+            if (windowSize <= 0 || minimumCalls <= 0) {
+                throw new IllegalArgumentException("Window size and minimum calls must be positive");
+            }
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets how long the breaker stays open, and how many trial calls must succeed afterwards for it to close.
+         */
+        public CircuitBreakerBuilder withOpenDuration(long openDurationInMillis, int trialCalls) {
+            if (openDurationInMillis <= 0 || trialCalls <= 0) {
+                throw new IllegalArgumentException("Open duration and trial calls must be positive");
+            }
+            this.openDurationInMillis = openDurationInMillis;
+            this.trialCalls = trialCalls;
+            return this;
+        }
+
+        /**
+         * Decides which exceptions count as failures; by default all of them do except {@link LambdaException}s with a
+         * status below 500, which report a problem with the request rather than with the dependency.
+         */
+        public CircuitBreakerBuilder withFailurePredicate(Predicate<Exception> failurePredicate) {
+            this.failurePredicate = requireNonNull(failurePredicate);
+            return this;
+        }
+
+        public CircuitBreakerBuilder withListener(Listener listener) {
+            this.listener = requireNonNull(listener);
+            return this;
+        }
+
+        public CircuitBreakerBuilder withClock(LongSupplier clock) {
+            this.clock = requireNonNull(clock);
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+
+        private static double rate(double rate) {
+            if (rate <= 0 || rate > 1) {
+                throw new IllegalArgumentException("Rates must be greater than 0 and at most 1: " + rate);
+            }
+            return rate;
+        }
+
+        private static boolean isServerFailure(Exception exception) {
+            return !(exception instanceof LambdaException)
+                    || ((LambdaException) exception).getResponse().getStatusCode() >= 500;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Produces the output of a method handler while its {@link CircuitBreaker} is open, such as a degraded output or the
+ * last good one; see {@link MethodHandler#registerCircuitBreaker(CircuitBreaker, CircuitBreakerFallback)}.
+ */
+public interface CircuitBreakerFallback<Input, Output> {
+    /**
+     * Returns the output to serve instead of calling the handler, or throws, for example the given exception.
+     */
+    Output apply(Input input, CircuitBreakerOpenException exception) throws Exception;
+
+    /**
+     * Is given the output of every call the handler completed.
+     */
+    default void onSuccess(Input input, Output output) {}
+
+    /**
+     * Serves the output of the last successful call with the same key, falling back to the 503 for keys it has not
+     * seen. It keeps at most the given number of outputs, so, like the breaker, it must outlive the method handler.
+     */
+    static <Input, Output> CircuitBreakerFallback<Input, Output> lastGood(Function<Input, ?> key, int maximumEntries) {
+        if (maximumEntries <= 0) {
+            throw new IllegalArgumentException("Maximum entries must be positive: " + maximumEntries);
+        }
+        requireNonNull(key);
+        Map<Object, Output> outputs = new LinkedHashMap<Object, Output>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Output> eldest) {
+                return size() > maximumEntries;
+            }
+        };
+        return new CircuitBreakerFallback<Input, Output>() {
+            @Override
+            public Output apply(Input input, CircuitBreakerOpenException exception) throws CircuitBreakerOpenException {
+                Output output;
+                synchronized (outputs) {
+                    output = outputs.get(key.apply(input));
+                }
+                if (output == null) {
+                    throw exception;
+                }
+                return output;
+            }
+
+            @Override
+            public void onSuccess(Input input, Output output) {
+                synchronized (outputs) {
+                    outputs.put(key.apply(input), output);
+                }
+            }
+        };
+    }
+}
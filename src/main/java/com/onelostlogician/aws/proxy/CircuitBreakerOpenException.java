@@ -0,0 +1,27 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * Thrown instead of calling a dependency whose {@link CircuitBreaker} is open. {@link MethodHandler} answers it with a
+ * 503 and a {@code Retry-After} header, unless a fallback has been registered.
+ */
+public class CircuitBreakerOpenException extends Exception {
+    private final String circuitBreakerName;
+    private final long remainingOpenInMillis;
+
+    public CircuitBreakerOpenException(String circuitBreakerName, long remainingOpenInMillis) {
+        super(String.format("Circuit breaker %s is open", circuitBreakerName), null, false, false);
+        this.circuitBreakerName = circuitBreakerName;
+        this.remainingOpenInMillis = remainingOpenInMillis;
+    }
+
+    public String getCircuitBreakerName() {
+        return circuitBreakerName;
+    }
+
+    /**
+     * Returns how much longer the breaker stays open, or 0 if it is waiting for the outcome of its trial calls.
+     */
+    public long getRemainingOpenInMillis() {
+        return remainingOpenInMillis;
+    }
+}
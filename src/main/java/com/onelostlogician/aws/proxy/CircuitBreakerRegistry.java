@@ -0,0 +1,39 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Holds one {@link CircuitBreaker} per named dependency for the lifetime of the container, creating each on first use.
+ */
+public class CircuitBreakerRegistry {
+    private final Function<String, CircuitBreaker> factory;
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates breakers with the default settings.
+     */
+    public CircuitBreakerRegistry() {
+        this(name -> new CircuitBreaker.CircuitBreakerBuilder(name).build());
+    }
+
+    /**
+     * Creates breakers with the factory, which is given the name of the dependency.
+     */
+    public CircuitBreakerRegistry(Function<String, CircuitBreaker> factory) {
+        this.factory = requireNonNull(factory);
+    }
+
+    public CircuitBreaker get(String name) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(name);
+        return circuitBreaker != null ? circuitBreaker : circuitBreakers.computeIfAbsent(name, factory);
+    }
+
+    public Collection<CircuitBreaker> getAll() {
+        return new ArrayList<>(circuitBreakers.values());
+    }
+}
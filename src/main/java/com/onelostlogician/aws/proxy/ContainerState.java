@@ -0,0 +1,300 @@
+package com.onelostlogician.aws.proxy;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Holds expensive, reusable objects such as SDK clients, compiled templates and connection pools for the lifetime of
+ * the container, so that method handlers, which are created per request, can share them.
+ *
+ * Each object is described by a {@link Key} and created on first use. Objects that have not been used for longer than
+ * their idle timeout, or that are the least recently used once the total weight exceeds the capacity, are evicted and
+ * passed to their close hook; they are recreated if they are needed again. An object may still be in use by another
+ * request when it is evicted, so close hooks should be tolerant of that, as SDK client shutdowns are.
+ */
+public class ContainerState implements AutoCloseable {
+    private static final int MAX_CREATE_ATTEMPTS = 8;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final long capacityInBytes;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Key<?>, Entry<?>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightInBytes = 0;
+    private boolean closed = false;
+
+    public ContainerState(long capacityInBytes) {
+        this(capacityInBytes, System::currentTimeMillis);
+    }
+
+    public ContainerState(long capacityInBytes, LongSupplier clock) {
+        if (capacityInBytes < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacityInBytes);
+        }
+        this.capacityInBytes = capacityInBytes;
+        this.clock = requireNonNull(clock);
+    }
+
+    /**
+     * Returns the object for the key, creating it if needed.
+     *
+     * @throws IllegalStateException if the state has been closed, or if the entry was evicted before its value could be
+     * created on each of {@value #MAX_CREATE_ATTEMPTS} attempts
+     */
+    public <T> T get(Key<T> key) {
+        for (int attempt = 0; attempt < MAX_CREATE_ATTEMPTS; attempt++) {
+            T value = tryGet(key);
+            if (value != null) {
+                return value;
+            }
+            // The entry was evicted before its value was created; create it in a new entry.
+        }
+        throw new IllegalStateException(String.format(
+                "Could not create %s: its entry was evicted before creation on %d attempts", key.name, MAX_CREATE_ATTEMPTS));
+    }
+
+    private <T> T tryGet(Key<T> key) {
+        Entry<T> entry;
+        List<Entry<?>> evicted;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Container state has been closed");
+            }
+            long now = clock.getAsLong();
+            evicted = evictIdle(now, null);
+            entry = (Entry<T>) entries.get(key);
+            if (entry == null) {
+                entry = new Entry<>(key);
+                entries.put(key, entry);
+                weightInBytes += key.weightInBytes;
+                evicted = evictToCapacity(entry, evicted);
+            }
+            entry.lastUsed = now;
+        }
+        if (evicted != null) {
+            closeAll(evicted);
+        }
+        return entry.getValue(logger);
+    }
+
+    public synchronized boolean contains(Key<?> key) {
+        Entry<?> entry = entries.get(key);
+        return entry != null && entry.value != null;
+    }
+
+    public synchronized long getWeightInBytes() {
+        return weightInBytes;
+    }
+
+    /**
+     * Evicts the object for the key, if it exists, running its close hook.
+     */
+    public void evict(Key<?> key) {
+        Entry<?> entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry != null) {
+                weightInBytes -= key.weightInBytes;
+            }
+        }
+        if (entry != null) {
+            entry.close(logger);
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Entry<?>> evicted;
+        synchronized (this) {
+            closed = true;
+            evicted = new ArrayList<>(entries.values());
+            entries.clear();
+            weightInBytes = 0;
+        }
+        closeAll(evicted);
+    }
+
+    private List<Entry<?>> evictIdle(long now, List<Entry<?>> evicted) {
+        Iterator<Entry<?>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            if (now - entry.lastUsed > entry.key.idleTimeoutInMillis) {
+                evicted = remove(iterator, entry, evicted);
+            }
+        }
+        return evicted;
+    }
+
+    private List<Entry<?>> evictToCapacity(Entry<?> added, List<Entry<?>> evicted) {
+        Iterator<Entry<?>> iterator = entries.values().iterator();
+        while (weightInBytes > capacityInBytes && iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            // The entry being added is the most recently used, so it is only reached once everything else is gone.
+            if (entry != added) {
+                evicted = remove(iterator, entry, evicted);
+            }
+        }
+        return evicted;
+    }
+
+    private List<Entry<?>> remove(Iterator<Entry<?>> iterator, Entry<?> entry, List<Entry<?>> evicted) {
+        iterator.remove();
+        weightInBytes -= entry.key.weightInBytes;
+        if (evicted == null) {
+            evicted = new ArrayList<>();
+        }
+        evicted.add(entry);
+        return evicted;
+    }
+
+    private void closeAll(List<Entry<?>> evicted) {
+        for (Entry<?> entry : evicted) {
+            entry.close(logger);
+        }
+    }
+
+    private static class Entry<T> {
+        private final Key<T> key;
+        private volatile T value;
+        private long lastUsed;
+        private boolean closed;
+
+        Entry(Key<T> key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the value, creating it if needed, or null if the entry has been closed; a closed entry is no longer
+         * in the state, so a value created for it would never be closed.
+         */
+        T getValue(Logger logger) {
+            T current = value;
+            if (current == null) {
+                synchronized (this) {
+                    if (closed) {
+                        return null;
+                    }
+                    current = value;
+                    if (current == null) {
+                        current = requireNonNull(key.factory.get(), "Factory for " + key.name + " returned null");
+                        if (closed) {
+                            // The factory evicted its own key.
+                            closeValue(current, logger);
+                            return null;
+                        }
+                        value = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        synchronized void close(Logger logger) {
+            T current = value;
+            value = null;
+            closed = true;
+            if (current != null) {
+                closeValue(current, logger);
+            }
+        }
+
+        private void closeValue(T current, Logger logger) {
+            try {
+                key.closeHook.accept(current);
+            }
+            catch (RuntimeException e) {
+                logger.warn("Failed to close " + key.name, e);
+            }
+        }
+    }
+
+    /**
+     * Identifies, and describes how to create and close, one object in a {@link ContainerState}. Keys are compared by
+     * identity, so they are best kept in static fields.
+     */
+    public static final class Key<T> {
+        private final String name;
+        private final Supplier<? extends T> factory;
+        private final Consumer<? super T> closeHook;
+        private final long weightInBytes;
+        private final long idleTimeoutInMillis;
+
+        private Key(String name, Supplier<? extends T> factory, Consumer<? super T> closeHook, long weightInBytes, long idleTimeoutInMillis) {
+            this.name = name;
+            this.factory = factory;
+            this.closeHook = closeHook;
+            this.weightInBytes = weightInBytes;
+            this.idleTimeoutInMillis = idleTimeoutInMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + name + '}';
+        }
+    }
+
+    public static class KeyBuilder<T> {
+        private final String name;
+        private final Supplier<? extends T> factory;
+        private Consumer<? super T> closeHook = value -> {
+            if (value instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) value).close();
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        private long weightInBytes = 0;
+        private long idleTimeoutInMillis = Long.MAX_VALUE;
+
+        public KeyBuilder(String name, Supplier<? extends T> factory) {
+            this.name = requireNonNull(name);
+            this.factory = requireNonNull(factory);
+        }
+
+        /**
+         * Replaces the default close hook, which closes values that are {@link AutoCloseable}.
+         */
+        public KeyBuilder<T> withCloseHook(Consumer<? super T> closeHook) {
+            this.closeHook = requireNonNull(closeHook);
+            return this;
+        }
+
+        /**
+         * Sets the approximate number of bytes the object retains, counted against the capacity of the state.
+         */
+        public KeyBuilder<T> withWeight(long weightInBytes) {
+            if (weightInBytes < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + weightInBytes);
+            }
+            this.weightInBytes = weightInBytes;
+            return this;
+        }
+
+        public KeyBuilder<T> withIdleTimeout(long idleTimeoutInMillis) {
+            if (idleTimeoutInMillis < 0) {
+                throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutInMillis);
+            }
+            this.idleTimeoutInMillis = idleTimeoutInMillis;
+            return this;
+        }
+
+        public Key<T> build() {
+            return new Key<>(name, factory, closeHook, weightInBytes, idleTimeoutInMillis);
+        }
+    }
+}
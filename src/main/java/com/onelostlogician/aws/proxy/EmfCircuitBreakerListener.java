@@ -0,0 +1,79 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes circuit breaker state transitions as CloudWatch metrics by printing them to standard output in the
+ * embedded metric format, which Lambda turns into metrics without any API calls.
+ *
+ * Each transition records a {@code StateTransitions} count, by breaker and by breaker and new state, and the new
+ * {@code State} of the breaker: 0 when closed, 1 when half open and 2 when open.
+ */
+public class EmfCircuitBreakerListener implements CircuitBreaker.Listener {
+    private final Logger logger = Logger.getLogger(getClass());
+    private final String namespace;
+    private final PrintStream out;
+
+    public EmfCircuitBreakerListener(String namespace) {
+        this(namespace, System.out);
+    }
+
+    public EmfCircuitBreakerListener(String namespace, PrintStream out) {
+        this.namespace = requireNonNull(namespace);
+        this.out = requireNonNull(out);
+    }
+
+    @Override
+    public void onStateTransition(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JsonCodec.OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("_aws");
+            generator.writeNumberField("Timestamp", System.currentTimeMillis());
+            generator.writeArrayFieldStart("CloudWatchMetrics");
+            generator.writeStartObject();
+            generator.writeStringField("Namespace", namespace);
+            generator.writeArrayFieldStart("Dimensions");
+            generator.writeStartArray();
+            generator.writeString("CircuitBreaker");
+            generator.writeEndArray();
+            generator.writeStartArray();
+            generator.writeString("CircuitBreaker");
+            generator.writeString("ToState");
+            generator.writeEndArray();
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("Metrics");
+            writeMetric(generator, "StateTransitions", "Count");
+            writeMetric(generator, "State", "None");
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeStringField("CircuitBreaker", circuitBreaker.getName());
+            generator.writeStringField("FromState", from.name());
+            generator.writeStringField("ToState", to.name());
+            generator.writeNumberField("StateTransitions", 1);
+            generator.writeNumberField("State", to == CircuitBreaker.State.CLOSED ? 0 : to == CircuitBreaker.State.HALF_OPEN ? 1 : 2);
+            generator.writeEndObject();
+        }
+        catch (IOException e) {
+            logger.warn("Failed to write circuit breaker metrics", e);
+            return;
+        }
+        out.println(writer);
+    }
+
+    private static void writeMetric(JsonGenerator generator, String name, String unit) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("Name", name);
+        generator.writeStringField("Unit", unit);
+        generator.writeEndObject();
+    }
+}
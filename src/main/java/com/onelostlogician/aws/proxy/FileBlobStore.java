@@ -0,0 +1,41 @@
+package com.onelostlogician.aws.proxy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stores bodies as files in a local directory and answers with URLs under a base URL that serves that directory, such
+ * as a static file server or a {@code file:} URL. Meant for local development and tests, in place of
+ * {@link S3BlobStore}.
+ */
+public class FileBlobStore implements BlobStore {
+    private final Path directory;
+    private final String baseUrl;
+
+    public FileBlobStore(Path directory, String baseUrl) throws IOException {
+        this.directory = Files.createDirectories(requireNonNull(directory)).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public String put(String key, byte[] content, String contentType) throws IOException {
+        Path target = directory.resolve(key).normalize();
+        if (!target.startsWith(directory)) {
+            throw new IllegalArgumentException("Key escapes the blob directory: " + key);
+        }
+        Files.createDirectories(target.getParent());
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, content);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        return baseUrl + key;
+    }
+}
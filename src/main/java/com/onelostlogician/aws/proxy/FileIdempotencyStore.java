@@ -0,0 +1,186 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps idempotency records as files in a local directory, such as {@code /tmp} or a mounted file system, so that they
+ * survive the handler and can be shared by every process that mounts the directory.
+ *
+ * A claim is an exclusively created {@code .lock} file and a completed request is a {@code .json} file holding the
+ * response; both are named after a hash of the key, and both are ignored once older than the time to live.
+ */
+public class FileIdempotencyStore implements IdempotencyStore {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long timeToLiveInMillis;
+
+    public FileIdempotencyStore(Path directory, long timeToLiveInMillis) throws IOException {
+        if (timeToLiveInMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive: " + timeToLiveInMillis);
+        }
+        this.directory = Files.createDirectories(requireNonNull(directory));
+        this.timeToLiveInMillis = timeToLiveInMillis;
+    }
+
+    @Override
+    public IdempotencyRecord begin(String key) throws IOException {
+        String name = fileName(key);
+        Path result = directory.resolve(name + ".json");
+        Path lock = directory.resolve(name + ".lock");
+        ApiGatewayProxyResponse response = readResponse(result);
+        if (response != null) {
+            return IdempotencyRecord.completed(response);
+        }
+        try {
+            Files.createFile(lock);
+            return IdempotencyRecord.acquired();
+        }
+        catch (FileAlreadyExistsException e) {
+            // Fall through to check whether the claim has been abandoned.
+        }
+        long claimed;
+        try {
+            claimed = Files.getLastModifiedTime(lock).toMillis();
+        }
+        catch (NoSuchFileException e) {
+            return IdempotencyRecord.inProgress();
+        }
+        if (claimed + timeToLiveInMillis > System.currentTimeMillis()) {
+            return IdempotencyRecord.inProgress();
+        }
+        return takeOver(name, lock, claimed);
+    }
+
+    /*
+     * Takes over a claim abandoned, for example, by a container that timed out. Every container that found the same
+     * abandoned claim races to create a marker named after its modification time, so only one of them replaces the lock;
+     * the lock is replaced by an atomic move, so it never disappears in between for a newcomer to create afresh.
+     */
+    private IdempotencyRecord takeOver(String name, Path lock, long claimed) throws IOException {
+        Path marker = directory.resolve(name + "." + claimed + ".takeover");
+        try {
+            Files.createFile(marker);
+        }
+        catch (FileAlreadyExistsException e) {
+            return IdempotencyRecord.inProgress();
+        }
+        Path temporary = null;
+        try {
+            // Another container may have taken the claim over, and removed its marker, since it was found abandoned.
+            if (Files.getLastModifiedTime(lock).toMillis() != claimed) {
+                return IdempotencyRecord.inProgress();
+            }
+            temporary = Files.createTempFile(directory, name, ".tmp");
+            Files.move(temporary, lock, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return IdempotencyRecord.acquired();
+        }
+        catch (NoSuchFileException e) {
+            return IdempotencyRecord.inProgress();
+        }
+        finally {
+            if (temporary != null) {
+                Files.deleteIfExists(temporary);
+            }
+            Files.deleteIfExists(marker);
+        }
+    }
+
+    @Override
+    public void complete(String key, ApiGatewayProxyResponse response) throws IOException {
+        String name = fileName(key);
+        Path temporary = Files.createTempFile(directory, name, ".tmp");
+        try {
+            Files.write(temporary, JsonCodec.OBJECT_MAPPER.writeValueAsBytes(toJson(response)));
+            Files.move(temporary, directory.resolve(name + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        Files.deleteIfExists(directory.resolve(name + ".lock"));
+    }
+
+    @Override
+    public void release(String key) throws IOException {
+        Files.deleteIfExists(directory.resolve(fileName(key) + ".lock"));
+    }
+
+    private ApiGatewayProxyResponse readResponse(Path result) throws IOException {
+        byte[] bytes;
+        try {
+            if (isExpired(result)) {
+                Files.deleteIfExists(result);
+                return null;
+            }
+            bytes = Files.readAllBytes(result);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        return fromJson(JsonCodec.OBJECT_MAPPER.readTree(bytes));
+    }
+
+    private boolean isExpired(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis() + timeToLiveInMillis <= System.currentTimeMillis();
+    }
+
+    private static ObjectNode toJson(ApiGatewayProxyResponse response) {
+        ObjectNode json = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        json.put("statusCode", response.getStatusCode());
+        ObjectNode headers = json.putObject("headers");
+        if (response.getHeaders() != null) {
+            response.getHeaders().forEach(headers::put);
+        }
+        json.put("body", response.getBody());
+        json.put("isBase64Encoded", response.getIsBase64Encoded());
+        return json;
+    }
+
+    private static ApiGatewayProxyResponse fromJson(JsonNode json) {
+        Map<String, String> headers = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = json.path("headers").fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            headers.put(field.getKey(), field.getValue().asText());
+        }
+        JsonNode body = json.get("body");
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(json.path("statusCode").asInt())
+                .withHeaders(headers)
+                .withBody(body == null || body.isNull() ? null : body.asText())
+                .withBase64Encoded(json.path("isBase64Encoded").asBoolean())
+                .build();
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            char[] name = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                name[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                name[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(name);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.onelostlogician.aws.proxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates {@code <Type>JsonMapper} and {@code <Type>FormMapper} classes next to the annotated type at compile time.
+ * Each generated class is both a {@link ContentTypeMapper} and an {@link AcceptMapper} for the type, and reads and
+ * writes its properties directly, without runtime reflection.
+ *
+ * The annotated type needs a public no-argument constructor, and each non-static, non-transient field must either be
+ * public or have a public getter and setter. Supported property types are {@code String}, {@code boolean},
+ * {@code int}, {@code long}, {@code float} and {@code double}, and their boxed equivalents.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateMappers {
+}
@@ -0,0 +1,199 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+import static com.onelostlogician.aws.proxy.HttpStatus.OK;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+public final class GeneratedMapperSupport {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String UTF_8 = StandardCharsets.UTF_8.name();
+
+    /**
+     * The parsed {@code application/x-www-form-urlencoded} body, attached by {@link #readForm}.
+     */
+    public static final ApiGatewayProxyRequest.AttachmentKey<Map<String, String>> FORM = new ApiGatewayProxyRequest.AttachmentKey<>("form");
+
+    private GeneratedMapperSupport() {}
+
+    public static JsonParser jsonParser(ApiGatewayProxyRequest request) throws IOException {
+        if (request.getIsBase64Encoded()) {
+            return JSON_FACTORY.createParser(request.getBodyAsInputStream());
+        }
+        return JSON_FACTORY.createParser(request.getBody());
+    }
+
+    public static SegmentedStringWriter jsonBuffer() {
+        return new SegmentedStringWriter(JSON_FACTORY._getBufferRecycler());
+    }
+
+    public static JsonGenerator jsonGenerator(SegmentedStringWriter buffer) throws IOException {
+        return JSON_FACTORY.createGenerator(buffer);
+    }
+
+    /**
+     * Reads the current scalar token as a string; objects and arrays are rejected rather than flattened,
+     * which would otherwise leave the parser inside the nested value.
+     */
+    public static String readString(JsonParser parser, String name) throws IOException, LambdaException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            throw badRequest(String.format("Field %s must be a string", name));
+        }
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Parses the form body once per request; later calls return the same, unmodifiable, map.
+     */
+    public static Map<String, String> readForm(ApiGatewayProxyRequest request) throws LambdaException {
+        return request.computeAttachmentIfAbsent(FORM, () -> Collections.unmodifiableMap(parseForm(request)));
+    }
+
+    private static Map<String, String> parseForm(ApiGatewayProxyRequest request) throws LambdaException {
+        String body = request.getIsBase64Encoded() ? readBody(request) : request.getBody();
+        Map<String, String> form = new HashMap<>();
+        int start = 0;
+        while (start < body.length()) {
+            int end = body.indexOf('&', start);
+            if (end < 0) {
+                end = body.length();
+            }
+            if (end > start) {
+                int separator = body.indexOf('=', start);
+                if (separator < 0 || separator > end) {
+                    form.put(decode(body.substring(start, end)), "");
+                }
+                else {
+                    form.put(decode(body.substring(start, separator)), decode(body.substring(separator + 1, end)));
+                }
+            }
+            start = end + 1;
+        }
+        return form;
+    }
+
+    public static void appendFormField(StringBuilder form, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        if (form.length() > 0) {
+            form.append('&');
+        }
+        try {
+            form.append(name)
+                .append('=')
+                .append(URLEncoder.encode(value, UTF_8));
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static boolean parseBoolean(String name, String value) throws LambdaException {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw badRequest(String.format("Field %s must be a boolean", name));
+    }
+
+    public static int parseInt(String name, String value) throws LambdaException {
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw badRequest(String.format("Field %s must be an integer", name));
+        }
+    }
+
+    public static long parseLong(String name, String value) throws LambdaException {
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw badRequest(String.format("Field %s must be an integer", name));
+        }
+    }
+
+    public static float parseFloat(String name, String value) throws LambdaException {
+        try {
+            return Float.parseFloat(value);
+        }
+        catch (NumberFormatException e) {
+            throw badRequest(String.format("Field %s must be a number", name));
+        }
+    }
+
+    public static double parseDouble(String name, String value) throws LambdaException {
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw badRequest(String.format("Field %s must be a number", name));
+        }
+    }
+
+    public static ApiGatewayProxyResponse response(String contentType, String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, contentType);
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK)
+                .withHeaders(headers)
+                .withBody(body)
+                .build();
+    }
+
+    public static LambdaException badRequest(String message) {
+        ApiGatewayProxyResponse badRequest = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(BAD_REQUEST)
+                .withBody(message)
+                .build();
+        return new LambdaException(badRequest);
+    }
+
+    private static String readBody(ApiGatewayProxyRequest request) throws LambdaException {
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[4096];
+        try (Reader reader = request.getBodyAsReader()) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                body.append(buffer, 0, read);
+            }
+        }
+        catch (IOException e) {
+            throw badRequest(RequestBodies.describeReadFailure(e));
+        }
+        catch (IllegalArgumentException e) {
+            throw badRequest(String.format("Malformed base64 body. %s", e.getMessage()));
+        }
+        return body.toString();
+    }
+
+    private static String decode(String value) throws LambdaException {
+        try {
+            return URLDecoder.decode(value, UTF_8);
+        }
+        catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            throw badRequest(String.format("Malformed form body. %s", e.getMessage()));
+        }
+    }
+}
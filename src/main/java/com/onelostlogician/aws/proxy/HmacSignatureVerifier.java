@@ -0,0 +1,220 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+import static com.onelostlogician.aws.proxy.HttpStatus.UNAUTHORIZED;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Verifies webhook requests signed with an HMAC of their raw body, such as {@code X-Signature: sha256=<hex>}, and
+ * rejects those with a missing or wrong signature with a 401. As an {@link Interceptor} it runs before the handler's
+ * configuration is loaded and before any mapper parses the body.
+ *
+ * The body is hashed in a single pass as it is decoded, without a copy of the raw bytes, by every secret at once, so
+ * that secrets can be rotated. Each thread keeps its own initialised {@link Mac} per secret, and signatures are
+ * compared in constant time. Text bodies are hashed as their UTF-8 encoding, which matches what the sender signed as
+ * long as it sent valid UTF-8; otherwise have API Gateway base64 encode the body.
+ */
+public class HmacSignatureVerifier implements Interceptor {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String header;
+    private final String prefix;
+    private final boolean base64Signature;
+    private final String algorithm;
+    private final List<byte[]> secrets;
+    private final int signatureLength;
+    private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(this::createThreadState);
+
+    private HmacSignatureVerifier(HmacSignatureVerifierBuilder builder) {
+        this.header = builder.header.toLowerCase();
+        this.prefix = builder.prefix;
+        this.base64Signature = builder.base64Signature;
+        this.algorithm = builder.algorithm;
+        this.secrets = new ArrayList<>(builder.secrets);
+        // Fails on an unknown algorithm when the verifier is built, not on the first request.
+        this.signatureLength = createThreadState().macs[0].getMacLength();
+    }
+
+    @Override
+    public Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) throws LambdaException {
+        if (HttpMethod.parse(request.getHttpMethod()) != HttpMethod.OPTIONS) {
+            verify(request);
+        }
+        return Optional.empty();
+    }
+
+    public void verify(ApiGatewayProxyRequest request) throws LambdaException {
+        String value = RequestValidator.getHeader(request.getHeaders(), header);
+        if (value == null) {
+            throw unauthorised(String.format("No %s header", header));
+        }
+        byte[] signature = decodeSignature(value.trim());
+        if (signature == null || signature.length != signatureLength) {
+            throw unauthorised("Malformed signature");
+        }
+
+        ThreadState state = threadState.get();
+        Mac[] macs = state.macs;
+        for (Mac mac : macs) {
+            mac.reset();
+        }
+        try (InputStream in = RequestBodies.inputStream(request.getBody(), request.getIsBase64Encoded())) {
+            byte[] buffer = state.buffer;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (Mac mac : macs) {
+                    mac.update(buffer, 0, read);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new LambdaException(new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(BAD_REQUEST)
+                    .withBody("Malformed base64 body")
+                    .build());
+        }
+
+        boolean valid = false;
+        for (Mac mac : macs) {
+            try {
+                mac.doFinal(state.digest, 0);
+            }
+            catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+            // Every secret is checked, so the time taken does not reveal which one matched.
+            valid |= MessageDigest.isEqual(state.digest, signature);
+        }
+        if (!valid) {
+            throw unauthorised("Invalid signature");
+        }
+    }
+
+    private byte[] decodeSignature(String value) {
+        if (!value.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return null;
+        }
+        String encoded = value.substring(prefix.length());
+        if (base64Signature) {
+            try {
+                return Base64.getDecoder().decode(encoded);
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (encoded.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[encoded.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(encoded.charAt(i * 2), 16);
+            int low = Character.digit(encoded.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    private ThreadState createThreadState() {
+        Mac[] macs = new Mac[secrets.size()];
+        try {
+            for (int i = 0; i < macs.length; i++) {
+                macs[i] = Mac.getInstance(algorithm);
+                macs[i].init(new SecretKeySpec(secrets.get(i), algorithm));
+            }
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(String.format("Cannot compute %s signatures", algorithm), e);
+        }
+        return new ThreadState(macs);
+    }
+
+    private static LambdaException unauthorised(String message) {
+        return new LambdaException(new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(UNAUTHORIZED)
+                .withBody(message)
+                .build());
+    }
+
+    private static class ThreadState {
+        private final Mac[] macs;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] digest;
+
+        ThreadState(Mac[] macs) {
+            this.macs = macs;
+            this.digest = new byte[macs[0].getMacLength()];
+        }
+    }
+
+    public static class HmacSignatureVerifierBuilder {
+        private final List<byte[]> secrets = new ArrayList<>();
+        private String header = "X-Signature";
+        private String prefix = "sha256=";
+        private boolean base64Signature = false;
+        private String algorithm = "HmacSHA256";
+
+        /**
+         * Adds a secret that a valid signature may have been made with; add the new secret alongside the old one while
+         * rotating.
+         */
+        public HmacSignatureVerifierBuilder withSecret(byte[] secret) {
+            this.secrets.add(requireNonNull(secret).clone());
+            return this;
+        }
+
+        public HmacSignatureVerifierBuilder withHeader(String header) {
+            this.header = requireNonNull(header);
+            return this;
+        }
+
+        /**
+         * Sets the text that precedes the encoded signature in the header, {@code sha256=} by default.
+         */
+        public HmacSignatureVerifierBuilder withPrefix(String prefix) {
+            this.prefix = requireNonNull(prefix);
+            return this;
+        }
+
+        /**
+         * Expects the signature in base64 rather than in hex.
+         */
+        public HmacSignatureVerifierBuilder withBase64Signature(boolean base64Signature) {
+            this.base64Signature = base64Signature;
+            return this;
+        }
+
+        /**
+         * Sets the JCA name of the {@link Mac} algorithm, {@code HmacSHA256} by default.
+         */
+        public HmacSignatureVerifierBuilder withAlgorithm(String algorithm) {
+            this.algorithm = requireNonNull(algorithm);
+            return this;
+        }
+
+        public HmacSignatureVerifier build() {
+            if (secrets.isEmpty()) {
+                throw new IllegalArgumentException("At least one secret is required");
+            }
+            return new HmacSignatureVerifier(this);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.onelostlogician.aws.proxy;
+
+public enum HttpMethod {
+    GET,
+    HEAD,
+    POST,
+    PUT,
+    PATCH,
+    DELETE,
+    OPTIONS;
+
+    private static final HttpMethod[] VALUES = values();
+
+    private final String lowerCaseName = name().toLowerCase();
+
+    public String getLowerCaseName() {
+        return lowerCaseName;
+    }
+
+    /**
+     * Returns the method with the given name, ignoring case, or {@code null} if there is none. Unlike
+     * {@link #valueOf(String)} this neither allocates nor throws, so it is cheap enough to call on every request.
+     */
+    public static HttpMethod parse(String method) {
+        if (method == null) {
+            return null;
+        }
+        for (HttpMethod value : VALUES) {
+            String name = value.name();
+            if (name.length() == method.length() && name.regionMatches(true, 0, method, 0, name.length())) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * The status codes the proxy pipeline answers with, as compile-time constants, so that building a response does not
+ * initialise the JAX-RS {@code Response.Status} enum or its runtime delegate.
+ */
+public final class HttpStatus {
+    public static final int OK = 200;
+    public static final int PARTIAL_CONTENT = 206;
+    public static final int SEE_OTHER = 303;
+    public static final int NOT_MODIFIED = 304;
+    public static final int BAD_REQUEST = 400;
+    public static final int UNAUTHORIZED = 401;
+    public static final int CONFLICT = 409;
+    public static final int REQUEST_ENTITY_TOO_LARGE = 413;
+    public static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    public static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+    public static final int INTERNAL_SERVER_ERROR = 500;
+    public static final int BAD_GATEWAY = 502;
+    public static final int SERVICE_UNAVAILABLE = 503;
+
+    private HttpStatus() {}
+}
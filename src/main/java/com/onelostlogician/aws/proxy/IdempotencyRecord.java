@@ -0,0 +1,42 @@
+package com.onelostlogician.aws.proxy;
+
+import static java.util.Objects.requireNonNull;
+
+public final class IdempotencyRecord {
+    public enum State {
+        ACQUIRED,
+        IN_PROGRESS,
+        COMPLETED
+    }
+
+    private static final IdempotencyRecord ACQUIRED = new IdempotencyRecord(State.ACQUIRED, null);
+    private static final IdempotencyRecord IN_PROGRESS = new IdempotencyRecord(State.IN_PROGRESS, null);
+
+    private final State state;
+    private final ApiGatewayProxyResponse response;
+
+    private IdempotencyRecord(State state, ApiGatewayProxyResponse response) {
+        this.state = state;
+        this.response = response;
+    }
+
+    public static IdempotencyRecord acquired() {
+        return ACQUIRED;
+    }
+
+    public static IdempotencyRecord inProgress() {
+        return IN_PROGRESS;
+    }
+
+    public static IdempotencyRecord completed(ApiGatewayProxyResponse response) {
+        return new IdempotencyRecord(State.COMPLETED, requireNonNull(response));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public ApiGatewayProxyResponse getResponse() {
+        return response;
+    }
+}
@@ -0,0 +1,25 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * Holds the responses of requests that carried an {@code Idempotency-Key} header, so that retries are answered with
+ * the original response instead of being handled again.
+ *
+ * Method handlers are usually created per request, so a store must outlive them to be of any use; keep it in a static
+ * field or in the handler's {@link Configuration}. Implementations must be safe to use from multiple threads.
+ */
+public interface IdempotencyStore {
+    /**
+     * Claims the key for a request that is about to be handled, unless it is already claimed or completed.
+     */
+    IdempotencyRecord begin(String key) throws Exception;
+
+    /**
+     * Stores the response for a claimed key, to be replayed to any later request with the same key.
+     */
+    void complete(String key, ApiGatewayProxyResponse response) throws Exception;
+
+    /**
+     * Gives up a claimed key without storing a response, so that a retry will be handled again.
+     */
+    void release(String key) throws Exception;
+}
@@ -0,0 +1,85 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps idempotency records in the memory of the container, so duplicates are only detected when they reach the same
+ * container. Records expire after the given time to live, and the oldest are evicted once the store is full.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+    private final long timeToLiveInMillis;
+    private final int maximumEntries;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(long timeToLiveInMillis, int maximumEntries) {
+        if (timeToLiveInMillis <= 0 || maximumEntries <= 0) {
+            throw new IllegalArgumentException("Time to live and maximum entries must be positive");
+        }
+        this.timeToLiveInMillis = timeToLiveInMillis;
+        this.maximumEntries = maximumEntries;
+    }
+
+    @Override
+    public synchronized IdempotencyRecord begin(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.response == null
+                    ? IdempotencyRecord.inProgress()
+                    : IdempotencyRecord.completed(copy(entry.response));
+        }
+        entries.remove(key);
+        evict(now);
+        entries.put(key, new Entry(now + timeToLiveInMillis, null));
+        return IdempotencyRecord.acquired();
+    }
+
+    @Override
+    public synchronized void complete(String key, ApiGatewayProxyResponse response) {
+        entries.remove(key);
+        evict(System.currentTimeMillis());
+        entries.put(key, new Entry(System.currentTimeMillis() + timeToLiveInMillis, copy(response)));
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        entries.remove(key);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            // Entries are in insertion order and share a time to live, so they also expire in order.
+            if (entry.expiresAt > now && entries.size() < maximumEntries) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    // Responses are mutated downstream, for example to add CORS headers, so the store never shares them.
+    private static ApiGatewayProxyResponse copy(ApiGatewayProxyResponse response) {
+        Map<String, String> headers = response.getHeaders() == null ? null : new HashMap<>(response.getHeaders());
+        return response.builder()
+                .withHeaders(headers)
+                .build();
+    }
+
+    private static class Entry {
+        private final long expiresAt;
+        private final ApiGatewayProxyResponse response;
+
+        Entry(long expiresAt, ApiGatewayProxyResponse response) {
+            this.expiresAt = expiresAt;
+            this.response = response;
+        }
+    }
+}
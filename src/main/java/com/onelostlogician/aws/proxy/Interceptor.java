@@ -0,0 +1,44 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.Optional;
+
+/**
+ * A cross-cutting step, such as authentication or header enrichment, registered with
+ * {@link LambdaProxyHandler#registerInterceptor(Interceptor)}.
+ *
+ * The before hooks run in registration order and may short-circuit the request by returning a response; the after
+ * hooks run in reverse registration order and may replace the response. Interceptors are shared by every request, so
+ * they must be thread-safe.
+ */
+public interface Interceptor {
+    /**
+     * Runs before {@link LambdaProxyHandler#getConfiguration}, so it is the cheapest place to reject a request.
+     */
+    default Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) throws Exception {
+        return Optional.empty();
+    }
+
+    /**
+     * Runs once the method handler and media types are known, before the body is mapped.
+     */
+    default Optional<ApiGatewayProxyResponse> beforeMapping(ApiGatewayProxyRequest request, Context context) throws Exception {
+        return Optional.empty();
+    }
+
+    /**
+     * Runs on the response of the method handler.
+     */
+    default ApiGatewayProxyResponse afterHandle(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) throws Exception {
+        return response;
+    }
+
+    /**
+     * Runs on every response, including error and short-circuited responses, just before it is returned. An exception
+     * thrown here is logged and the response built so far is returned.
+     */
+    default ApiGatewayProxyResponse afterResponse(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+        return response;
+    }
+}
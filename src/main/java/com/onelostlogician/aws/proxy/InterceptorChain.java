@@ -0,0 +1,55 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compiles an ordered list of interceptors into nested pairs, so that running the chain is a fixed sequence of direct
+ * calls rather than an iteration over a list.
+ */
+final class InterceptorChain implements Interceptor {
+    static final Interceptor EMPTY = new Interceptor() {};
+
+    private final Interceptor first;
+    private final Interceptor rest;
+
+    private InterceptorChain(Interceptor first, Interceptor rest) {
+        this.first = first;
+        this.rest = rest;
+    }
+
+    static Interceptor compile(List<Interceptor> interceptors) {
+        if (interceptors.isEmpty()) {
+            return EMPTY;
+        }
+        Interceptor chain = interceptors.get(interceptors.size() - 1);
+        for (int i = interceptors.size() - 2; i >= 0; i--) {
+            chain = new InterceptorChain(interceptors.get(i), chain);
+        }
+        return chain;
+    }
+
+    @Override
+    public Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) throws Exception {
+        Optional<ApiGatewayProxyResponse> response = first.beforeConfiguration(request, context);
+        return response.isPresent() ? response : rest.beforeConfiguration(request, context);
+    }
+
+    @Override
+    public Optional<ApiGatewayProxyResponse> beforeMapping(ApiGatewayProxyRequest request, Context context) throws Exception {
+        Optional<ApiGatewayProxyResponse> response = first.beforeMapping(request, context);
+        return response.isPresent() ? response : rest.beforeMapping(request, context);
+    }
+
+    @Override
+    public ApiGatewayProxyResponse afterHandle(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) throws Exception {
+        return first.afterHandle(request, rest.afterHandle(request, response));
+    }
+
+    @Override
+    public ApiGatewayProxyResponse afterResponse(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+        return first.afterResponse(request, rest.afterResponse(request, response));
+    }
+}
@@ -0,0 +1,47 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.OK;
+import static java.util.Objects.requireNonNull;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+public class JsonAcceptMapper<Output> implements AcceptMapper<Output> {
+    private static final String JSON_CONTENT_TYPE = MediaType.JSON_UTF_8.toString();
+
+    private final ObjectWriter writer;
+    private final int statusCode;
+
+    public JsonAcceptMapper(Class<Output> outputClass) {
+        this(outputClass, OK);
+    }
+
+    public JsonAcceptMapper(Class<Output> outputClass, int statusCode) {
+        this.writer = JsonCodec.writerFor(requireNonNull(outputClass));
+        this.statusCode = statusCode;
+    }
+
+    public JsonAcceptMapper(Class<Output> outputClass, ObjectMapper objectMapper, int statusCode) {
+        this.writer = objectMapper.writerFor(requireNonNull(outputClass));
+        this.statusCode = statusCode;
+    }
+
+    @Override
+    public ApiGatewayProxyResponse outputToResponse(Output output) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, JSON_CONTENT_TYPE);
+        // writeValueAsString generates into segments borrowed from Jackson's per-thread buffer recycler, so the only
+        // allocation that outlives the call is the body itself.
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(statusCode)
+                .withHeaders(headers)
+                .withBody(writer.writeValueAsString(output))
+                .build();
+    }
+}
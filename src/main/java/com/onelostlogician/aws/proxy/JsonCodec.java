@@ -0,0 +1,29 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class JsonCodec {
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // Method handlers (and so their mappers) are constructed on every request, so the type-specific readers and
+    // writers are cached here for the lifetime of the container rather than on the mapper instances.
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private JsonCodec() {}
+
+    static ObjectReader readerFor(Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, OBJECT_MAPPER::readerFor);
+    }
+
+    static ObjectWriter writerFor(Class<?> clazz) {
+        return WRITERS.computeIfAbsent(clazz, OBJECT_MAPPER::writerFor);
+    }
+}
@@ -0,0 +1,105 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.io.IOException;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+import static java.util.Objects.requireNonNull;
+
+public class JsonContentTypeMapper<Input> implements ContentTypeMapper<Input> {
+    /**
+     * The body parsed as a JSON tree, attached by {@link #readTree}.
+     */
+    public static final ApiGatewayProxyRequest.AttachmentKey<JsonNode> JSON_TREE = new ApiGatewayProxyRequest.AttachmentKey<>("json-tree");
+    private static final ApiGatewayProxyRequest.AttachmentKey<ObjectMapper> JSON_TREE_MAPPER = new ApiGatewayProxyRequest.AttachmentKey<>("json-tree-mapper");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+
+    public JsonContentTypeMapper(Class<Input> inputClass) {
+        this.objectMapper = JsonCodec.OBJECT_MAPPER;
+        this.reader = JsonCodec.readerFor(requireNonNull(inputClass));
+    }
+
+    public JsonContentTypeMapper(Class<Input> inputClass, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(requireNonNull(inputClass));
+    }
+
+    /**
+     * Parses the body as a JSON tree once per request, for stages such as validation hooks that run before the mapper;
+     * the mapper then binds its input from the tree instead of parsing the body again.
+     */
+    public static JsonNode readTree(ApiGatewayProxyRequest request) throws LambdaException {
+        return readTree(request, JsonCodec.OBJECT_MAPPER);
+    }
+
+    /**
+     * As {@link #readTree(ApiGatewayProxyRequest)}, for mappers constructed with their own {@link ObjectMapper}. Only
+     * a mapper with the same ObjectMapper reuses the tree; any other parses the body again.
+     */
+    public static JsonNode readTree(ApiGatewayProxyRequest request, ObjectMapper objectMapper) throws LambdaException {
+        return request.computeAttachmentIfAbsent(JSON_TREE, () -> {
+            requireBody(request);
+            // Floating point numbers are kept as BigDecimal so that binding from the tree loses no precision.
+            ObjectReader treeReader = objectMapper.reader().with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+            try {
+                JsonNode tree = request.getIsBase64Encoded()
+                        ? treeReader.readTree(request.getBodyAsInputStream())
+                        : treeReader.readTree(request.getBody());
+                request.setAttachment(JSON_TREE_MAPPER, objectMapper);
+                return tree;
+            }
+            catch (IOException e) {
+                throw malformedBody(e);
+            }
+        });
+    }
+
+    @Override
+    public Input toInput(ApiGatewayProxyRequest request, Context context) throws Exception {
+        try {
+            JsonNode tree = request.getAttachment(JSON_TREE);
+            if (tree != null && request.getAttachment(JSON_TREE_MAPPER) == objectMapper) {
+                return reader.readValue(tree);
+            }
+            requireBody(request);
+            if (request.getIsBase64Encoded()) {
+                return reader.readValue(request.getBodyAsInputStream());
+            }
+            return reader.readValue(request.getBody());
+        }
+        catch (IOException e) {
+            throw malformedBody(e);
+        }
+    }
+
+    private static void requireBody(ApiGatewayProxyRequest request) throws LambdaException {
+        if (request.getBody() == null) {
+            throw malformedBody("Malformed JSON body. The request has no body");
+        }
+    }
+
+    private static LambdaException malformedBody(IOException e) {
+        RequestBodies.rethrowIfTooLarge(e);
+        String message = e instanceof JsonProcessingException
+                ? String.format("Malformed JSON body. %s", ((JsonProcessingException) e).getOriginalMessage())
+                : RequestBodies.describeReadFailure(e);
+        return malformedBody(message);
+    }
+
+    private static LambdaException malformedBody(String message) {
+        ApiGatewayProxyResponse malformedBody = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(BAD_REQUEST)
+                .withBody(message)
+                .build();
+        return new LambdaException(malformedBody);
+    }
+}
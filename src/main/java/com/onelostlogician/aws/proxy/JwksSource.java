@@ -0,0 +1,25 @@
+package com.onelostlogician.aws.proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Supplies a JSON Web Key Set document for a {@link JwtVerifier}, which caches the keys it contains.
+ */
+@FunctionalInterface
+public interface JwksSource {
+    String load() throws Exception;
+
+    static JwksSource fromFile(Path path) {
+        requireNonNull(path);
+        return () -> new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    static JwksSource fromString(String jwks) {
+        requireNonNull(jwks);
+        return () -> jwks;
+    }
+}
@@ -0,0 +1,41 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rejects requests without a valid {@code Authorization: Bearer} token with a 401, before the handler's configuration
+ * is loaded, and attaches the verified claims to the request under {@link #CLAIMS}. CORS preflight requests carry no
+ * credentials and are let through.
+ */
+public class JwtInterceptor implements Interceptor {
+    public static final ApiGatewayProxyRequest.AttachmentKey<JsonNode> CLAIMS = new ApiGatewayProxyRequest.AttachmentKey<>("jwt-claims");
+    private static final String AUTHORIZATION = "authorization";
+    private static final String BEARER = "Bearer ";
+
+    private final JwtVerifier verifier;
+
+    public JwtInterceptor(JwtVerifier verifier) {
+        this.verifier = requireNonNull(verifier);
+    }
+
+    @Override
+    public Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) throws LambdaException {
+        if (HttpMethod.parse(request.getHttpMethod()) != HttpMethod.OPTIONS) {
+            request.setAttachment(CLAIMS, verifier.verify(getBearerToken(request)));
+        }
+        return Optional.empty();
+    }
+
+    static String getBearerToken(ApiGatewayProxyRequest request) {
+        String authorization = RequestValidator.getHeader(request.getHeaders(), AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        return authorization.substring(BEARER.length()).trim();
+    }
+}
@@ -0,0 +1,426 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.UNAUTHORIZED;
+import static java.util.Collections.singletonMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Verifies RS256/384/512 and ES256/384/512 signed JSON Web Tokens against the keys of a {@link JwksSource}.
+ *
+ * Keys are parsed once and kept until their time to live passes, or until a token names a key id that is not known.
+ * Tokens that verify are remembered, by a SHA-256 hash, until they expire, so a warm container seeing a repeated token
+ * skips both parsing and the signature check. Instances are thread-safe and meant to be shared across requests.
+ */
+public class JwtVerifier {
+    private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwksSource jwksSource;
+    private final long keyTimeToLiveInMillis;
+    private final long clockSkewInSeconds;
+    private final String issuer;
+    private final String audience;
+    private final LinkedHashMap<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    private volatile Keys keys;
+
+    private JwtVerifier(JwksSource jwksSource, long keyTimeToLiveInMillis, long clockSkewInSeconds, String issuer, String audience, int maximumCachedTokens) {
+        this.jwksSource = jwksSource;
+        this.keyTimeToLiveInMillis = keyTimeToLiveInMillis;
+        this.clockSkewInSeconds = clockSkewInSeconds;
+        this.issuer = issuer;
+        this.audience = audience;
+        this.verifiedTokens = new LinkedHashMap<ByteBuffer, VerifiedToken>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+                return size() > maximumCachedTokens;
+            }
+        };
+    }
+
+    /**
+     * Returns the claims of the token, or throws a {@link LambdaException} carrying a 401 response if the token is
+     * malformed, expired, not yet valid, for another issuer or audience, or not signed by a known key. The claims are the
+     * caller's own copy, so changing them does not affect later verifications of the same token.
+     */
+    public JsonNode verify(String token) throws LambdaException {
+        if (token == null || token.isEmpty()) {
+            throw unauthorised("Missing bearer token");
+        }
+        long nowInSeconds = System.currentTimeMillis() / 1000;
+        ByteBuffer hash = ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        VerifiedToken verified;
+        synchronized (verifiedTokens) {
+            verified = verifiedTokens.get(hash);
+        }
+        if (verified != null) {
+            if (nowInSeconds <= verified.expiresAt + clockSkewInSeconds) {
+                return verified.claims.deepCopy();
+            }
+            synchronized (verifiedTokens) {
+                verifiedTokens.remove(hash);
+            }
+            throw unauthorised("Token has expired");
+        }
+
+        JsonNode claims = verifyUncached(token, nowInSeconds);
+        JsonNode exp = claims.get("exp");
+        // Tokens without an expiry are verified every time rather than trusted indefinitely.
+        if (exp != null && exp.canConvertToLong()) {
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(hash, new VerifiedToken(claims, exp.asLong()));
+            }
+            return claims.deepCopy();
+        }
+        return claims;
+    }
+
+    int getCachedTokenCount() {
+        synchronized (verifiedTokens) {
+            return verifiedTokens.size();
+        }
+    }
+
+    private JsonNode verifyUncached(String token, long nowInSeconds) throws LambdaException {
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot < 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw unauthorised("Malformed token");
+        }
+
+        JsonNode header;
+        JsonNode claims;
+        byte[] signature;
+        try {
+            header = JsonCodec.OBJECT_MAPPER.readTree(BASE64_URL.decode(token.substring(0, firstDot)));
+            claims = JsonCodec.OBJECT_MAPPER.readTree(BASE64_URL.decode(token.substring(firstDot + 1, secondDot)));
+            signature = BASE64_URL.decode(token.substring(secondDot + 1));
+        }
+        catch (Exception e) {
+            throw unauthorised("Malformed token");
+        }
+        if (header == null || !header.isObject() || claims == null || !claims.isObject()) {
+            throw unauthorised("Malformed token");
+        }
+
+        Algorithm algorithm = Algorithm.forName(header.path("alg").asText());
+        if (algorithm == null) {
+            throw unauthorised("Unsupported token algorithm");
+        }
+        PublicKey key = getKey(header.path("kid").asText(null), algorithm);
+        try {
+            Signature verifier = Signature.getInstance(algorithm.javaName);
+            verifier.initVerify(key);
+            verifier.update(token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII));
+            byte[] encodedSignature = algorithm.isEcdsa() ? toDer(signature, algorithm.coordinateLength) : signature;
+            if (encodedSignature == null || !verifier.verify(encodedSignature)) {
+                throw unauthorised("Invalid token signature");
+            }
+        }
+        catch (GeneralSecurityException e) {
+            throw unauthorised("Invalid token signature");
+        }
+
+        JsonNode exp = claims.get("exp");
+        if (exp != null && nowInSeconds > exp.asLong() + clockSkewInSeconds) {
+            throw unauthorised("Token has expired");
+        }
+        JsonNode nbf = claims.get("nbf");
+        if (nbf != null && nowInSeconds + clockSkewInSeconds < nbf.asLong()) {
+            throw unauthorised("Token is not yet valid");
+        }
+        if (issuer != null && !issuer.equals(claims.path("iss").asText(null))) {
+            throw unauthorised("Token has the wrong issuer");
+        }
+        if (audience != null && !hasAudience(claims.get("aud"))) {
+            throw unauthorised("Token has the wrong audience");
+        }
+        return claims;
+    }
+
+    private boolean hasAudience(JsonNode aud) {
+        if (aud == null) {
+            return false;
+        }
+        if (aud.isArray()) {
+            for (JsonNode value : aud) {
+                if (audience.equals(value.asText())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return audience.equals(aud.asText());
+    }
+
+    private PublicKey getKey(String keyId, Algorithm algorithm) throws LambdaException {
+        Keys current = keys;
+        long now = System.currentTimeMillis();
+        if (current == null || now >= current.expiresAt) {
+            current = reloadKeys(current, now);
+        }
+        PublicKey key = current.find(keyId, algorithm);
+        if (key == null && now >= current.loadedAt + 1000) {
+            // An unknown key id usually means the keys were rotated; reload, but at most once a second.
+            current = reloadKeys(current, now);
+            key = current.find(keyId, algorithm);
+        }
+        if (key == null) {
+            throw unauthorised("Token is not signed by a known key");
+        }
+        return key;
+    }
+
+    private synchronized Keys reloadKeys(Keys stale, long now) throws LambdaException {
+        if (keys != stale) {
+            return keys;
+        }
+        try {
+            keys = parseKeys(jwksSource.load(), now, now + keyTimeToLiveInMillis);
+            return keys;
+        }
+        catch (Exception e) {
+            if (stale != null) {
+                return stale;
+            }
+            throw new IllegalStateException("Unable to load the JSON Web Key Set", e);
+        }
+    }
+
+    private static Keys parseKeys(String jwks, long loadedAt, long expiresAt) throws Exception {
+        Map<String, PublicKey> keysById = new HashMap<>();
+        Map<String, PublicKey> keysByType = new HashMap<>();
+        for (JsonNode jwk : JsonCodec.OBJECT_MAPPER.readTree(jwks).path("keys")) {
+            String use = jwk.path("use").asText("sig");
+            if (!use.equals("sig")) {
+                continue;
+            }
+            PublicKey key;
+            String keyType = jwk.path("kty").asText();
+            if (keyType.equals("RSA")) {
+                key = KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                        unsigned(jwk.path("n").asText()),
+                        unsigned(jwk.path("e").asText())));
+            }
+            else if (keyType.equals("EC")) {
+                String curve = curveName(jwk.path("crv").asText());
+                if (curve == null) {
+                    continue;
+                }
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(curve));
+                ECPoint point = new ECPoint(unsigned(jwk.path("x").asText()), unsigned(jwk.path("y").asText()));
+                key = KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, parameters.getParameterSpec(ECParameterSpec.class)));
+            }
+            else {
+                continue;
+            }
+            String keyId = jwk.path("kid").asText(null);
+            if (keyId != null) {
+                keysById.put(keyId, key);
+            }
+            keysByType.putIfAbsent(keyType, key);
+        }
+        return new Keys(keysById, keysByType, loadedAt, expiresAt);
+    }
+
+    private static String curveName(String crv) {
+        switch (crv) {
+            case "P-256":
+                return "secp256r1";
+            case "P-384":
+                return "secp384r1";
+            case "P-521":
+                return "secp521r1";
+            default:
+                return null;
+        }
+    }
+
+    private static BigInteger unsigned(String base64Url) {
+        return new BigInteger(1, BASE64_URL.decode(base64Url));
+    }
+
+    /**
+     * JWS carries ECDSA signatures as the concatenated big-endian r and s values, while the JCA expects DER.
+     */
+    static byte[] toDer(byte[] signature, int coordinateLength) {
+        if (signature.length != coordinateLength * 2) {
+            return null;
+        }
+        byte[] r = derInteger(signature, 0, coordinateLength);
+        byte[] s = derInteger(signature, coordinateLength, coordinateLength);
+        int contentLength = r.length + s.length;
+        ByteArrayOutputStream der = new ByteArrayOutputStream(contentLength + 3);
+        der.write(0x30);
+        if (contentLength > 127) {
+            der.write(0x81);
+        }
+        der.write(contentLength);
+        der.write(r, 0, r.length);
+        der.write(s, 0, s.length);
+        return der.toByteArray();
+    }
+
+    private static byte[] derInteger(byte[] bytes, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end - 1 && bytes[start] == 0) {
+            start++;
+        }
+        boolean needsPadding = (bytes[start] & 0x80) != 0;
+        int valueLength = end - start + (needsPadding ? 1 : 0);
+        byte[] integer = new byte[valueLength + 2];
+        integer[0] = 0x02;
+        integer[1] = (byte) valueLength;
+        System.arraycopy(bytes, start, integer, needsPadding ? 3 : 2, end - start);
+        return integer;
+    }
+
+    private static LambdaException unauthorised(String message) {
+        ApiGatewayProxyResponse unauthorised = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(UNAUTHORIZED)
+                .withHeaders(new HashMap<>(singletonMap("WWW-Authenticate", "Bearer error=\"invalid_token\"")))
+                .withBody(message)
+                .build();
+        return new LambdaException(unauthorised);
+    }
+
+    private enum Algorithm {
+        RS256("SHA256withRSA", "RSA", 0),
+        RS384("SHA384withRSA", "RSA", 0),
+        RS512("SHA512withRSA", "RSA", 0),
+        ES256("SHA256withECDSA", "EC", 32),
+        ES384("SHA384withECDSA", "EC", 48),
+        ES512("SHA512withECDSA", "EC", 66);
+
+        private final String javaName;
+        private final String keyType;
+        private final int coordinateLength;
+
+        Algorithm(String javaName, String keyType, int coordinateLength) {
+            this.javaName = javaName;
+            this.keyType = keyType;
+            this.coordinateLength = coordinateLength;
+        }
+
+        boolean isEcdsa() {
+            return coordinateLength > 0;
+        }
+
+        static Algorithm forName(String name) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name().equals(name)) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Keys {
+        private final Map<String, PublicKey> keysById;
+        private final Map<String, PublicKey> keysByType;
+        private final long loadedAt;
+        private final long expiresAt;
+
+        Keys(Map<String, PublicKey> keysById, Map<String, PublicKey> keysByType, long loadedAt, long expiresAt) {
+            this.keysById = keysById;
+            this.keysByType = keysByType;
+            this.loadedAt = loadedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        PublicKey find(String keyId, Algorithm algorithm) {
+            PublicKey key = keyId == null ? keysByType.get(algorithm.keyType) : keysById.get(keyId);
+            return key != null && key.getAlgorithm().equals(algorithm.keyType) ? key : null;
+        }
+    }
+
+    private static class VerifiedToken {
+        private final JsonNode claims;
+        private final long expiresAt;
+
+        VerifiedToken(JsonNode claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class JwtVerifierBuilder {
+        private JwksSource jwksSource;
+        private long keyTimeToLiveInMillis = 3_600_000;
+        private long clockSkewInSeconds = 60;
+        private String issuer;
+        private String audience;
+        private int maximumCachedTokens = 10_000;
+
+        public JwtVerifierBuilder withJwksSource(JwksSource jwksSource) {
+            this.jwksSource = jwksSource;
+            return this;
+        }
+
+        public JwtVerifierBuilder withKeyTimeToLive(long keyTimeToLiveInMillis) {
+            this.keyTimeToLiveInMillis = keyTimeToLiveInMillis;
+            return this;
+        }
+
+        public JwtVerifierBuilder withClockSkew(long clockSkewInSeconds) {
+            this.clockSkewInSeconds = clockSkewInSeconds;
+            return this;
+        }
+
+        public JwtVerifierBuilder withIssuer(String issuer) {
+            this.issuer = issuer;
+            return this;
+        }
+
+        public JwtVerifierBuilder withAudience(String audience) {
+            this.audience = audience;
+            return this;
+        }
+
+        public JwtVerifierBuilder withMaximumCachedTokens(int maximumCachedTokens) {
+            this.maximumCachedTokens = maximumCachedTokens;
+            return this;
+        }
+
+        public JwtVerifier build() {
+            if (keyTimeToLiveInMillis < 0 || clockSkewInSeconds < 0 || maximumCachedTokens < 0) {
+                throw new IllegalArgumentException("Time to live, clock skew and maximum cached tokens must not be negative");
+            }
+            return new JwtVerifier(requireNonNull(jwksSource), keyTimeToLiveInMillis, clockSkewInSeconds, issuer, audience, maximumCachedTokens);
+        }
+    }
+}
@@ -7,8 +7,6 @@ import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResp
 import org.apache.log4j.Logger;
 import org.json.simple.JSONObject;
 
-import javax.ws.rs.core.Response;
-import javax.ws.rs.core.Response.Status;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
@@ -16,23 +14,35 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.onelostlogician.aws.proxy.HttpStatus.*;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static javax.ws.rs.core.HttpHeaders.ACCEPT;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
-import static javax.ws.rs.core.Response.Status.*;
 
 public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Configuration>
         implements RequestHandler<ApiGatewayProxyRequest, ApiGatewayProxyResponse> {
     private static final String ACCESS_CONTROL_REQUEST_METHOD = "Access-Control-Request-Method".toLowerCase();
     private static final String ACCESS_CONTROL_REQUEST_HEADERS = "Access-Control-Request-Headers".toLowerCase();
+    private static final String CONTENT_ENCODING = "Content-Encoding".toLowerCase();
     private static final String ORIGIN_HEADER = "Origin".toLowerCase();
     private static final String MEDIA_TYPE_LIST_SEPARATOR = ",";
     private final Logger logger = Logger.getLogger(getClass());
     private final boolean corsSupport;
-    private final Map<String, Function<MethodHandlerConfiguration, MethodHandler>> methodHandlerMap;
+    private final Map<HttpMethod, Function<MethodHandlerConfiguration, MethodHandler>> methodHandlerMap;
+    // Handlers for methods outside HttpMethod, by lower-case name.
+    private final Map<String, Function<MethodHandlerConfiguration, MethodHandler>> otherMethodHandlerMap = new HashMap<>();
+    private final List<Interceptor> interceptors = new ArrayList<>();
+    private final Map<HttpMethod, Map<String, List<StaticResponse>>> staticResponseMap = new EnumMap<>(HttpMethod.class);
+    private volatile Function<MethodHandlerConfiguration, MethodHandler>[] dispatchTable;
+    private Map<String, Function<MethodHandlerConfiguration, MethodHandler>> otherMethodTable = new HashMap<>();
+    private Interceptor interceptor = InterceptorChain.EMPTY;
+    private StaticRoutes staticRoutes = StaticRoutes.EMPTY;
+    private Tracer tracer;
+    private ResponseOffloader responseOffloader;
+    private final ContainerState containerState = new ContainerState(Runtime.getRuntime().maxMemory() / 4);
 
     public LambdaProxyHandler(boolean withCORSSupport) {
         this(withCORSSupport, new HashMap<>());
@@ -40,73 +50,148 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
 
     public LambdaProxyHandler(boolean withCORSSupport, Map<String, Function<MethodHandlerConfiguration, MethodHandler>> methodHandlerMap) {
         this.corsSupport = withCORSSupport;
-        this.methodHandlerMap = keyValuesToLowerCase(methodHandlerMap);
+        this.methodHandlerMap = new EnumMap<>(HttpMethod.class);
+        methodHandlerMap.forEach(this::registerMethodHandler);
     }
 
-    public void registerMethodHandler(String method, Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstuctor) {
-        methodHandlerMap.put(method.toLowerCase(), methodHandlerConstuctor);
+    /**
+     * Registers the handler for the method, ignoring case. Methods in {@link HttpMethod} are dispatched through the
+     * frozen table; any other method, such as a WebDAV extension, is looked up by name instead.
+     */
+    public synchronized void registerMethodHandler(String method, Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstuctor) {
+        HttpMethod httpMethod = HttpMethod.parse(requireNonNull(method));
+        if (httpMethod != null) {
+            registerMethodHandler(httpMethod, methodHandlerConstuctor);
+            return;
+        }
+        if (dispatchTable != null) {
+            throw new IllegalStateException(String.format("Cannot register a handler for %s after the handler has been frozen", method));
+        }
+        otherMethodHandlerMap.put(method.toLowerCase(), requireNonNull(methodHandlerConstuctor));
+    }
+
+    public synchronized void registerMethodHandler(HttpMethod method, Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstuctor) {
+        if (dispatchTable != null) {
+            throw new IllegalStateException(String.format("Cannot register a handler for %s after the handler has been frozen", method));
+        }
+        methodHandlerMap.put(requireNonNull(method), requireNonNull(methodHandlerConstuctor));
+    }
+
+    public synchronized void registerInterceptor(Interceptor interceptor) {
+        if (dispatchTable != null) {
+            throw new IllegalStateException("Cannot register an interceptor after the handler has been frozen");
+        }
+        interceptors.add(requireNonNull(interceptor));
+    }
+
+    /**
+     * Answers requests with the method and path with the static response, if their {@code Accept} header admits its
+     * media type, without getting a configuration, building a method handler or running a mapper. Several media types
+     * can be registered for one path; the first the client accepts is served. Interceptors still run.
+     */
+    public synchronized void registerStaticResponse(HttpMethod method, String path, StaticResponse response) {
+        if (dispatchTable != null) {
+            throw new IllegalStateException(String.format("Cannot register a static response for %s %s after the handler has been frozen", method, path));
+        }
+        staticResponseMap.computeIfAbsent(requireNonNull(method), key -> new HashMap<>())
+                .computeIfAbsent(requireNonNull(path), key -> new ArrayList<>())
+                .add(requireNonNull(response));
+    }
+
+    /**
+     * Traces requests, with spans for configuration, negotiation, input mapping, handling and output mapping.
+     */
+    public synchronized void registerTracer(Tracer tracer) {
+        if (dispatchTable != null) {
+            throw new IllegalStateException("Cannot register a tracer after the handler has been frozen");
+        }
+        this.tracer = requireNonNull(tracer);
+    }
+
+    /**
+     * Moves successful response bodies that are too large for the Lambda response payload into the blob store, and
+     * answers with a redirect to, or a pointer document for, the stored copy.
+     */
+    public void registerBlobStore(BlobStore blobStore, OffloadMode mode) {
+        registerBlobStore(blobStore, mode, ResponseOffloader.DEFAULT_MAX_BODY_SIZE);
+    }
+
+    public synchronized void registerBlobStore(BlobStore blobStore, OffloadMode mode, long maxBodySize) {
+        if (dispatchTable != null) {
+            throw new IllegalStateException("Cannot register a blob store after the handler has been frozen");
+        }
+        this.responseOffloader = new ResponseOffloader(blobStore, mode, maxBodySize);
+    }
+
+    /**
+     * Ends registration, compiling the registered method handlers into an immutable table indexed by {@link HttpMethod}
+     * and the registered interceptors into a single chain, so that dispatch neither allocates nor locks. This happens on the first request if it has not been done before,
+     * and any later registration fails.
+     */
+    public synchronized void freeze() {
+        if (dispatchTable == null) {
+            Function<MethodHandlerConfiguration, MethodHandler>[] table = new Function[HttpMethod.values().length];
+            methodHandlerMap.forEach((method, methodHandlerConstructor) -> table[method.ordinal()] = methodHandlerConstructor);
+            // Written before the volatile dispatch table, so any thread that sees the table also sees the chain and the
+            // handlers for other methods.
+            interceptor = InterceptorChain.compile(new ArrayList<>(interceptors));
+            otherMethodTable = new HashMap<>(otherMethodHandlerMap);
+            staticRoutes = StaticRoutes.compile(staticResponseMap);
+            dispatchTable = table;
+        }
+    }
+
+    private Function<MethodHandlerConfiguration, MethodHandler>[] getDispatchTable() {
+        Function<MethodHandlerConfiguration, MethodHandler>[] table = dispatchTable;
+        if (table == null) {
+            freeze();
+            table = dispatchTable;
+        }
+        return table;
     }
 
     @Override
     public ApiGatewayProxyResponse handleRequest(ApiGatewayProxyRequest request, Context context) {
-        ApiGatewayProxyResponse response;
+        Function<MethodHandlerConfiguration, MethodHandler>[] table = getDispatchTable();
+        Span span = tracer == null ? Span.NOOP : tracer.startRequest(request);
         try {
-            MethodHandlerConfiguration configuration;
+            ApiGatewayProxyResponse response = handleRequest(request, context, table);
+            if (span.isRecording()) {
+                span.setAttribute("http.status_code", Integer.toString(response.getStatusCode()));
+            }
+            return response;
+        }
+        finally {
             try {
-                configuration = getConfiguration(request, context);
+                request.closeAttachments();
             }
             catch (Exception e) {
-                throw new LambdaException(getServerErrorResponse("This service is mis-configured. Please contact your system administrator.\n", e));
+                logger.warn("Failed to close request attachments", e);
             }
+            span.end();
+        }
+    }
 
-            String method = request.getHttpMethod().toLowerCase();
-            logger.info("Method: " + method + "\n");
-
-            if (corsSupport && method.toLowerCase().equals("options")) {
-                handleCORSRequest(request, configuration);
-            }
-            else if (!methodHandlerMap.keySet().contains(method)) {
-                ApiGatewayProxyResponse wrongMethod =
-                        new ApiGatewayProxyResponseBuilder()
-                                .withStatusCode(BAD_REQUEST.getStatusCode())
-                                .withBody(String.format("Lambda cannot handle the method %s", method))
-                                .build();
-                throw new LambdaException(wrongMethod);
+    private ApiGatewayProxyResponse handleRequest(ApiGatewayProxyRequest request, Context context, Function<MethodHandlerConfiguration, MethodHandler>[] table) {
+        ApiGatewayProxyResponse response;
+        HttpMethod httpMethod = HttpMethod.parse(request.getHttpMethod());
+        Interceptor interceptor = this.interceptor;
+        try {
+            Optional<ApiGatewayProxyResponse> shortCircuit = interceptor.beforeConfiguration(request, context);
+            if (shortCircuit.isPresent()) {
+                throw new LambdaException(shortCircuit.get());
             }
-            MethodHandler methodHandler = getMethodHandler(configuration, method);
-            Map<String, String> headers = keyValuesToLowerCase(request.getHeaders());
 
-            String contentTypeHeader = CONTENT_TYPE.toLowerCase();
-            validateHeaderOrThrow(headers, contentTypeHeader, UNSUPPORTED_MEDIA_TYPE);
-            String acceptHeader = ACCEPT.toLowerCase();
-            validateHeaderOrThrow(headers, acceptHeader, UNSUPPORTED_MEDIA_TYPE);
-
-            List<MediaType> contentTypes;
-            List<MediaType> acceptTypes;
-            try {
-                String contentTypeString = requireNonNull(headers.get(contentTypeHeader)).toLowerCase();
-                contentTypes = getContentTypes(contentTypeString);
-                String acceptString = requireNonNull(headers.get(acceptHeader)).toLowerCase();
-                acceptTypes = getContentTypes(acceptString);
-            }
-            catch (IllegalArgumentException e) {
-                ApiGatewayProxyResponse malformedMediaType =
-                        new ApiGatewayProxyResponseBuilder()
-                                .withStatusCode(BAD_REQUEST.getStatusCode())
-                                .withBody(String.format("Malformed media type. %s", e.getMessage()))
-                                .build();
-                throw new LambdaException(malformedMediaType);
+            response = staticRoutes.serve(httpMethod, request);
+            if (response == null) {
+                response = handleDynamicRequest(request, context, table, httpMethod, interceptor);
             }
-
-            logger.info("Content-Type: " + contentTypes + "\n");
-            logger.info("Accept: " + acceptTypes + "\n");
-
-            response = methodHandler.handle(request, contentTypes, acceptTypes, context);
+            response = interceptor.afterHandle(request, response);
         }
         catch (Error e) {
             logger.error(request);
             response = new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(INTERNAL_SERVER_ERROR.getStatusCode())
+                            .withStatusCode(INTERNAL_SERVER_ERROR)
                             .withBody(String.format("Failed to parse: %s", request))
                             .build();
         }
@@ -118,7 +203,7 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
             response = getServerErrorResponse("", e);
         }
 
-        if (!request.getHttpMethod().toLowerCase().equals("options")) {
+        if (httpMethod != HttpMethod.OPTIONS) {
             Map<String, String> headers = response.getHeaders();
             headers.put("Access-Control-Allow-Origin", "*");
             response = response.builder()
@@ -126,10 +211,105 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
                     .build();
         }
 
+        try {
+            response = interceptor.afterResponse(request, response);
+        }
+        catch (RuntimeException e) {
+            logger.error("An interceptor failed after the response was built; returning it unchanged", e);
+        }
+
         logger.info(String.format("Completed response: %s with size %s.\n", response.getStatusCode(), response.getBody().length()));
         return response;
     }
 
+    private ApiGatewayProxyResponse handleDynamicRequest(
+            ApiGatewayProxyRequest request,
+            Context context,
+            Function<MethodHandlerConfiguration, MethodHandler>[] table,
+            HttpMethod httpMethod,
+            Interceptor interceptor
+    ) throws Exception {
+        MethodHandlerConfiguration configuration;
+        Span configurationSpan = Tracer.startSpan("configuration");
+        try {
+            configuration = getConfiguration(request, context);
+        }
+        catch (Exception e) {
+            throw new LambdaException(getServerErrorResponse("This service is mis-configured. Please contact your system administrator.\n", e));
+        }
+        finally {
+            configurationSpan.end();
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Method: " + request.getHttpMethod() + "\n");
+        }
+
+        if (corsSupport && httpMethod == HttpMethod.OPTIONS) {
+            handleCORSRequest(request, configuration, table);
+        }
+        Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstructor = getMethodHandlerConstructor(table, httpMethod, request.getHttpMethod());
+        if (methodHandlerConstructor == null) {
+            throw new LambdaException(getWrongMethodResponse(request.getHttpMethod()));
+        }
+        MethodHandler methodHandler = methodHandlerConstructor.apply(configuration);
+        List<MediaType> contentTypes;
+        List<MediaType> acceptTypes;
+        String contentEncoding;
+        Span negotiationSpan = Tracer.startSpan("negotiation");
+        try {
+            Map<String, String> headers = keyValuesToLowerCase(request.getHeaders());
+
+            String contentTypeHeader = CONTENT_TYPE.toLowerCase();
+            validateHeaderOrThrow(headers, contentTypeHeader, UNSUPPORTED_MEDIA_TYPE);
+            String acceptHeader = ACCEPT.toLowerCase();
+            validateHeaderOrThrow(headers, acceptHeader, UNSUPPORTED_MEDIA_TYPE);
+
+            String contentTypeString = requireNonNull(headers.get(contentTypeHeader)).toLowerCase();
+            contentTypes = getContentTypes(contentTypeString);
+            String acceptString = requireNonNull(headers.get(acceptHeader)).toLowerCase();
+            acceptTypes = getContentTypes(acceptString);
+            contentEncoding = headers.get(CONTENT_ENCODING);
+        }
+        catch (IllegalArgumentException e) {
+            ApiGatewayProxyResponse malformedMediaType =
+                    new ApiGatewayProxyResponseBuilder()
+                            .withStatusCode(BAD_REQUEST)
+                            .withBody(String.format("Malformed media type. %s", e.getMessage()))
+                            .build();
+            throw new LambdaException(malformedMediaType);
+        }
+        finally {
+            negotiationSpan.end();
+        }
+
+        logger.info("Content-Type: " + contentTypes + "\n");
+        logger.info("Accept: " + acceptTypes + "\n");
+
+        Optional<ApiGatewayProxyResponse> shortCircuit = interceptor.beforeMapping(request, context);
+        if (shortCircuit.isPresent()) {
+            throw new LambdaException(shortCircuit.get());
+        }
+
+        ApiGatewayProxyResponse response = methodHandler.handle(request, contentTypes, acceptTypes, contentEncoding, context);
+        response = Ranges.apply(request, httpMethod, response);
+        if (responseOffloader != null) {
+            response = responseOffloader.apply(response);
+        }
+        return response;
+    }
+
+    private Function<MethodHandlerConfiguration, MethodHandler> getMethodHandlerConstructor(
+            Function<MethodHandlerConfiguration, MethodHandler>[] table,
+            HttpMethod httpMethod,
+            String method
+    ) {
+        if (httpMethod != null) {
+            return table[httpMethod.ordinal()];
+        }
+        return method == null || otherMethodTable.isEmpty() ? null : otherMethodTable.get(method.toLowerCase());
+    }
+
     private List<MediaType> getContentTypes(String contentTypeString) {
         return Stream.of(contentTypeString.split(MEDIA_TYPE_LIST_SEPARATOR))
                 .filter(Objects::nonNull)
@@ -140,37 +320,36 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
 
     private void handleCORSRequest(
             ApiGatewayProxyRequest request,
-            MethodHandlerConfiguration configuration
+            MethodHandlerConfiguration configuration,
+            Function<MethodHandlerConfiguration, MethodHandler>[] table
     ) throws LambdaException {
         Map<String, String> headers = keyValuesToLowerCase(request.getHeaders());
         if (!headers.keySet().contains(ORIGIN_HEADER)) {
             ApiGatewayProxyResponse wrongHeaders = new ApiGatewayProxyResponseBuilder()
-                    .withStatusCode(BAD_REQUEST.getStatusCode())
+                    .withStatusCode(BAD_REQUEST)
                     .withBody(String.format("Options method should include the %s header", ORIGIN_HEADER))
                     .build();
             throw new LambdaException(wrongHeaders);
         }
         if (!headers.keySet().contains(ACCESS_CONTROL_REQUEST_METHOD)) {
             ApiGatewayProxyResponse wrongHeaders = new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(BAD_REQUEST.getStatusCode())
+                            .withStatusCode(BAD_REQUEST)
                             .withBody(String.format("Options method should include the %s header", ACCESS_CONTROL_REQUEST_METHOD))
                             .build();
             throw new LambdaException(wrongHeaders);
         }
-        String methodBeingInvestigated = headers.get(ACCESS_CONTROL_REQUEST_METHOD).toLowerCase();
-        if (!methodHandlerMap.keySet().contains(methodBeingInvestigated)) {
-            ApiGatewayProxyResponse wrongMethod = new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(BAD_REQUEST.getStatusCode())
-                            .withBody(String.format("Lambda cannot handle the method %s", methodBeingInvestigated))
-                            .build();
-            throw new LambdaException(wrongMethod);
+        String methodBeingInvestigated = headers.get(ACCESS_CONTROL_REQUEST_METHOD);
+        Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstructor =
+                getMethodHandlerConstructor(table, HttpMethod.parse(methodBeingInvestigated), methodBeingInvestigated);
+        if (methodHandlerConstructor == null) {
+            throw new LambdaException(getWrongMethodResponse(methodBeingInvestigated));
         }
-        Collection<String> requiredHeaders = getMethodHandler(configuration, methodBeingInvestigated).getRequiredHeaders();
+        Collection<String> requiredHeaders = methodHandlerConstructor.apply(configuration).getRequiredHeaders();
         String proposedRequestHeadersStr = headers.get(ACCESS_CONTROL_REQUEST_HEADERS);
         if (!requiredHeaders.isEmpty() && proposedRequestHeadersStr == null) {
             ApiGatewayProxyResponse wrongHeaders =
                     new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(BAD_REQUEST.getStatusCode())
+                            .withStatusCode(BAD_REQUEST)
                             .withBody(String.format("The required header(s) not present: %s", ACCESS_CONTROL_REQUEST_HEADERS))
                             .build();
             throw new LambdaException(wrongHeaders);
@@ -184,7 +363,7 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
         if (!proposedRequestHeaders.containsAll(requiredHeaders)) {
             ApiGatewayProxyResponse wrongHeaders =
                     new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(BAD_REQUEST.getStatusCode())
+                            .withStatusCode(BAD_REQUEST)
                             .withBody(String.format("The required header(s) not present: %s", String.join(", ", requiredHeaders)))
                             .build();
             throw new LambdaException(wrongHeaders);
@@ -196,15 +375,17 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
         responseHeaders.put("Access-Control-Allow-Methods", headers.get(ACCESS_CONTROL_REQUEST_METHOD));
         ApiGatewayProxyResponse corsOk =
                 new ApiGatewayProxyResponseBuilder()
-                        .withStatusCode(OK.getStatusCode())
+                        .withStatusCode(OK)
                         .withHeaders(responseHeaders)
                         .build();
         throw new LambdaException(corsOk);
     }
 
-    private MethodHandler<?, ?> getMethodHandler(MethodHandlerConfiguration configuration, String method) {
-        Function<MethodHandlerConfiguration, MethodHandler> methodHandlerConstructor = methodHandlerMap.get(method);
-        return methodHandlerConstructor.apply(configuration);
+    private static ApiGatewayProxyResponse getWrongMethodResponse(String method) {
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(BAD_REQUEST)
+                .withBody(String.format("Lambda cannot handle the method %s", method == null ? null : method.toLowerCase()))
+                .build();
     }
 
     private ApiGatewayProxyResponse getServerErrorResponse(String baseMessage, Exception e) {
@@ -221,17 +402,25 @@ public abstract class LambdaProxyHandler<MethodHandlerConfiguration extends Conf
         e.printStackTrace(pw);
         body.put("cause", sw.toString());
         return new ApiGatewayProxyResponseBuilder()
-                .withStatusCode(INTERNAL_SERVER_ERROR.getStatusCode())
+                .withStatusCode(INTERNAL_SERVER_ERROR)
                 .withBody(body.toJSONString())
                 .build();
     }
 
+    /**
+     * Returns the state shared by every request this container handles, for reusing expensive objects. Its capacity is a
+     * quarter of the maximum heap; pass it to method handlers through their {@link Configuration}.
+     */
+    public ContainerState getContainerState() {
+        return containerState;
+    }
+
     protected abstract MethodHandlerConfiguration getConfiguration(ApiGatewayProxyRequest request, Context context);
 
-    private void validateHeaderOrThrow(Map<String, String> headers, String header, Status errorStatus) throws LambdaException {
+    private void validateHeaderOrThrow(Map<String, String> headers, String header, int errorStatus) throws LambdaException {
         if (!headers.containsKey(header)) {
             ApiGatewayProxyResponse noHeaders = new ApiGatewayProxyResponseBuilder()
-                    .withStatusCode(errorStatus.getStatusCode())
+                    .withStatusCode(errorStatus)
                     .withBody(String.format("No %s header", header))
                     .build();
             throw new LambdaException(noHeaders);
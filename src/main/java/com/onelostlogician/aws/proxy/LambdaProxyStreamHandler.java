@@ -0,0 +1,89 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serves a {@link LambdaProxyHandler} as a {@link RequestStreamHandler}, so that the proxy event is decoded lazily by
+ * a {@link LazyApiGatewayProxyRequest} rather than eagerly by the runtime's serializer. Lambda instantiates handler
+ * classes through their no-argument constructor, so subclass this to point it at a handler:
+ *
+ * <pre>
+ * public class StreamHandler extends LambdaProxyStreamHandler {
+ *     public StreamHandler() {
+ *         super(new MyLambdaProxyHandler());
+ *     }
+ * }
+ * </pre>
+ *
+ * Neither direction goes through Jackson data binding, so this path needs no reflection metadata under native image.
+ */
+public class LambdaProxyStreamHandler implements RequestStreamHandler {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final LambdaProxyHandler<?> handler;
+
+    public LambdaProxyStreamHandler(LambdaProxyHandler<?> handler) {
+        this.handler = requireNonNull(handler);
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        handleEvent(readFully(input), output, context);
+    }
+
+    void handleEvent(byte[] event, OutputStream output, Context context) throws IOException {
+        LazyApiGatewayProxyRequest request = new LazyApiGatewayProxyRequest(event);
+        request.setContext(context);
+        ApiGatewayProxyResponse response = handler.handleRequest(request, context);
+        writeResponse(response, output);
+    }
+
+    static void writeResponse(ApiGatewayProxyResponse response, OutputStream output) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (response == null) {
+                generator.writeNull();
+                return;
+            }
+            generator.writeStartObject();
+            generator.writeNumberField("statusCode", response.getStatusCode());
+            generator.writeFieldName("headers");
+            Map<String, String> headers = response.getHeaders();
+            if (headers == null) {
+                generator.writeNull();
+            }
+            else {
+                generator.writeStartObject();
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    generator.writeStringField(header.getKey(), header.getValue());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeStringField("body", response.getBody());
+            generator.writeBooleanField("isBase64Encoded", response.getIsBase64Encoded());
+            generator.writeEndObject();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
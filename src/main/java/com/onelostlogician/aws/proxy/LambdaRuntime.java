@@ -0,0 +1,153 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Polls the Lambda Runtime API for proxy events and answers them with a {@link LambdaProxyHandler}, so that a handler
+ * can be deployed as a native executable on a custom ({@code provided}) runtime. The bootstrap's {@code main} should
+ * construct the handler directly and call {@link #run()}, which keeps handler construction free of reflection:
+ *
+ * <pre>
+ * public static void main(String[] args) {
+ *     new LambdaRuntime(new MyLambdaProxyHandler()).run();
+ * }
+ * </pre>
+ */
+public class LambdaRuntime {
+    private static final String RUNTIME_API_VERSION = "2018-06-01";
+    private static final int DEFAULT_MEMORY_LIMIT_IN_MB = 128;
+    private static final long INITIAL_BACKOFF_IN_MILLIS = 50;
+    private static final long MAX_BACKOFF_IN_MILLIS = 2_000;
+    static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final LambdaProxyStreamHandler streamHandler;
+    private final String runtimeApi;
+    private final String functionName;
+    private final int memoryLimitInMB;
+
+    public LambdaRuntime(LambdaProxyHandler<?> handler) {
+        this(handler, requireNonNull(System.getenv("AWS_LAMBDA_RUNTIME_API"), "AWS_LAMBDA_RUNTIME_API is not set"));
+    }
+
+    LambdaRuntime(LambdaProxyHandler<?> handler, String runtimeApi) {
+        this.streamHandler = new LambdaProxyStreamHandler(handler);
+        this.runtimeApi = runtimeApi;
+        this.functionName = System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+        String memorySize = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+        this.memoryLimitInMB = memorySize == null ? DEFAULT_MEMORY_LIMIT_IN_MB : Integer.parseInt(memorySize);
+    }
+
+    /**
+     * Processes invocations until the thread is interrupted. Failures to reach the runtime API are retried with a
+     * growing pause; after {@value #MAX_CONSECUTIVE_FAILURES} in a row this returns, so that the bootstrap exits and
+     * Lambda replaces the environment.
+     */
+    public void run() {
+        int failures = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                processNext();
+                failures = 0;
+            }
+            catch (IOException e) {
+                logger.error("Failed to exchange an invocation with the runtime API", e);
+                failures++;
+                if (failures >= MAX_CONSECUTIVE_FAILURES) {
+                    logger.error(String.format("Giving up after %s consecutive failures to reach the runtime API", failures));
+                    return;
+                }
+                try {
+                    pause(Math.min(INITIAL_BACKOFF_IN_MILLIS << (failures - 1), MAX_BACKOFF_IN_MILLIS));
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    void processNext() throws IOException {
+        HttpURLConnection next = open("/runtime/invocation/next");
+        byte[] event;
+        try (InputStream in = next.getInputStream()) {
+            event = readFully(in);
+        }
+        String requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+        long deadline = next.getHeaderFieldLong("Lambda-Runtime-Deadline-Ms", System.currentTimeMillis());
+        Context context = new LocalContext(requestId, functionName, memoryLimitInMB, deadline);
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try {
+            streamHandler.handleEvent(event, response, context);
+        }
+        catch (Exception e) {
+            logger.error(String.format("Invocation %s failed", requestId), e);
+            post("/runtime/invocation/" + requestId + "/error", toErrorDocument(e), e.getClass().getName());
+            return;
+        }
+        post("/runtime/invocation/" + requestId + "/response", response.toByteArray(), null);
+    }
+
+    private void post(String path, byte[] body, String errorType) throws IOException {
+        HttpURLConnection connection = open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        if (errorType != null) {
+            connection.setRequestProperty("Lambda-Runtime-Function-Error-Type", errorType);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int statusCode = connection.getResponseCode();
+        if (statusCode >= 300) {
+            logger.error(String.format("Runtime API rejected %s with status %s", path, statusCode));
+        }
+        InputStream in = statusCode >= 300 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://" + runtimeApi + "/" + RUNTIME_API_VERSION + path).openConnection();
+        // The next invocation may be a long way off, so the poll must not time out.
+        connection.setReadTimeout(0);
+        return connection;
+    }
+
+    static byte[] toErrorDocument(Exception e) {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        String message = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        String document = "{\"errorMessage\":\"" + new String(encoder.quoteAsString(message))
+                + "\",\"errorType\":\"" + new String(encoder.quoteAsString(e.getClass().getName())) + "\"}";
+        return document.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
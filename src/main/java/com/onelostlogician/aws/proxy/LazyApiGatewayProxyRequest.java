@@ -0,0 +1,282 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link ApiGatewayProxyRequest} backed by the raw bytes of the proxy event. A single pass over the event records
+ * where each top-level field starts, without decoding any strings, and each field is only decoded on first access.
+ * Handlers that never look at, for example, the body or the stage variables never pay for them.
+ *
+ * Like the plain request, instances are not thread-safe.
+ */
+public class LazyApiGatewayProxyRequest extends ApiGatewayProxyRequest {
+    private enum Field {
+        RESOURCE("resource"),
+        PATH("path"),
+        HTTP_METHOD("httpMethod"),
+        HEADERS("headers"),
+        QUERY_STRING_PARAMETERS("queryStringParameters"),
+        PATH_PARAMETERS("pathParameters"),
+        STAGE_VARIABLES("stageVariables"),
+        REQUEST_CONTEXT("requestContext"),
+        BODY("body"),
+        IS_BASE64_ENCODED("isBase64Encoded");
+
+        private static final Field[] VALUES = values();
+
+        private final String jsonName;
+
+        Field(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        static Field forJsonName(String jsonName) {
+            for (Field field : VALUES) {
+                if (field.jsonName.equals(jsonName)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int ABSENT = -1;
+    private static final int DECODED = -2;
+
+    private final byte[] event;
+    private final int[] offsets = new int[Field.VALUES.length];
+
+    private String resource;
+    private String path;
+    private String httpMethod;
+    private Map<String, String> headers;
+    private Map<String, String> queryStringParameters;
+    private Map<String, String> pathParameters;
+    private Map<String, String> stageVariables;
+    private JsonNode requestContext;
+    private String body;
+    private boolean isBase64Encoded;
+
+    public LazyApiGatewayProxyRequest(byte[] event) throws IOException {
+        this.event = requireNonNull(event);
+        Arrays.fill(offsets, ABSENT);
+        try (JsonParser parser = JSON_FACTORY.createParser(event)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("A proxy event must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Field field = Field.forJsonName(parser.getCurrentName());
+                JsonToken value = parser.nextToken();
+                if (field != null && value != JsonToken.VALUE_NULL) {
+                    offsets[field.ordinal()] = (int) parser.getTokenLocation().getByteOffset();
+                }
+                // Skips nested objects without building them, and leaves scalar strings undecoded.
+                parser.skipChildren();
+            }
+        }
+    }
+
+    @Override
+    public String getResource() {
+        if (offsets[Field.RESOURCE.ordinal()] != DECODED) {
+            resource = decodeString(Field.RESOURCE);
+        }
+        return resource;
+    }
+
+    @Override
+    public String getPath() {
+        if (offsets[Field.PATH.ordinal()] != DECODED) {
+            path = decodeString(Field.PATH);
+        }
+        return path;
+    }
+
+    @Override
+    public String getHttpMethod() {
+        if (offsets[Field.HTTP_METHOD.ordinal()] != DECODED) {
+            httpMethod = decodeString(Field.HTTP_METHOD);
+        }
+        return httpMethod;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        if (offsets[Field.HEADERS.ordinal()] != DECODED) {
+            headers = decodeMap(Field.HEADERS);
+        }
+        return headers;
+    }
+
+    @Override
+    public Map<String, String> getQueryStringParameters() {
+        if (offsets[Field.QUERY_STRING_PARAMETERS.ordinal()] != DECODED) {
+            queryStringParameters = decodeMap(Field.QUERY_STRING_PARAMETERS);
+        }
+        return queryStringParameters;
+    }
+
+    @Override
+    public Map<String, String> getPathParameters() {
+        if (offsets[Field.PATH_PARAMETERS.ordinal()] != DECODED) {
+            pathParameters = decodeMap(Field.PATH_PARAMETERS);
+        }
+        return pathParameters;
+    }
+
+    @Override
+    public Map<String, String> getStageVariables() {
+        if (offsets[Field.STAGE_VARIABLES.ordinal()] != DECODED) {
+            stageVariables = decodeMap(Field.STAGE_VARIABLES);
+        }
+        return stageVariables;
+    }
+
+    /**
+     * Returns the {@code requestContext} of the event, holding the caller identity, authorizer claims and timings,
+     * which the plain request model does not carry.
+     */
+    public JsonNode getRequestContext() {
+        int offset = offsets[Field.REQUEST_CONTEXT.ordinal()];
+        if (offset != DECODED) {
+            offsets[Field.REQUEST_CONTEXT.ordinal()] = DECODED;
+            if (offset != ABSENT) {
+                try (JsonParser parser = parserAt(offset)) {
+                    requestContext = JsonCodec.OBJECT_MAPPER.readTree(parser);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return requestContext;
+    }
+
+    @Override
+    public String getBody() {
+        if (offsets[Field.BODY.ordinal()] != DECODED) {
+            body = decodeString(Field.BODY);
+        }
+        return body;
+    }
+
+    @Override
+    public boolean getIsBase64Encoded() {
+        int offset = offsets[Field.IS_BASE64_ENCODED.ordinal()];
+        if (offset != DECODED) {
+            offsets[Field.IS_BASE64_ENCODED.ordinal()] = DECODED;
+            isBase64Encoded = offset != ABSENT && event[offset] == 't';
+        }
+        return isBase64Encoded;
+    }
+
+    @Override
+    public void setResource(String resource) {
+        offsets[Field.RESOURCE.ordinal()] = DECODED;
+        this.resource = resource;
+    }
+
+    @Override
+    public void setPath(String path) {
+        offsets[Field.PATH.ordinal()] = DECODED;
+        this.path = path;
+    }
+
+    @Override
+    public void setHttpMethod(String httpMethod) {
+        offsets[Field.HTTP_METHOD.ordinal()] = DECODED;
+        this.httpMethod = httpMethod;
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headers) {
+        offsets[Field.HEADERS.ordinal()] = DECODED;
+        this.headers = headers;
+    }
+
+    @Override
+    public void setQueryStringParameters(Map<String, String> queryStringParameters) {
+        offsets[Field.QUERY_STRING_PARAMETERS.ordinal()] = DECODED;
+        this.queryStringParameters = queryStringParameters;
+    }
+
+    @Override
+    public void setPathParameters(Map<String, String> pathParameters) {
+        offsets[Field.PATH_PARAMETERS.ordinal()] = DECODED;
+        this.pathParameters = pathParameters;
+    }
+
+    @Override
+    public void setStageVariables(Map<String, String> stageVariables) {
+        offsets[Field.STAGE_VARIABLES.ordinal()] = DECODED;
+        this.stageVariables = stageVariables;
+    }
+
+    @Override
+    public void setBody(String body) {
+        offsets[Field.BODY.ordinal()] = DECODED;
+        this.body = body;
+    }
+
+    @Override
+    public void setBase64Encoded(Boolean base64Encoded) {
+        offsets[Field.IS_BASE64_ENCODED.ordinal()] = DECODED;
+        this.isBase64Encoded = base64Encoded != null && base64Encoded;
+    }
+
+    private String decodeString(Field field) {
+        int offset = offsets[field.ordinal()];
+        offsets[field.ordinal()] = DECODED;
+        if (offset == ABSENT) {
+            return null;
+        }
+        try (JsonParser parser = parserAt(offset)) {
+            return parser.getValueAsString();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, String> decodeMap(Field field) {
+        int offset = offsets[field.ordinal()];
+        offsets[field.ordinal()] = DECODED;
+        if (offset == ABSENT) {
+            return null;
+        }
+        try (JsonParser parser = parserAt(offset)) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            Map<String, String> map = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                map.put(name, parser.getValueAsString());
+                parser.skipChildren();
+            }
+            return map;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonParser parserAt(int offset) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(event, offset, event.length - offset);
+        parser.nextToken();
+        return parser;
+    }
+}
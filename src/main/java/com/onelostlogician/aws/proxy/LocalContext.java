@@ -0,0 +1,83 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+import java.util.UUID;
+
+public class LocalContext implements Context {
+    private static final LambdaLogger LOGGER = System.out::println;
+
+    private final String awsRequestId;
+    private final String functionName;
+    private final int memoryLimitInMB;
+    private final long deadline;
+
+    public LocalContext(String functionName, int memoryLimitInMB, int timeoutInMillis) {
+        this(UUID.randomUUID().toString(), functionName, memoryLimitInMB, System.currentTimeMillis() + timeoutInMillis);
+    }
+
+    LocalContext(String awsRequestId, String functionName, int memoryLimitInMB, long deadline) {
+        this.awsRequestId = awsRequestId;
+        this.functionName = functionName;
+        this.memoryLimitInMB = memoryLimitInMB;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return awsRequestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return "/aws/lambda/" + functionName;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return "local";
+    }
+
+    @Override
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return "$LATEST";
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return "arn:aws:lambda:local:000000000000:function:" + functionName;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        return (int) Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return memoryLimitInMB;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return LOGGER;
+    }
+}
@@ -0,0 +1,195 @@
+package com.onelostlogician.aws.proxy;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_GATEWAY;
+import static java.util.Objects.requireNonNull;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Serves a {@link LambdaProxyHandler} over HTTP, translating each exchange into an {@link ApiGatewayProxyRequest} the
+ * way a Lambda proxy integration would, so that handlers can be load-tested locally with any HTTP load generator.
+ *
+ * Requests are handled concurrently on the given executor, which may be a fixed thread pool or, on Java 21 and later,
+ * {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ */
+public class LocalHttpHost {
+    private static final int DEFAULT_MEMORY_LIMIT_IN_MB = 1024;
+    private static final int DEFAULT_TIMEOUT_IN_MILLIS = 30_000;
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final LambdaProxyHandler<?> handler;
+    private final HttpServer server;
+    private final String functionName;
+
+    public LocalHttpHost(LambdaProxyHandler<?> handler, InetSocketAddress address, Executor executor) throws IOException {
+        this.handler = requireNonNull(handler);
+        this.functionName = handler.getClass().getSimpleName();
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(requireNonNull(executor));
+        this.server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        logger.info(String.format("Serving %s on http://%s:%s/", functionName, getAddress().getHostString(), getAddress().getPort()));
+    }
+
+    public void stop(int delayInSeconds) {
+        server.stop(delayInSeconds);
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            ApiGatewayProxyRequest request = toRequest(exchange);
+            LocalContext context = new LocalContext(functionName, DEFAULT_MEMORY_LIMIT_IN_MB, DEFAULT_TIMEOUT_IN_MILLIS);
+            request.setContext(context);
+            writeResponse(exchange, handler.handleRequest(request, context));
+        }
+        catch (Exception e) {
+            logger.error("Failed to handle local request", e);
+            // A second status line cannot be sent once the headers are out, for example when the client disconnects mid-body.
+            if (exchange.getResponseCode() == -1) {
+                writeResponse(exchange, BAD_GATEWAY, new HashMap<>(), "Internal server error".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    static ApiGatewayProxyRequest toRequest(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            headers.put(header.getKey(), String.join(",", header.getValue()));
+        }
+        byte[] body = readFully(exchange.getRequestBody());
+        boolean isBase64Encoded = body.length > 0 && !isTextual(exchange.getRequestHeaders());
+
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequest();
+        request.setResource(uri.getRawPath());
+        request.setPath(uri.getRawPath());
+        request.setHttpMethod(exchange.getRequestMethod());
+        request.setHeaders(headers);
+        request.setQueryStringParameters(parseQuery(uri.getRawQuery()));
+        request.setPathParameters(new HashMap<>());
+        request.setStageVariables(new HashMap<>());
+        request.setBody(isBase64Encoded
+                ? Base64.getEncoder().encodeToString(body)
+                : new String(body, StandardCharsets.UTF_8));
+        request.setBase64Encoded(isBase64Encoded);
+        return request;
+    }
+
+    private static void writeResponse(HttpExchange exchange, ApiGatewayProxyResponse response) throws IOException {
+        if (response == null || response.getStatusCode() < 100 || response.getStatusCode() > 599) {
+            writeResponse(exchange, BAD_GATEWAY, new HashMap<>(), "Malformed Lambda proxy response".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String body = response.getBody() == null ? "" : response.getBody();
+        byte[] bytes = response.getIsBase64Encoded()
+                ? Base64.getDecoder().decode(body)
+                : body.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = response.getHeaders() == null ? new HashMap<>() : response.getHeaders();
+        writeResponse(exchange, response.getStatusCode(), headers, bytes);
+    }
+
+    private static void writeResponse(HttpExchange exchange, int statusCode, Map<String, String> headers, byte[] body) throws IOException {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        headers.forEach(responseHeaders::set);
+        boolean hasBody = body.length > 0 && !"HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(statusCode, hasBody ? body.length : -1);
+        if (hasBody) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            // Like API Gateway, keep the last value of a repeated parameter.
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static boolean isTextual(Headers headers) {
+        if (headers.containsKey("Content-Encoding")) {
+            return false;
+        }
+        String contentType = headers.getFirst(CONTENT_TYPE);
+        if (contentType == null) {
+            return true;
+        }
+        String mediaType = contentType.toLowerCase();
+        return mediaType.startsWith("text/")
+                || mediaType.contains("json")
+                || mediaType.contains("xml")
+                || mediaType.contains("javascript")
+                || mediaType.startsWith("application/x-www-form-urlencoded");
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LocalHttpHost <handler class> [port] [threads]");
+            System.exit(1);
+        }
+        LambdaProxyHandler<?> handler = (LambdaProxyHandler<?>) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LocalHttpHost host = new LocalHttpHost(handler, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), executor);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            host.stop(0);
+            executor.shutdown();
+        }));
+        host.start();
+    }
+}
@@ -0,0 +1,370 @@
+package com.onelostlogician.aws.proxy;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@SupportedAnnotationTypes("com.onelostlogician.aws.proxy.GenerateMappers")
+public class MapperProcessor extends AbstractProcessor {
+    private enum PropertyType {
+        STRING("String", "String", null),
+        BOOLEAN("boolean", "Boolean", "parseBoolean"),
+        INT("int", "Integer", "parseInt"),
+        LONG("long", "Long", "parseLong"),
+        FLOAT("float", "Float", "parseFloat"),
+        DOUBLE("double", "Double", "parseDouble");
+
+        private final String primitiveName;
+        private final String boxedName;
+        private final String parseMethod;
+
+        PropertyType(String primitiveName, String boxedName, String parseMethod) {
+            this.primitiveName = primitiveName;
+            this.boxedName = boxedName;
+            this.parseMethod = parseMethod;
+        }
+    }
+
+    private static class Property {
+        private final String name;
+        private final PropertyType type;
+        private final boolean nullable;
+        private final String getter;
+        private final String setter;
+
+        private Property(String name, PropertyType type, boolean nullable, String getter, String setter) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private String read(String target) {
+            return getter == null ? target + "." + name : target + "." + getter + "()";
+        }
+
+        private String write(String target, String value) {
+            return setter == null ? target + "." + name + " = " + value + ";" : target + "." + setter + "(" + value + ");";
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(GenerateMappers.class))) {
+            List<Property> properties = getProperties(type);
+            if (properties == null) {
+                continue;
+            }
+            try {
+                writeJsonMapper(type, properties);
+                writeFormMapper(type, properties);
+            }
+            catch (IOException e) {
+                error(type, "Could not generate mappers: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private List<Property> getProperties(TypeElement type) {
+        boolean valid = true;
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@GenerateMappers can only be applied to concrete classes");
+            return null;
+        }
+        if (!type.getModifiers().contains(Modifier.PUBLIC)
+                || (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))) {
+            error(type, "@GenerateMappers types must be public top-level or public static nested classes");
+            return null;
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        if (constructors.stream().noneMatch(c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC))) {
+            error(type, "@GenerateMappers types must have a public no-argument constructor");
+            return null;
+        }
+
+        List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+        List<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            TypeMirror fieldType = field.asType();
+            PropertyType propertyType = getPropertyType(fieldType);
+            if (propertyType == null) {
+                error(field, "Unsupported property type " + fieldType);
+                valid = false;
+                continue;
+            }
+            boolean nullable = !fieldType.getKind().isPrimitive();
+            if (modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.FINAL)) {
+                properties.add(new Property(name, propertyType, nullable, null, null));
+                continue;
+            }
+            String capitalised = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String getter = findMethod(methods, fieldType, "get" + capitalised, "is" + capitalised);
+            String setter = findMethod(methods, fieldType, "set" + capitalised);
+            if (getter == null || setter == null) {
+                error(field, "Field " + name + " must be public or have a public getter and setter");
+                valid = false;
+                continue;
+            }
+            properties.add(new Property(name, propertyType, nullable, getter, setter));
+        }
+        return valid ? properties : null;
+    }
+
+    private String findMethod(List<ExecutableElement> methods, TypeMirror fieldType, String... names) {
+        for (ExecutableElement method : methods) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            for (String name : names) {
+                if (!methodName.equals(name)) {
+                    continue;
+                }
+                boolean isSetter = name.startsWith("set");
+                if (isSetter
+                        && method.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), fieldType)) {
+                    return methodName;
+                }
+                if (!isSetter
+                        && method.getParameters().isEmpty()
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), fieldType)) {
+                    return methodName;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static PropertyType getPropertyType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            for (PropertyType propertyType : PropertyType.values()) {
+                if (propertyType.primitiveName.equals(type.toString())) {
+                    return propertyType;
+                }
+            }
+            return null;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        String name = type.toString();
+        for (PropertyType propertyType : PropertyType.values()) {
+            if (name.equals("java.lang." + propertyType.boxedName)) {
+                return propertyType;
+            }
+        }
+        return null;
+    }
+
+    private void writeJsonMapper(TypeElement type, List<Property> properties) throws IOException {
+        String typeName = type.getQualifiedName().toString();
+        String mapperName = getMapperName(type, "JsonMapper");
+        try (PrintWriter out = openSource(type, mapperName)) {
+            writeHeader(out, type, mapperName);
+            out.println("    public static final MediaType MEDIA_TYPE = MediaType.JSON_UTF_8;");
+            out.println("    private static final String CONTENT_TYPE = MEDIA_TYPE.toString();");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " toInput(ApiGatewayProxyRequest request, Context context) throws Exception {");
+            out.println("        " + typeName + " input = new " + typeName + "();");
+            out.println("        try (JsonParser parser = GeneratedMapperSupport.jsonParser(request)) {");
+            out.println("            if (parser.nextToken() != JsonToken.START_OBJECT) {");
+            out.println("                throw GeneratedMapperSupport.badRequest(\"Malformed JSON body. Expected an object\");");
+            out.println("            }");
+            out.println("            while (parser.nextToken() == JsonToken.FIELD_NAME) {");
+            out.println("                String name = parser.getCurrentName();");
+            out.println("                JsonToken token = parser.nextToken();");
+            out.println("                switch (name) {");
+            for (Property property : properties) {
+                out.println("                    case \"" + property.name + "\":");
+                out.println("                        " + property.write("input", readJsonValue(property)));
+                out.println("                        break;");
+            }
+            out.println("                    default:");
+            out.println("                        parser.skipChildren();");
+            out.println("                }");
+            out.println("            }");
+            out.println("        }");
+            out.println("        catch (JsonProcessingException e) {");
+            out.println("            throw GeneratedMapperSupport.badRequest(\"Malformed JSON body. \" + e.getOriginalMessage());");
+            out.println("        }");
+            out.println("        return input;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public ApiGatewayProxyResponse outputToResponse(" + typeName + " output) throws Exception {");
+            out.println("        SegmentedStringWriter buffer = GeneratedMapperSupport.jsonBuffer();");
+            out.println("        try (JsonGenerator generator = GeneratedMapperSupport.jsonGenerator(buffer)) {");
+            out.println("            generator.writeStartObject();");
+            for (Property property : properties) {
+                writeJsonField(out, property);
+            }
+            out.println("            generator.writeEndObject();");
+            out.println("        }");
+            out.println("        return GeneratedMapperSupport.response(CONTENT_TYPE, buffer.getAndClear());");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private static String readJsonValue(Property property) {
+        String value;
+        switch (property.type) {
+            case STRING:
+                return "GeneratedMapperSupport.readString(parser, \"" + property.name + "\")";
+            case BOOLEAN:
+                value = "parser.getBooleanValue()";
+                break;
+            case INT:
+                value = "parser.getIntValue()";
+                break;
+            case LONG:
+                value = "parser.getLongValue()";
+                break;
+            case FLOAT:
+                value = "parser.getFloatValue()";
+                break;
+            default:
+                value = "parser.getDoubleValue()";
+        }
+        return property.nullable ? "token == JsonToken.VALUE_NULL ? null : " + value : value;
+    }
+
+    private static void writeJsonField(PrintWriter out, Property property) {
+        String name = "\"" + property.name + "\"";
+        String value = property.read("output");
+        if (property.type == PropertyType.STRING) {
+            out.println("            generator.writeStringField(" + name + ", " + value + ");");
+            return;
+        }
+        String write = property.type == PropertyType.BOOLEAN ? "writeBooleanField" : "writeNumberField";
+        if (!property.nullable) {
+            out.println("            generator." + write + "(" + name + ", " + value + ");");
+            return;
+        }
+        out.println("            " + property.type.boxedName + " " + property.name + "Value = " + value + ";");
+        out.println("            if (" + property.name + "Value == null) {");
+        out.println("                generator.writeNullField(" + name + ");");
+        out.println("            }");
+        out.println("            else {");
+        out.println("                generator." + write + "(" + name + ", " + property.name + "Value);");
+        out.println("            }");
+    }
+
+    private void writeFormMapper(TypeElement type, List<Property> properties) throws IOException {
+        String typeName = type.getQualifiedName().toString();
+        String mapperName = getMapperName(type, "FormMapper");
+        try (PrintWriter out = openSource(type, mapperName)) {
+            writeHeader(out, type, mapperName);
+            out.println("    public static final MediaType MEDIA_TYPE = MediaType.FORM_DATA;");
+            out.println("    private static final String CONTENT_TYPE = MEDIA_TYPE.toString();");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " toInput(ApiGatewayProxyRequest request, Context context) throws Exception {");
+            out.println("        " + typeName + " input = new " + typeName + "();");
+            out.println("        Map<String, String> form = GeneratedMapperSupport.readForm(request);");
+            out.println("        String value;");
+            for (Property property : properties) {
+                String value = property.type.parseMethod == null
+                        ? "value"
+                        : "GeneratedMapperSupport." + property.type.parseMethod + "(\"" + property.name + "\", value)";
+                out.println("        if ((value = form.get(\"" + property.name + "\")) != null) {");
+                out.println("            " + property.write("input", value));
+                out.println("        }");
+            }
+            out.println("        return input;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public ApiGatewayProxyResponse outputToResponse(" + typeName + " output) throws Exception {");
+            out.println("        StringBuilder form = new StringBuilder();");
+            for (Property property : properties) {
+                String value = property.type == PropertyType.STRING
+                        ? property.read("output")
+                        : property.nullable
+                            ? "Objects.toString(" + property.read("output") + ", null)"
+                            : "String.valueOf(" + property.read("output") + ")";
+                out.println("        GeneratedMapperSupport.appendFormField(form, \"" + property.name + "\", " + value + ");");
+            }
+            out.println("        return GeneratedMapperSupport.response(CONTENT_TYPE, form.toString());");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private PrintWriter openSource(TypeElement type, String mapperName) throws IOException {
+        String packageName = getPackageName(type);
+        String qualifiedName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        return new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter());
+    }
+
+    private void writeHeader(PrintWriter out, TypeElement type, String mapperName) {
+        String packageName = getPackageName(type);
+        String typeName = type.getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("import com.amazonaws.services.lambda.runtime.Context;");
+        out.println("import com.fasterxml.jackson.core.JsonGenerator;");
+        out.println("import com.fasterxml.jackson.core.JsonParser;");
+        out.println("import com.fasterxml.jackson.core.JsonProcessingException;");
+        out.println("import com.fasterxml.jackson.core.JsonToken;");
+        out.println("import com.fasterxml.jackson.core.io.SegmentedStringWriter;");
+        out.println("import com.google.common.net.MediaType;");
+        out.println("import com.onelostlogician.aws.proxy.AcceptMapper;");
+        out.println("import com.onelostlogician.aws.proxy.ApiGatewayProxyRequest;");
+        out.println("import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse;");
+        out.println("import com.onelostlogician.aws.proxy.ContentTypeMapper;");
+        out.println("import com.onelostlogician.aws.proxy.GeneratedMapperSupport;");
+        out.println();
+        out.println("import java.util.Map;");
+        out.println("import java.util.Objects;");
+        out.println();
+        out.println("// Generated by " + MapperProcessor.class.getName() + " from " + type.getQualifiedName());
+        out.println("public final class " + mapperName
+                + " implements ContentTypeMapper<" + typeName + ">, AcceptMapper<" + typeName + "> {");
+    }
+
+    private String getPackageName(TypeElement type) {
+        return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private String getMapperName(TypeElement type, String suffix) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append(suffix).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -8,13 +8,18 @@ import java.util.*;
 import java.util.function.Function;
 
 import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+import static com.onelostlogician.aws.proxy.HttpStatus.CONFLICT;
+import static com.onelostlogician.aws.proxy.HttpStatus.REQUEST_ENTITY_TOO_LARGE;
+import static com.onelostlogician.aws.proxy.HttpStatus.SERVICE_UNAVAILABLE;
+import static com.onelostlogician.aws.proxy.HttpStatus.UNSUPPORTED_MEDIA_TYPE;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
-import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
-import static javax.ws.rs.core.Response.Status.UNSUPPORTED_MEDIA_TYPE;
 
 public abstract class MethodHandler<Input, Output> {
+    private static final String IDEMPOTENCY_KEY = "idempotency-key";
+    private static final String CONTENT_ENCODING = "content-encoding";
+
     private final Logger logger = Logger.getLogger(getClass());
 
     private final Map<MediaType, ContentTypeMapper<Input>> perContentTypeMap;
@@ -22,12 +27,31 @@ public abstract class MethodHandler<Input, Output> {
     private final Map<Class<? extends Exception>, Function<? extends Exception, ApiGatewayProxyResponse>> exceptionMap;
 
     protected final Collection<String> requiredHeaders;
+    private RequestValidator requestValidator;
+    private long maxBodySizeInBytes = Long.MAX_VALUE;
+    private IdempotencyStore idempotencyStore;
+    private CircuitBreaker circuitBreaker;
+    private CircuitBreakerFallback<Input, Output> circuitBreakerFallback;
 
     protected MethodHandler(Collection<String> requiredHeaders) {
         this.perContentTypeMap = new HashMap<>();
         this.perAcceptMap = new HashMap<>();
         this.exceptionMap = new HashMap<>();
         this.exceptionMap.put(LambdaException.class, (Function<LambdaException, ApiGatewayProxyResponse>) LambdaException::getResponse);
+        this.exceptionMap.put(RequestBodyTooLargeException.class, (Function<RequestBodyTooLargeException, ApiGatewayProxyResponse>) e ->
+                new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(REQUEST_ENTITY_TOO_LARGE)
+                        .withBody(e.getMessage())
+                        .build());
+        this.exceptionMap.put(CircuitBreakerOpenException.class, (Function<CircuitBreakerOpenException, ApiGatewayProxyResponse>) e -> {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Retry-After", Long.toString(Math.max(1, (e.getRemainingOpenInMillis() + 999) / 1000)));
+            return new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(SERVICE_UNAVAILABLE)
+                    .withHeaders(headers)
+                    .withBody(e.getMessage())
+                    .build();
+        });
         this.requiredHeaders = requiredHeaders.stream()
                 .map(String::toLowerCase)
                 .collect(toList());
@@ -49,42 +73,183 @@ public abstract class MethodHandler<Input, Output> {
         exceptionMap.put(clazz, exceptionMapper);
     }
 
+    /**
+     * Validates headers and parameters before any mapper runs. The required headers given to the constructor are
+     * checked by the same pass, so a single 400 lists every problem with the request.
+     */
+    public void registerRequestValidation(RequestValidation requestValidation) {
+        this.requestValidator = new RequestValidator(requiredHeaders, requestValidation);
+    }
+
+    /**
+     * Rejects requests whose decoded body is larger than the given number of bytes with a 413, before any mapper runs.
+     * Compressed bodies are checked again as they are decompressed, and otherwise may expand to
+     * {@value RequestBodies#DEFAULT_MAX_DECOMPRESSED_SIZE} bytes.
+     */
+    public void registerMaxBodySize(long maxBodySizeInBytes) {
+        if (maxBodySizeInBytes < 0) {
+            throw new IllegalArgumentException("Maximum body size must not be negative: " + maxBodySizeInBytes);
+        }
+        this.maxBodySizeInBytes = maxBodySizeInBytes;
+    }
+
+    /**
+     * Replays the stored response to requests that repeat the {@code Idempotency-Key} header of an earlier request to
+     * the same method and path, and rejects repeats that arrive while the original is still being handled with a 409.
+     * Responses with a 5xx status are not stored, so that those requests can be retried.
+     */
+    public void registerIdempotencyStore(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = requireNonNull(idempotencyStore);
+    }
+
+    /**
+     * Calls {@link #handle(Object)} through the circuit breaker, answering with a 503 while it is open. Handlers that
+     * call several dependencies can instead call each through its own breaker with {@link CircuitBreaker#call}.
+     */
+    public void registerCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = requireNonNull(circuitBreaker);
+        this.circuitBreakerFallback = null;
+    }
+
+    /**
+     * Calls {@link #handle(Object)} through the circuit breaker, serving the fallback's output while it is open.
+     */
+    public void registerCircuitBreaker(CircuitBreaker circuitBreaker, CircuitBreakerFallback<Input, Output> fallback) {
+        this.circuitBreaker = requireNonNull(circuitBreaker);
+        this.circuitBreakerFallback = requireNonNull(fallback);
+    }
+
     public abstract Output handle(Input input) throws Exception;
 
     public ApiGatewayProxyResponse handle(ApiGatewayProxyRequest request, List<MediaType> contentTypes, List<MediaType> acceptTypes, Context context) throws Exception {
+        return handle(request, contentTypes, acceptTypes, RequestValidator.getHeader(request.getHeaders(), CONTENT_ENCODING), context);
+    }
+
+    /**
+     * Handles the request with its Content-Encoding header already looked up, as {@link LambdaProxyHandler} does while
+     * it negotiates media types; null if the request has none.
+     */
+    ApiGatewayProxyResponse handle(ApiGatewayProxyRequest request, List<MediaType> contentTypes, List<MediaType> acceptTypes, String contentEncoding, Context context) throws Exception {
+        String idempotencyKey = idempotencyStore == null ? null : RequestValidator.getHeader(request.getHeaders(), IDEMPOTENCY_KEY);
+        if (idempotencyKey == null) {
+            return handleRequest(request, contentTypes, acceptTypes, contentEncoding, context);
+        }
+
+        String key = request.getHttpMethod() + " " + request.getPath() + " " + idempotencyKey;
+        IdempotencyRecord record = idempotencyStore.begin(key);
+        switch (record.getState()) {
+            case COMPLETED:
+                logger.debug("Replaying stored response for idempotency key.");
+                return record.getResponse();
+            case IN_PROGRESS:
+                return new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(CONFLICT)
+                        .withBody(String.format("A request with idempotency key %s is already in progress", idempotencyKey))
+                        .build();
+            default:
+                ApiGatewayProxyResponse response = null;
+                try {
+                    // A body source cannot be stored, so the stored response carries the whole body instead.
+                    response = Ranges.materialise(handleRequest(request, contentTypes, acceptTypes, contentEncoding, context));
+                    return response;
+                }
+                finally {
+                    if (response != null && response.getStatusCode() < 500) {
+                        idempotencyStore.complete(key, response);
+                    }
+                    else {
+                        idempotencyStore.release(key);
+                    }
+                }
+        }
+    }
+
+    private ApiGatewayProxyResponse handleRequest(ApiGatewayProxyRequest request, List<MediaType> contentTypes, List<MediaType> acceptTypes, String contentEncoding, Context context) throws Exception {
         ApiGatewayProxyResponse response;
         try {
+            if (RequestBodies.exceeds(request.getBody(), request.getIsBase64Encoded(), maxBodySizeInBytes)) {
+                ApiGatewayProxyResponse bodyTooLarge = new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(REQUEST_ENTITY_TOO_LARGE)
+                        .withBody(String.format("Request bodies larger than %s bytes are not supported", maxBodySizeInBytes))
+                        .build();
+                throw new LambdaException(bodyTooLarge);
+            }
+            if (!RequestBodies.isIdentity(contentEncoding)) {
+                // API Gateway only passes compressed bytes through intact when it base64 encodes them.
+                if (!RequestBodies.isSupported(contentEncoding) || !request.getIsBase64Encoded()) {
+                    String message = request.getIsBase64Encoded()
+                            ? String.format("Content-Encoding %s is not supported", contentEncoding)
+                            : String.format("Content-Encoding %s is only supported on base64 encoded bodies", contentEncoding);
+                    ApiGatewayProxyResponse unsupportedEncoding = new ApiGatewayProxyResponseBuilder()
+                            .withStatusCode(UNSUPPORTED_MEDIA_TYPE)
+                            .withBody(message)
+                            .build();
+                    throw new LambdaException(unsupportedEncoding);
+                }
+                if (maxBodySizeInBytes != Long.MAX_VALUE) {
+                    request.setMaxDecompressedBodySize(maxBodySizeInBytes);
+                }
+            }
+
             ContentTypeMapper<Input> contentTypeMapper = getMapper(contentTypes, perContentTypeMap, "Content-Types %s are not supported");
             logger.debug("Content-Type mapper found.");
 
             AcceptMapper<Output> acceptMapper = getMapper(acceptTypes, perAcceptMap, "Accept types %s are not supported");
             logger.debug("Accept mapper found.");
 
-            Map<String, String> headers = request.getHeaders().entrySet().stream()
-                    .collect(toMap(
-                            entry -> entry.getKey().toLowerCase(),
-                            entry -> entry.getValue().toLowerCase()
-                    ));
-            if (!headers.keySet().containsAll(requiredHeaders)) {
-                Collection<String> missingHeaders = new HashSet<>(requiredHeaders);
-                missingHeaders.removeAll(headers.keySet());
-                ApiGatewayProxyResponse missingRequiredHeaders =
-                        new ApiGatewayProxyResponseBuilder()
-                                .withStatusCode(BAD_REQUEST.getStatusCode())
-                                .withBody(String.format("The following required headers are not present: %s",
-                                        String.join(", ", missingHeaders)))
-                                .build();
-                throw new LambdaException(missingRequiredHeaders);
-            }
-
-
-            logger.debug(String.format("Mapping input (%s): %s", contentTypeMapper.getClass(), request));
-            Input input = requireNonNull(contentTypeMapper.toInput(request, context));
-            logger.debug(String.format("Handling input (%s): %s", this.getClass(), input));
-            Output output = requireNonNull(handle(input));
-            logger.debug(String.format("Mapping output (%s): %s", acceptMapper.getClass(), output));
-            response = requireNonNull(acceptMapper.outputToResponse(output));
-            logger.debug("Successfully created response: " + response);
+            if (requestValidator != null) {
+                // Also checks the required headers.
+                requestValidator.validate(request);
+            }
+            else {
+                Collection<String> missingHeaders = getMissingRequiredHeaders(request.getHeaders());
+                if (!missingHeaders.isEmpty()) {
+                    ApiGatewayProxyResponse missingRequiredHeaders =
+                            new ApiGatewayProxyResponseBuilder()
+                                    .withStatusCode(BAD_REQUEST)
+                                    .withBody(String.format("The following required headers are not present: %s",
+                                            String.join(", ", missingHeaders)))
+                                    .build();
+                    throw new LambdaException(missingRequiredHeaders);
+                }
+            }
+
+            boolean debug = logger.isDebugEnabled();
+            if (debug) {
+                logger.debug(String.format("Mapping input (%s): %s", contentTypeMapper.getClass(), request));
+            }
+            Input input;
+            Span inputSpan = Tracer.startSpan("input-mapping");
+            try {
+                input = requireNonNull(contentTypeMapper.toInput(request, context));
+            }
+            finally {
+                inputSpan.end();
+            }
+            if (debug) {
+                logger.debug(String.format("Handling input (%s): %s", this.getClass(), input));
+            }
+            Output output;
+            Span handlerSpan = Tracer.startSpan("handler");
+            try {
+                output = requireNonNull(circuitBreaker == null ? handle(input) : handleThroughCircuitBreaker(input));
+            }
+            finally {
+                handlerSpan.end();
+            }
+            if (debug) {
+                logger.debug(String.format("Mapping output (%s): %s", acceptMapper.getClass(), output));
+            }
+            Span outputSpan = Tracer.startSpan("output-mapping");
+            try {
+                response = requireNonNull(acceptMapper.outputToResponse(output));
+            }
+            finally {
+                outputSpan.end();
+            }
+            if (debug) {
+                logger.debug("Successfully created response: " + response);
+            }
         } catch(Exception e) {
             response = handleException(e);
         }
@@ -92,6 +257,34 @@ public abstract class MethodHandler<Input, Output> {
         return response;
     }
 
+    private Output handleThroughCircuitBreaker(Input input) throws Exception {
+        try {
+            circuitBreaker.acquirePermission();
+        }
+        catch (CircuitBreakerOpenException e) {
+            if (circuitBreakerFallback == null) {
+                throw e;
+            }
+            logger.debug("Serving fallback while circuit breaker is open.");
+            return circuitBreakerFallback.apply(input, e);
+        }
+        long start = circuitBreaker.currentTimeMillis();
+        Output output;
+        try {
+            output = handle(input);
+        }
+        catch (Throwable e) {
+            // Errors are recorded too, or a half open breaker would never get its trial call back.
+            circuitBreaker.onError(e, circuitBreaker.currentTimeMillis() - start);
+            throw e;
+        }
+        circuitBreaker.onSuccess(circuitBreaker.currentTimeMillis() - start);
+        if (circuitBreakerFallback != null && output != null) {
+            circuitBreakerFallback.onSuccess(input, output);
+        }
+        return output;
+    }
+
     private static <T> T getMapper(List<MediaType> contentTypes, Map<MediaType, T> contentTypeMap, String errorMessage) throws LambdaException {
         List<MediaType> contentTypesWithoutParameters = contentTypes.stream()
                 .map(MediaType::withoutParameters)
@@ -102,13 +295,26 @@ public abstract class MethodHandler<Input, Output> {
                 .findFirst()
                 .orElseThrow(() -> {
                     ApiGatewayProxyResponse unsupportedContentType = new ApiGatewayProxyResponseBuilder()
-                            .withStatusCode(UNSUPPORTED_MEDIA_TYPE.getStatusCode())
+                            .withStatusCode(UNSUPPORTED_MEDIA_TYPE)
                             .withBody(String.format(errorMessage, contentTypes))
                             .build();
                     return new LambdaException(unsupportedContentType);
                 });
     }
 
+    private Collection<String> getMissingRequiredHeaders(Map<String, String> headers) {
+        Collection<String> missingHeaders = null;
+        for (String requiredHeader : requiredHeaders) {
+            if (RequestValidator.getHeader(headers, requiredHeader) == null) {
+                if (missingHeaders == null) {
+                    missingHeaders = new ArrayList<>();
+                }
+                missingHeaders.add(requiredHeader);
+            }
+        }
+        return missingHeaders == null ? Collections.emptyList() : missingHeaders;
+    }
+
     public Collection<String> getRequiredHeaders() {
         return requiredHeaders;
     }
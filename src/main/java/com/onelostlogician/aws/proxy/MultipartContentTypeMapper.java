@@ -0,0 +1,408 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Parses {@code multipart/form-data} bodies part by part as the body is decoded, holding parts up to the spill
+ * threshold in memory and writing larger ones to temporary files, so that uploads never need more than one copy of
+ * the body in heap. Register it for {@link #MULTIPART_FORM_DATA}; the boundary is read from the request's
+ * {@code Content-Type}.
+ */
+public class MultipartContentTypeMapper implements ContentTypeMapper<MultipartForm> {
+    public static final MediaType MULTIPART_FORM_DATA = MediaType.create("multipart", "form-data");
+    /**
+     * The parsed form, attached so that it is only parsed once and is closed once the response has been produced.
+     */
+    public static final ApiGatewayProxyRequest.AttachmentKey<MultipartForm> FORM = new ApiGatewayProxyRequest.AttachmentKey<>("multipart-form");
+
+    private static final int DEFAULT_SPILL_THRESHOLD = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final int spillThresholdInBytes;
+    private final Path spillDirectory;
+
+    public MultipartContentTypeMapper() {
+        this(DEFAULT_SPILL_THRESHOLD, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public MultipartContentTypeMapper(int spillThresholdInBytes, Path spillDirectory) {
+        if (spillThresholdInBytes < 0) {
+            throw new IllegalArgumentException("Spill threshold must not be negative: " + spillThresholdInBytes);
+        }
+        this.spillThresholdInBytes = spillThresholdInBytes;
+        this.spillDirectory = requireNonNull(spillDirectory);
+    }
+
+    @Override
+    public MultipartForm toInput(ApiGatewayProxyRequest request, Context context) throws Exception {
+        return request.computeAttachmentIfAbsent(FORM, () -> parse(request));
+    }
+
+    private MultipartForm parse(ApiGatewayProxyRequest request) throws Exception {
+        String boundary = getBoundary(RequestValidator.getHeader(request.getHeaders(), "content-type"));
+        MultipartForm form = new MultipartForm();
+        try (InputStream body = request.getBodyAsInputStream()) {
+            parse(new Scanner(body, ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1)), form);
+            return form;
+        }
+        catch (IOException e) {
+            form.close();
+            throw BinaryFormat.badRequest(String.format("Malformed multipart body. %s", e.getMessage()));
+        }
+        catch (RuntimeException | Error e) {
+            form.close();
+            throw e;
+        }
+    }
+
+    private void parse(Scanner scanner, MultipartForm form) throws IOException {
+        // The first boundary has no preceding line break, so one is supplied to let every boundary match alike.
+        scanner.unread(CRLF);
+        if (!scanner.skipTo(null)) {
+            throw new IOException("No opening boundary");
+        }
+        while (true) {
+            if (scanner.startsWith('-', '-')) {
+                return;
+            }
+            scanner.skipLinearWhitespace();
+            if (!scanner.startsWith('\r', '\n')) {
+                throw new IOException("Boundary is not followed by a line break");
+            }
+            Map<String, String> headers = scanner.readHeaders();
+            String disposition = headers.get("Content-Disposition");
+            String name = getParameter(disposition, "name");
+            String filename = getParameter(disposition, "filename");
+            boolean added = false;
+            try (SpillingOutputStream content = new SpillingOutputStream()) {
+                try {
+                    if (!scanner.skipTo(content)) {
+                        throw new IOException("Part " + name + " is not terminated by a boundary");
+                    }
+                    content.flush();
+                    form.add(new MultipartForm.Part(headers, name, filename, content.getBytes(), content.getFile(), content.getSize()));
+                    added = true;
+                }
+                finally {
+                    // Until the part is in the form, closing the form cannot remove its spill file.
+                    if (!added) {
+                        content.discard();
+                    }
+                }
+            }
+        }
+    }
+
+    private static String getBoundary(String contentType) throws LambdaException {
+        String boundary = null;
+        if (contentType != null) {
+            try {
+                boundary = MediaType.parse(contentType).parameters().get("boundary").stream().findFirst().orElse(null);
+            }
+            catch (IllegalArgumentException e) {
+                throw BinaryFormat.badRequest(String.format("Malformed Content-Type %s", contentType));
+            }
+        }
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw BinaryFormat.badRequest("A multipart/form-data Content-Type must have a boundary of 1 to 70 characters");
+        }
+        return boundary;
+    }
+
+    static String getParameter(String header, String parameter) {
+        if (header == null) {
+            return null;
+        }
+        int position = header.indexOf(';');
+        while (position >= 0 && position < header.length()) {
+            int start = position + 1;
+            int equals = header.indexOf('=', start);
+            if (equals < 0) {
+                return null;
+            }
+            String name = header.substring(start, equals).trim();
+            int valueStart = equals + 1;
+            while (valueStart < header.length() && header.charAt(valueStart) == ' ') {
+                valueStart++;
+            }
+            String value;
+            if (valueStart < header.length() && header.charAt(valueStart) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                int i = valueStart + 1;
+                for (; i < header.length() && header.charAt(i) != '"'; i++) {
+                    char c = header.charAt(i);
+                    if (c == '\\' && i + 1 < header.length()) {
+                        c = header.charAt(++i);
+                    }
+                    quoted.append(c);
+                }
+                value = quoted.toString();
+                position = header.indexOf(';', i);
+            }
+            else {
+                position = header.indexOf(';', valueStart);
+                value = header.substring(valueStart, position < 0 ? header.length() : position).trim();
+            }
+            if (name.equalsIgnoreCase(parameter)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Holds content in memory up to the spill threshold and moves it to a temporary file beyond that.
+     */
+    private class SpillingOutputStream extends OutputStream {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream(256);
+        private Path file;
+        private OutputStream fileStream;
+        private long size = 0;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            // Failures to write the spill file are the function's fault rather than the client's, so they are kept
+            // apart from the IOExceptions of a malformed body.
+            try {
+                if (fileStream == null && size + length > spillThresholdInBytes) {
+                    file = Files.createTempFile(spillDirectory, "multipart-", ".part");
+                    fileStream = new BufferedOutputStream(Files.newOutputStream(file), 8192);
+                    memory.writeTo(fileStream);
+                    memory = null;
+                }
+                if (fileStream != null) {
+                    fileStream.write(buffer, offset, length);
+                }
+                else {
+                    memory.write(buffer, offset, length);
+                }
+            }
+            catch (IOException e) {
+                discard();
+                throw new UncheckedIOException(e);
+            }
+            size += length;
+        }
+
+        @Override
+        public void flush() {
+            try {
+                if (fileStream != null) {
+                    fileStream.flush();
+                }
+            }
+            catch (IOException e) {
+                discard();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (fileStream != null) {
+                try {
+                    fileStream.close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                fileStream = null;
+            }
+        }
+
+        void discard() {
+            try {
+                if (fileStream != null) {
+                    fileStream.close();
+                }
+            }
+            catch (IOException ignored) {
+            }
+            fileStream = null;
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                }
+                catch (IOException ignored) {
+                }
+            }
+        }
+
+        byte[] getBytes() {
+            return memory == null ? null : memory.toByteArray();
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Reads the body through a fixed buffer, looking for the delimiter that ends each part.
+     */
+    private static class Scanner {
+        private final InputStream in;
+        private final byte[] delimiter;
+        private final byte[] buffer;
+        private int position = 0;
+        private int limit = 0;
+        private boolean eof = false;
+
+        Scanner(InputStream in, byte[] delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+            this.buffer = new byte[Math.max(16 * 1024, delimiter.length * 4)];
+        }
+
+        void unread(byte[] bytes) {
+            System.arraycopy(bytes, 0, buffer, limit, bytes.length);
+            limit += bytes.length;
+        }
+
+        /**
+         * Copies bytes to the sink, if any, up to the next delimiter and consumes the delimiter. Returns false if the
+         * body ends first.
+         */
+        boolean skipTo(OutputStream sink) throws IOException {
+            while (true) {
+                fill(delimiter.length);
+                int found = indexOfDelimiter();
+                if (found >= 0) {
+                    if (sink != null) {
+                        sink.write(buffer, position, found - position);
+                    }
+                    position = found + delimiter.length;
+                    return true;
+                }
+                if (eof) {
+                    return false;
+                }
+                // Keep back enough bytes to hold a delimiter that straddles the end of the buffer.
+                int safe = Math.max(position, limit - delimiter.length + 1);
+                if (sink != null) {
+                    sink.write(buffer, position, safe - position);
+                }
+                position = safe;
+                compact();
+                fillMore();
+            }
+        }
+
+        boolean startsWith(char first, char second) throws IOException {
+            fill(2);
+            if (limit - position >= 2 && buffer[position] == first && buffer[position + 1] == second) {
+                position += 2;
+                return true;
+            }
+            return false;
+        }
+
+        void skipLinearWhitespace() throws IOException {
+            while (true) {
+                fill(1);
+                if (position < limit && (buffer[position] == ' ' || buffer[position] == '\t')) {
+                    position++;
+                }
+                else {
+                    return;
+                }
+            }
+        }
+
+        Map<String, String> readHeaders() throws IOException {
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            int total = 0;
+            while (true) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+                while (!startsWith('\r', '\n')) {
+                    fill(1);
+                    if (position >= limit) {
+                        throw new IOException("Part headers are not terminated");
+                    }
+                    line.write(buffer[position++]);
+                    if (++total > MAX_HEADER_BYTES) {
+                        throw new IOException("Part headers are larger than " + MAX_HEADER_BYTES + " bytes");
+                    }
+                }
+                if (line.size() == 0) {
+                    return headers;
+                }
+                String header = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                int colon = header.indexOf(':');
+                if (colon <= 0) {
+                    throw new IOException("Malformed part header " + header);
+                }
+                headers.put(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+            }
+        }
+
+        private int indexOfDelimiter() {
+            byte first = delimiter[0];
+            int last = limit - delimiter.length;
+            for (int i = position; i <= last; i++) {
+                if (buffer[i] != first) {
+                    continue;
+                }
+                int j = 1;
+                while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+                    j++;
+                }
+                if (j == delimiter.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void fill(int wanted) throws IOException {
+            while (!eof && limit - position < wanted) {
+                compact();
+                fillMore();
+            }
+        }
+
+        private void compact() {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+        }
+
+        private void fillMore() throws IOException {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            }
+            else {
+                limit += read;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.onelostlogician.aws.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The parts of a {@code multipart/form-data} body, as parsed by a {@link MultipartContentTypeMapper}. Parts above the
+ * mapper's spill threshold are held in temporary files, which are deleted when the form is closed. The form is attached
+ * to its request, so {@link LambdaProxyHandler} closes it once the response has been produced; handlers may close it
+ * earlier once they are done with it.
+ */
+public class MultipartForm implements AutoCloseable {
+    private final List<Part> parts = new ArrayList<>();
+
+    MultipartForm() {}
+
+    void add(Part part) {
+        parts.add(part);
+    }
+
+    public List<Part> getParts() {
+        return Collections.unmodifiableList(parts);
+    }
+
+    public Optional<Part> getPart(String name) {
+        for (Part part : parts) {
+            if (name.equals(part.getName())) {
+                return Optional.of(part);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Part part : parts) {
+            try {
+                part.delete();
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public static class Part {
+        private final Map<String, String> headers;
+        private final String name;
+        private final String filename;
+        private final byte[] content;
+        private final Path file;
+        private final long size;
+
+        Part(Map<String, String> headers, String name, String filename, byte[] content, Path file, long size) {
+            this.headers = Collections.unmodifiableMap(headers);
+            this.name = name;
+            this.filename = filename;
+            this.content = content;
+            this.file = file;
+            this.size = size;
+        }
+
+        /**
+         * Returns the part's headers, looked up case-insensitively.
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Optional<String> getFilename() {
+            return Optional.ofNullable(filename);
+        }
+
+        public Optional<String> getContentType() {
+            return Optional.ofNullable(headers.get("Content-Type"));
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isInMemory() {
+            return file == null;
+        }
+
+        public InputStream getInputStream() throws IOException {
+            return file == null ? new ByteArrayInputStream(content) : Files.newInputStream(file);
+        }
+
+        void delete() throws IOException {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * How a response whose body has been moved to a {@link BlobStore} is answered.
+ */
+public enum OffloadMode {
+    /**
+     * A {@code 303 See Other} with the download URL in the {@code Location} header, which HTTP clients follow.
+     */
+    REDIRECT,
+    /**
+     * The original status with a JSON document holding the download {@code location}, {@code contentType} and
+     * {@code size}, for clients that should not follow redirects.
+     */
+    POINTER
+}
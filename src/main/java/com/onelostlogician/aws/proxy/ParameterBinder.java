@@ -0,0 +1,467 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+
+/**
+ * Binds path, query, header and {@code application/x-www-form-urlencoded} parameters onto the fields of an input type
+ * annotated with {@link PathParam}, {@link QueryParam}, {@link HeaderParam} and {@link FormParam}, with an optional
+ * {@link DefaultValue}. The fields are resolved to method handles, and their conversions chosen, once when the binder
+ * is constructed, so binding a request only parses the values and invokes the handles; primitive fields are set
+ * without boxing.
+ *
+ * Supported field types are {@code String}, the primitives and their boxed equivalents, {@link UUID}, enums, and
+ * {@code List}s of those, which are read from comma-separated values. Primitive fields without a default are required.
+ * Every parameter that cannot be bound is reported in a single 400 response.
+ */
+public class ParameterBinder<Input> implements ContentTypeMapper<Input> {
+    private enum Source {
+        PATH_PARAMETER("path parameter"),
+        QUERY_PARAMETER("query parameter"),
+        HEADER("header"),
+        FORM_PARAMETER("form parameter");
+
+        private final String description;
+
+        Source(String description) {
+            this.description = description;
+        }
+    }
+
+    private final MethodHandle constructor;
+    private final Binding[] bindings;
+    private final boolean readsForm;
+
+    public ParameterBinder(Class<Input> inputClass) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<Input> declared = inputClass.getDeclaredConstructor();
+            declared.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(declared).asType(MethodType.methodType(Object.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(inputClass.getName() + " needs a no-argument constructor", e);
+        }
+
+        List<Binding> bindings = new ArrayList<>();
+        for (Class<?> type = inputClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Binding binding = compile(lookup, field);
+                if (binding != null) {
+                    bindings.add(binding);
+                }
+            }
+        }
+        if (bindings.isEmpty()) {
+            throw new IllegalArgumentException(inputClass.getName() + " has no annotated parameter fields");
+        }
+        this.bindings = bindings.toArray(new Binding[0]);
+        this.readsForm = bindings.stream().anyMatch(binding -> binding.source == Source.FORM_PARAMETER);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Input toInput(ApiGatewayProxyRequest request, Context context) throws Exception {
+        Map<String, String> form = readsForm ? GeneratedMapperSupport.readForm(request) : null;
+        Object input;
+        try {
+            input = constructor.invokeExact();
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Could not construct input", e);
+        }
+
+        StringBuilder errors = null;
+        for (Binding binding : bindings) {
+            String value;
+            switch (binding.source) {
+                case PATH_PARAMETER:
+                    value = get(request.getPathParameters(), binding.name);
+                    break;
+                case QUERY_PARAMETER:
+                    value = get(request.getQueryStringParameters(), binding.name);
+                    break;
+                case HEADER:
+                    value = RequestValidator.getHeader(request.getHeaders(), binding.name);
+                    break;
+                default:
+                    value = get(form, binding.name);
+            }
+            if (value == null) {
+                value = binding.defaultValue;
+            }
+
+            String error;
+            if (value == null) {
+                error = binding.required ? "is required" : null;
+            }
+            else {
+                try {
+                    error = binding.bind(input, value);
+                }
+                catch (Throwable e) {
+                    throw new IllegalStateException("Could not set " + binding.name, e);
+                }
+            }
+
+            if (error != null) {
+                if (errors == null) {
+                    errors = new StringBuilder("Invalid request: ");
+                }
+                else {
+                    errors.append("; ");
+                }
+                errors.append(binding.source.description)
+                        .append(' ')
+                        .append(binding.name)
+                        .append(' ')
+                        .append(error);
+            }
+        }
+
+        if (errors != null) {
+            ApiGatewayProxyResponse invalidRequest = new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(BAD_REQUEST)
+                    .withBody(errors.toString())
+                    .build();
+            throw new LambdaException(invalidRequest);
+        }
+        return (Input) input;
+    }
+
+    private static String get(Map<String, String> parameters, String name) {
+        return parameters == null ? null : parameters.get(name);
+    }
+
+    private static Binding compile(MethodHandles.Lookup lookup, Field field) {
+        Source source;
+        String name;
+        if (field.isAnnotationPresent(PathParam.class)) {
+            source = Source.PATH_PARAMETER;
+            name = field.getAnnotation(PathParam.class).value();
+        }
+        else if (field.isAnnotationPresent(QueryParam.class)) {
+            source = Source.QUERY_PARAMETER;
+            name = field.getAnnotation(QueryParam.class).value();
+        }
+        else if (field.isAnnotationPresent(HeaderParam.class)) {
+            source = Source.HEADER;
+            name = field.getAnnotation(HeaderParam.class).value().toLowerCase();
+        }
+        else if (field.isAnnotationPresent(FormParam.class)) {
+            source = Source.FORM_PARAMETER;
+            name = field.getAnnotation(FormParam.class).value();
+        }
+        else {
+            return null;
+        }
+        if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+            throw new IllegalArgumentException("Parameter field " + field.getName() + " must be neither static nor final");
+        }
+        DefaultValue defaultValue = field.getAnnotation(DefaultValue.class);
+
+        MethodHandle setter;
+        try {
+            field.setAccessible(true);
+            setter = lookup.unreflectSetter(field);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot set parameter field " + field.getName(), e);
+        }
+        Class<?> type = field.getType();
+        // Adapting each setter to an exact (Object, primitive) type lets it be invoked with invokeExact, which neither
+        // boxes the value nor checks the argument types again on each call.
+        Binding binding;
+        if (type == int.class) {
+            binding = new IntBinding(setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+        }
+        else if (type == long.class) {
+            binding = new LongBinding(setter.asType(MethodType.methodType(void.class, Object.class, long.class)));
+        }
+        else if (type == double.class || type == float.class) {
+            // A float field's setter narrows the parsed double, which asType does not allow.
+            binding = new DoubleBinding(MethodHandles.explicitCastArguments(setter,
+                    MethodType.methodType(void.class, Object.class, double.class)), type == float.class);
+        }
+        else if (type == boolean.class) {
+            binding = new BooleanBinding(setter.asType(MethodType.methodType(void.class, Object.class, boolean.class)));
+        }
+        else if (type == short.class || type == byte.class || type == char.class) {
+            throw new IllegalArgumentException("Unsupported parameter type " + type.getName() + " for " + field.getName());
+        }
+        else if (type == List.class) {
+            Type elementType = field.getGenericType() instanceof ParameterizedType
+                    ? ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0]
+                    : String.class;
+            if (!(elementType instanceof Class)) {
+                throw new IllegalArgumentException("Unsupported list element type " + elementType + " for " + field.getName());
+            }
+            binding = new ListBinding(setter.asType(MethodType.methodType(void.class, Object.class, Object.class)),
+                    converter((Class<?>) elementType, field), describe((Class<?>) elementType));
+        }
+        else {
+            binding = new ObjectBinding(setter.asType(MethodType.methodType(void.class, Object.class, Object.class)),
+                    converter(type, field), describe(type));
+        }
+        binding.source = source;
+        binding.name = name;
+        binding.defaultValue = defaultValue == null ? null : defaultValue.value();
+        binding.required = type.isPrimitive();
+        return binding;
+    }
+
+    private static Converter converter(Class<?> type, Field field) {
+        if (type == String.class) {
+            return value -> value;
+        }
+        if (type == Integer.class) {
+            return value -> {
+                try {
+                    return Integer.valueOf(value);
+                }
+                catch (NumberFormatException e) {
+                    return null;
+                }
+            };
+        }
+        if (type == Long.class) {
+            return value -> {
+                try {
+                    return Long.valueOf(value);
+                }
+                catch (NumberFormatException e) {
+                    return null;
+                }
+            };
+        }
+        if (type == Double.class) {
+            return value -> ParameterType.NUMBER.matches(value) ? Double.valueOf(value) : null;
+        }
+        if (type == Float.class) {
+            return value -> ParameterType.NUMBER.matches(value) ? Float.valueOf(value) : null;
+        }
+        if (type == Boolean.class) {
+            return value -> ParameterType.BOOLEAN.matches(value) ? Boolean.valueOf(value) : null;
+        }
+        if (type == UUID.class) {
+            return value -> ParameterType.UUID.matches(value) ? UUID.fromString(value) : null;
+        }
+        if (type.isEnum()) {
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+            return constants::get;
+        }
+        throw new IllegalArgumentException("Unsupported parameter type " + type.getName() + " for " + field.getName());
+    }
+
+    private static String describe(Class<?> type) {
+        if (type == Integer.class || type == Long.class) {
+            return "must be " + ParameterType.INTEGER.getDescription();
+        }
+        if (type == Double.class || type == Float.class) {
+            return "must be " + ParameterType.NUMBER.getDescription();
+        }
+        if (type == Boolean.class) {
+            return "must be " + ParameterType.BOOLEAN.getDescription();
+        }
+        if (type == UUID.class) {
+            return "must be " + ParameterType.UUID.getDescription();
+        }
+        if (type.isEnum()) {
+            List<String> names = new ArrayList<>();
+            for (Object constant : type.getEnumConstants()) {
+                names.add(((Enum<?>) constant).name());
+            }
+            return "must be one of " + String.join(", ", names);
+        }
+        return "is invalid";
+    }
+
+    @FunctionalInterface
+    private interface Converter {
+        /**
+         * Returns the converted value, or null if the value cannot be converted.
+         */
+        Object convert(String value);
+    }
+
+    private abstract static class Binding {
+        Source source;
+        String name;
+        String defaultValue;
+        boolean required;
+
+        /**
+         * Sets the field from the value, returning an error message if the value cannot be converted.
+         */
+        abstract String bind(Object target, String value) throws Throwable;
+    }
+
+    private static class IntBinding extends Binding {
+        private final MethodHandle setter;
+
+        IntBinding(MethodHandle setter) {
+            this.setter = setter;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            if (!ParameterType.INTEGER.matches(value)) {
+                return "must be " + ParameterType.INTEGER.getDescription();
+            }
+            long parsed;
+            try {
+                parsed = Long.parseLong(value);
+            }
+            catch (NumberFormatException e) {
+                parsed = Long.MAX_VALUE;
+            }
+            if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE) {
+                return "must be between " + Integer.MIN_VALUE + " and " + Integer.MAX_VALUE;
+            }
+            setter.invokeExact(target, (int) parsed);
+            return null;
+        }
+    }
+
+    private static class LongBinding extends Binding {
+        private final MethodHandle setter;
+
+        LongBinding(MethodHandle setter) {
+            this.setter = setter;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            if (!ParameterType.INTEGER.matches(value)) {
+                return "must be " + ParameterType.INTEGER.getDescription();
+            }
+            long parsed;
+            try {
+                parsed = Long.parseLong(value);
+            }
+            catch (NumberFormatException e) {
+                return "must be between " + Long.MIN_VALUE + " and " + Long.MAX_VALUE;
+            }
+            setter.invokeExact(target, parsed);
+            return null;
+        }
+    }
+
+    private static class DoubleBinding extends Binding {
+        private final MethodHandle setter;
+        private final boolean isFloat;
+
+        DoubleBinding(MethodHandle setter, boolean isFloat) {
+            this.setter = setter;
+            this.isFloat = isFloat;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            if (!ParameterType.NUMBER.matches(value)) {
+                return "must be " + ParameterType.NUMBER.getDescription();
+            }
+            double parsed = isFloat ? Float.parseFloat(value) : Double.parseDouble(value);
+            setter.invokeExact(target, parsed);
+            return null;
+        }
+    }
+
+    private static class BooleanBinding extends Binding {
+        private final MethodHandle setter;
+
+        BooleanBinding(MethodHandle setter) {
+            this.setter = setter;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            if (!ParameterType.BOOLEAN.matches(value)) {
+                return "must be " + ParameterType.BOOLEAN.getDescription();
+            }
+            setter.invokeExact(target, "true".equalsIgnoreCase(value));
+            return null;
+        }
+    }
+
+    private static class ObjectBinding extends Binding {
+        private final MethodHandle setter;
+        private final Converter converter;
+        private final String error;
+
+        ObjectBinding(MethodHandle setter, Converter converter, String error) {
+            this.setter = setter;
+            this.converter = converter;
+            this.error = error;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            Object converted = converter.convert(value);
+            if (converted == null) {
+                return error;
+            }
+            setter.invokeExact(target, converted);
+            return null;
+        }
+    }
+
+    private static class ListBinding extends Binding {
+        private final MethodHandle setter;
+        private final Converter converter;
+        private final String error;
+
+        ListBinding(MethodHandle setter, Converter converter, String error) {
+            this.setter = setter;
+            this.converter = converter;
+            this.error = "values " + error;
+        }
+
+        @Override
+        String bind(Object target, String value) throws Throwable {
+            List<Object> values = new ArrayList<>();
+            if (!value.isEmpty()) {
+                int start = 0;
+                while (start <= value.length()) {
+                    int end = value.indexOf(',', start);
+                    if (end < 0) {
+                        end = value.length();
+                    }
+                    Object converted = converter.convert(value.substring(start, end).trim());
+                    if (converted == null) {
+                        return error;
+                    }
+                    values.add(converted);
+                    start = end + 1;
+                }
+            }
+            setter.invokeExact(target, (Object) Collections.unmodifiableList(values));
+            return null;
+        }
+    }
+}
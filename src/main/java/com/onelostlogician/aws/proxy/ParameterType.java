@@ -0,0 +1,112 @@
+package com.onelostlogician.aws.proxy;
+
+public enum ParameterType {
+    STRING("a string"),
+    INTEGER("an integer"),
+    NUMBER("a number"),
+    BOOLEAN("a boolean"),
+    UUID("a UUID");
+
+    private final String description;
+
+    ParameterType(String description) {
+        this.description = description;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    boolean matches(String value) {
+        switch (this) {
+            case INTEGER:
+                return isInteger(value);
+            case NUMBER:
+                return isNumber(value);
+            case BOOLEAN:
+                return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+            case UUID:
+                return isUuid(value);
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isInteger(String value) {
+        int length = value.length();
+        int start = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (start == length || length - start > 19) {
+            return false;
+        }
+        long magnitude = 0;
+        for (int i = start; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            magnitude = magnitude * 10 + digit;
+            if (magnitude < 0) {
+                // Only Long.MIN_VALUE itself may overflow the positive accumulator.
+                return value.charAt(0) == '-' && i == length - 1 && magnitude == Long.MIN_VALUE;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumber(String value) {
+        int length = value.length();
+        int i = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        int digits = 0;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static boolean isUuid(String value) {
+        if (value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            }
+            else if (!isDigit(c) && !((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,13 @@
+package com.onelostlogician.aws.proxy;
+
+import com.google.common.net.MediaType;
+import com.google.protobuf.MessageLite;
+
+public class ProtobufAcceptMapper<Output extends MessageLite> implements AcceptMapper<Output> {
+    public static final MediaType MEDIA_TYPE = ProtobufContentTypeMapper.MEDIA_TYPE;
+
+    @Override
+    public ApiGatewayProxyResponse outputToResponse(Output output) throws Exception {
+        return BinaryFormat.toResponse(MEDIA_TYPE, output.toByteArray());
+    }
+}
@@ -0,0 +1,29 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import static java.util.Objects.requireNonNull;
+
+public class ProtobufContentTypeMapper<Input extends MessageLite> implements ContentTypeMapper<Input> {
+    public static final MediaType MEDIA_TYPE = MediaType.create("application", "x-protobuf");
+
+    private final Parser<Input> parser;
+
+    public ProtobufContentTypeMapper(Parser<Input> parser) {
+        this.parser = requireNonNull(parser);
+    }
+
+    @Override
+    public Input toInput(ApiGatewayProxyRequest request, Context context) throws Exception {
+        try {
+            return parser.parseFrom(BinaryFormat.bodyStream(request));
+        }
+        catch (InvalidProtocolBufferException e) {
+            throw BinaryFormat.badRequest(String.format("Malformed %s body. %s", MEDIA_TYPE, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.onelostlogician.aws.proxy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A response body that can produce any byte range of itself. Attach one with
+ * {@link ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder#withBodySource(RangeBodySource)} and
+ * {@link LambdaProxyHandler} answers {@code Range} requests by producing only the requested bytes.
+ */
+public interface RangeBodySource {
+    long getLength() throws IOException;
+
+    void writeTo(OutputStream out, long offset, long length) throws IOException;
+
+    /**
+     * Returns a strong entity tag for the body, without quotes, or null if there is none. A {@code Range} request
+     * whose {@code If-Range} does not match it is answered with the whole body.
+     */
+    default String getEntityTag() {
+        return null;
+    }
+
+    /**
+     * Returns when the body last changed, in milliseconds since the epoch, or -1 if unknown.
+     */
+    default long getLastModified() {
+        return -1;
+    }
+
+    static RangeBodySource of(byte[] bytes) {
+        requireNonNull(bytes);
+        return new RangeBodySource() {
+            @Override
+            public long getLength() {
+                return bytes.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out, long offset, long length) throws IOException {
+                out.write(bytes, (int) offset, (int) length);
+            }
+        };
+    }
+
+    static RangeBodySource of(Path path) {
+        requireNonNull(path);
+        return new RangeBodySource() {
+            @Override
+            public long getLength() throws IOException {
+                return Files.size(path);
+            }
+
+            @Override
+            public void writeTo(OutputStream out, long offset, long length) throws IOException {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, 64 * 1024));
+                    long position = offset;
+                    long remaining = length;
+                    while (remaining > 0) {
+                        buffer.clear();
+                        if (remaining < buffer.capacity()) {
+                            buffer.limit((int) remaining);
+                        }
+                        int read = channel.read(buffer, position);
+                        if (read < 0) {
+                            throw new IOException("File " + path + " ended before the requested range");
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            target.write(buffer);
+                        }
+                        position += read;
+                        remaining -= read;
+                    }
+                }
+            }
+
+            @Override
+            public long getLastModified() {
+                try {
+                    return Files.getLastModifiedTime(path).toMillis();
+                }
+                catch (IOException e) {
+                    return -1;
+                }
+            }
+        };
+    }
+}
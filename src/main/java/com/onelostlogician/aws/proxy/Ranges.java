@@ -0,0 +1,242 @@
+package com.onelostlogician.aws.proxy;
+
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.OK;
+import static com.onelostlogician.aws.proxy.HttpStatus.PARTIAL_CONTENT;
+import static com.onelostlogician.aws.proxy.HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+
+/*
+ * Answers single byte-range GET requests with 206 Partial Content. Responses with a RangeBodySource only produce the
+ * requested bytes; other successful responses are sliced after the fact. Syntactically invalid and multiple-range
+ * requests are answered with the whole body, which RFC 7233 allows; ranges that start past the end get a 416.
+ *
+ * Bodies of textual media types stay text as long as the bytes produced are whole UTF-8 characters. Other bodies are
+ * base64 encoded, which API Gateway only decodes for media types listed in the API's binaryMediaTypes.
+ */
+final class Ranges {
+    private static final String BYTES_UNIT = "bytes=";
+
+    private Ranges() {}
+
+    static ApiGatewayProxyResponse apply(ApiGatewayProxyRequest request, HttpMethod method, ApiGatewayProxyResponse response) throws IOException {
+        RangeBodySource source = response.getBodySource();
+        String range = method == HttpMethod.GET && response.getStatusCode() == OK
+                ? RequestValidator.getHeader(request.getHeaders(), "range")
+                : null;
+        if (range == null && source == null) {
+            return response;
+        }
+        if (source == null) {
+            source = RangeBodySource.of(getBodyBytes(response));
+        }
+
+        Map<String, String> headers = response.getBodySource() == null ? copyHeaders(response) : sourceHeaders(response, source);
+        String entityTag = source.getEntityTag();
+        long lastModified = source.getLastModified();
+        long length = source.getLength();
+        long[] bounds = range == null || !ifRangeMatches(request, entityTag, lastModified) ? null : parse(range, length);
+        if (bounds == null) {
+            if (response.getBodySource() == null) {
+                return response;
+            }
+            return wholeBody(response, headers, source, length);
+        }
+        if (bounds.length == 0) {
+            headers.put("Content-Range", "bytes */" + length);
+            return new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .withHeaders(headers)
+                    .build();
+        }
+        headers.put("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+        ApiGatewayProxyResponseBuilder partial = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(PARTIAL_CONTENT)
+                .withHeaders(headers);
+        return withBody(partial, response, source, bounds[0], bounds[1] - bounds[0] + 1).build();
+    }
+
+    /**
+     * Replaces a body source with the whole body it produces, so that the response can be stored and replayed; the
+     * response is returned unchanged if it has no body source.
+     */
+    static ApiGatewayProxyResponse materialise(ApiGatewayProxyResponse response) throws IOException {
+        RangeBodySource source = response.getBodySource();
+        if (source == null) {
+            return response;
+        }
+        return wholeBody(response, sourceHeaders(response, source), source, source.getLength());
+    }
+
+    /**
+     * Returns the first and last byte of the range, an empty array if it cannot be satisfied, or null if the range
+     * should be ignored.
+     */
+    static long[] parse(String range, long length) {
+        String trimmed = range.trim();
+        if (!trimmed.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        String spec = trimmed.substring(BYTES_UNIT.length()).trim();
+        if (spec.indexOf(',') >= 0) {
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix < 0) {
+                    return null;
+                }
+                if (suffix == 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[] {Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] {start, Math.min(end, length - 1)};
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(ApiGatewayProxyRequest request, String entityTag, long lastModified) {
+        String ifRange = RequestValidator.getHeader(request.getHeaders(), "if-range");
+        if (ifRange == null) {
+            return true;
+        }
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"")) {
+            // Only a strong entity tag can validate a range.
+            return entityTag != null && validator.equals('"' + entityTag + '"');
+        }
+        if (validator.startsWith("W/") || lastModified < 0) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(validator, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == lastModified / 1000;
+        }
+        catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static ApiGatewayProxyResponse wholeBody(ApiGatewayProxyResponse response, Map<String, String> headers, RangeBodySource source, long length) throws IOException {
+        ApiGatewayProxyResponseBuilder whole = response.builder()
+                .withHeaders(headers)
+                .withBodySource(null);
+        return withBody(whole, response, source, 0, length).build();
+    }
+
+    private static ApiGatewayProxyResponseBuilder withBody(ApiGatewayProxyResponseBuilder builder, ApiGatewayProxyResponse response, RangeBodySource source, long offset, long length) throws IOException {
+        if (!isText(response)) {
+            return builder.withBody(encode(source, offset, length)).withBase64Encoded(true);
+        }
+        byte[] bytes = read(source, offset, length);
+        try {
+            String text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+            return builder.withBody(text).withBase64Encoded(false);
+        }
+        catch (CharacterCodingException e) {
+            // The range splits a character.
+            return builder.withBody(Base64.getEncoder().encodeToString(bytes)).withBase64Encoded(true);
+        }
+    }
+
+    private static boolean isText(ApiGatewayProxyResponse response) {
+        Map<String, String> headers = response.getHeaders();
+        if (RequestValidator.getHeader(headers, "content-encoding") != null) {
+            return false;
+        }
+        String contentType = RequestValidator.getHeader(headers, "content-type");
+        if (contentType == null) {
+            // Without a media type, only a body that was already text is known to be text.
+            return response.getBodySource() == null && !response.getIsBase64Encoded();
+        }
+        try {
+            return StaticResponse.isText(MediaType.parse(contentType));
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] read(RangeBodySource source, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Response bodies of " + length + " bytes cannot be encoded");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+        source.writeTo(out, offset, length);
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> copyHeaders(ApiGatewayProxyResponse response) {
+        return response.getHeaders() == null ? new HashMap<>() : new HashMap<>(response.getHeaders());
+    }
+
+    private static Map<String, String> sourceHeaders(ApiGatewayProxyResponse response, RangeBodySource source) {
+        Map<String, String> headers = copyHeaders(response);
+        headers.put("Accept-Ranges", "bytes");
+        String entityTag = source.getEntityTag();
+        if (entityTag != null) {
+            headers.put("ETag", '"' + entityTag + '"');
+        }
+        long lastModified = source.getLastModified();
+        if (lastModified >= 0) {
+            headers.put("Last-Modified", formatDate(lastModified));
+        }
+        return headers;
+    }
+
+    private static byte[] getBodyBytes(ApiGatewayProxyResponse response) {
+        String body = response.getBody() == null ? "" : response.getBody();
+        return response.getIsBase64Encoded()
+                ? Base64.getDecoder().decode(body)
+                : body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String encode(RangeBodySource source, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE / 4 * 3) {
+            throw new IOException("Response bodies of " + length + " bytes cannot be encoded");
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) ((length + 2) / 3 * 4));
+        try (OutputStream out = Base64.getEncoder().wrap(encoded)) {
+            source.writeTo(out, offset, length);
+        }
+        return new String(encoded.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static String formatDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,171 @@
+package com.onelostlogician.aws.proxy;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class ReplayReport {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    private final ConcurrentMap<String, RouteRecorder> routes = new ConcurrentHashMap<>();
+    private long elapsedNanos;
+
+    private static class RouteRecorder {
+        private long[] latencies = new long[64];
+        private int count = 0;
+        private long errors = 0;
+        private final Map<Integer, Long> statusCodes = new TreeMap<>();
+
+        private synchronized void record(long latencyNanos, int statusCode) {
+            addLatency(latencyNanos);
+            statusCodes.merge(statusCode, 1L, Long::sum);
+        }
+
+        private synchronized void recordError(long latencyNanos) {
+            addLatency(latencyNanos);
+            errors++;
+        }
+
+        private void addLatency(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    public void record(String route, long latencyNanos, int statusCode) {
+        routes.computeIfAbsent(route, r -> new RouteRecorder()).record(latencyNanos, statusCode);
+    }
+
+    /**
+     * Records an event whose handler threw instead of returning a response.
+     */
+    public void recordError(String route, long latencyNanos) {
+        routes.computeIfAbsent(route, r -> new RouteRecorder()).recordError(latencyNanos);
+    }
+
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public JSONObject toJson() {
+        JSONObject report = new JSONObject();
+        JSONObject routeReports = new JSONObject();
+        RouteRecorder all = new RouteRecorder();
+        for (Map.Entry<String, RouteRecorder> route : new TreeMap<>(routes).entrySet()) {
+            RouteRecorder recorder = route.getValue();
+            synchronized (recorder) {
+                routeReports.put(route.getKey(), toJson(recorder));
+                for (int i = 0; i < recorder.count; i++) {
+                    all.addLatency(recorder.latencies[i]);
+                }
+                recorder.statusCodes.forEach((statusCode, count) -> all.statusCodes.merge(statusCode, count, Long::sum));
+                all.errors += recorder.errors;
+            }
+        }
+        report.put("elapsedMillis", elapsedNanos / 1_000_000.0);
+        report.put("total", toJson(all));
+        report.put("routes", routeReports);
+        return report;
+    }
+
+    private JSONObject toJson(RouteRecorder recorder) {
+        long[] sorted = Arrays.copyOf(recorder.latencies, recorder.count);
+        Arrays.sort(sorted);
+        JSONObject json = new JSONObject();
+        json.put("count", (long) recorder.count);
+        json.put("throughput", elapsedNanos == 0 ? 0.0 : recorder.count * 1_000_000_000.0 / elapsedNanos);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.put(PERCENTILE_NAMES[i] + "Millis", percentile(sorted, PERCENTILES[i]) / 1_000_000.0);
+        }
+        JSONObject statusCodes = new JSONObject();
+        recorder.statusCodes.forEach((statusCode, count) -> statusCodes.put(String.valueOf(statusCode), count));
+        json.put("statusCodes", statusCodes);
+        json.put("errors", recorder.errors);
+        return json;
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    public static JSONObject parse(String json) throws ParseException {
+        return (JSONObject) new JSONParser().parse(json);
+    }
+
+    public static void print(JSONObject report, PrintStream out) {
+        out.printf("%-40s %8s %10s %9s %9s %9s %9s %8s  %s%n",
+                "route", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "errors", "status codes");
+        printRoute("TOTAL", (JSONObject) report.get("total"), out);
+        JSONObject routes = (JSONObject) report.get("routes");
+        new TreeMap<String, Object>(routes).forEach((route, json) -> printRoute(route, (JSONObject) json, out));
+    }
+
+    private static void printRoute(String route, JSONObject json, PrintStream out) {
+        out.printf("%-40s %8d %10.1f %9.3f %9.3f %9.3f %9.3f %8d  %s%n",
+                route,
+                ((Number) json.get("count")).longValue(),
+                number(json, "throughput"),
+                number(json, "p50Millis"),
+                number(json, "p90Millis"),
+                number(json, "p99Millis"),
+                number(json, "p99.9Millis"),
+                (long) number(json, "errors"),
+                json.get("statusCodes"));
+    }
+
+    public static void printDiff(JSONObject baseline, JSONObject current, PrintStream out) {
+        out.printf("%-40s %12s %12s %12s %12s%n", "route", "req/s", "p50", "p99", "p99.9");
+        printRouteDiff("TOTAL", (JSONObject) baseline.get("total"), (JSONObject) current.get("total"), out);
+        JSONObject baselineRoutes = (JSONObject) baseline.get("routes");
+        JSONObject currentRoutes = (JSONObject) current.get("routes");
+        new TreeMap<String, Object>(currentRoutes).forEach((route, json) -> {
+            JSONObject previous = (JSONObject) baselineRoutes.get(route);
+            if (previous == null) {
+                out.printf("%-40s %s%n", route, "new route");
+            }
+            else {
+                printRouteDiff(route, previous, (JSONObject) json, out);
+            }
+        });
+        new TreeMap<String, Object>(baselineRoutes).keySet().stream()
+                .filter(route -> !currentRoutes.containsKey(route))
+                .forEach(route -> out.printf("%-40s %s%n", route, "missing from this run"));
+    }
+
+    private static void printRouteDiff(String route, JSONObject baseline, JSONObject current, PrintStream out) {
+        out.printf("%-40s %12s %12s %12s %12s%n",
+                route,
+                change(baseline, current, "throughput"),
+                change(baseline, current, "p50Millis"),
+                change(baseline, current, "p99Millis"),
+                change(baseline, current, "p99.9Millis"));
+    }
+
+    static String change(JSONObject baseline, JSONObject current, String key) {
+        double before = number(baseline, key);
+        double after = number(current, key);
+        if (before == 0) {
+            return after == 0 ? "+0.0%" : "n/a";
+        }
+        return String.format("%+.1f%%", (after - before) * 100 / before);
+    }
+
+    private static double number(JSONObject json, String key) {
+        Object value = json.get(key);
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+}
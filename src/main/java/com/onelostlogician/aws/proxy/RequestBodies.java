@@ -0,0 +1,405 @@
+package com.onelostlogician.aws.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Incremental views of a request body that read straight from the {@link String} API Gateway delivered, without
+ * building a decoded copy of the whole body first.
+ */
+final class RequestBodies {
+    /**
+     * How far a compressed body may expand when no maximum body size has been registered.
+     */
+    static final long DEFAULT_MAX_DECOMPRESSED_SIZE = 16L * 1024 * 1024;
+
+    private RequestBodies() {}
+
+    static InputStream inputStream(String body, boolean isBase64Encoded) {
+        if (body == null) {
+            return new CharSequenceInputStream("");
+        }
+        if (isBase64Encoded) {
+            return Base64.getDecoder().wrap(new CharSequenceInputStream(body));
+        }
+        return new Utf8InputStream(body);
+    }
+
+    /**
+     * Decompresses the body as it is read when it carries a {@code Content-Encoding}, throwing a
+     * {@link RequestBodyTooLargeException} once more than {@code maxDecompressedSize} bytes have come out of it.
+     */
+    static InputStream inputStream(String body, boolean isBase64Encoded, String contentEncoding, long maxDecompressedSize) {
+        InputStream in = inputStream(body, isBase64Encoded);
+        if (isIdentity(contentEncoding) || body == null || body.isEmpty()) {
+            return in;
+        }
+        return new DecodingInputStream(in, contentEncoding, maxDecompressedSize);
+    }
+
+    static Reader reader(String body, boolean isBase64Encoded) {
+        if (isBase64Encoded && body != null) {
+            return new InputStreamReader(inputStream(body, true), StandardCharsets.UTF_8);
+        }
+        return new CharSequenceReader(body == null ? "" : body);
+    }
+
+    static Reader reader(String body, boolean isBase64Encoded, String contentEncoding, long maxDecompressedSize) {
+        if (isIdentity(contentEncoding)) {
+            return reader(body, isBase64Encoded);
+        }
+        return new InputStreamReader(inputStream(body, isBase64Encoded, contentEncoding, maxDecompressedSize), StandardCharsets.UTF_8);
+    }
+
+    static boolean isIdentity(String contentEncoding) {
+        if (contentEncoding == null) {
+            return true;
+        }
+        for (String coding : contentEncoding.split(",")) {
+            String trimmed = coding.trim();
+            if (!trimmed.isEmpty() && !trimmed.equalsIgnoreCase("identity")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isSupported(String contentEncoding) {
+        if (contentEncoding == null) {
+            return true;
+        }
+        for (String coding : contentEncoding.split(",")) {
+            String trimmed = coding.trim().toLowerCase();
+            if (!trimmed.isEmpty() && !trimmed.equals("identity") && !trimmed.equals("gzip")
+                    && !trimmed.equals("x-gzip") && !trimmed.equals("deflate")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the body decodes to more than {@code limit} bytes, without decoding it.
+     */
+    static boolean exceeds(String body, boolean isBase64Encoded, long limit) {
+        if (body == null) {
+            return false;
+        }
+        int length = body.length();
+        if (isBase64Encoded) {
+            int padding = 0;
+            for (int i = length - 1; i >= 0 && padding < 2 && body.charAt(i) == '='; i--) {
+                padding++;
+            }
+            long bytes = (long) length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1) - padding;
+            return bytes > limit;
+        }
+        // Every char encodes to between one and three UTF-8 bytes, and a surrogate pair to four, so most bodies can
+        // be decided without counting.
+        if (length > limit) {
+            return true;
+        }
+        if ((long) length * 3 <= limit) {
+            return false;
+        }
+        long bytes = 0;
+        for (int i = 0; i < length && bytes <= limit; i++) {
+            char c = body.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            }
+            else if (c < 0x800) {
+                bytes += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(body.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+        return bytes > limit;
+    }
+
+    /**
+     * Rethrows a {@link RequestBodyTooLargeException} that a parser has wrapped, as Jackson does, so that mappers
+     * translating parse failures into 400 responses still let it through to be answered with a 413.
+     */
+    static void rethrowIfTooLarge(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RequestBodyTooLargeException) {
+                throw (RequestBodyTooLargeException) cause;
+            }
+        }
+    }
+
+    /**
+     * Describes why a body could not be read, telling a corrupt compressed stream apart from malformed base64.
+     */
+    static String describeReadFailure(IOException failure) {
+        return failure instanceof MalformedEncodingException
+                ? String.format("Malformed compressed body. %s", failure.getMessage())
+                : String.format("Malformed base64 body. %s", failure.getMessage());
+    }
+
+    /**
+     * Thrown when a body cannot be decompressed, such as a truncated or corrupt gzip stream.
+     */
+    static class MalformedEncodingException extends IOException {
+        MalformedEncodingException(String contentEncoding, IOException cause) {
+            super(String.format("Cannot decode Content-Encoding %s: %s", contentEncoding, cause.getMessage()), cause);
+        }
+    }
+
+    /**
+     * Undoes the codings of a {@code Content-Encoding} header, last applied first. The decompressors are only built on
+     * the first read, as building a {@link GZIPInputStream} already reads the gzip header.
+     */
+    private static class DecodingInputStream extends InputStream {
+        private final String contentEncoding;
+        private final long limit;
+        private InputStream in;
+        private boolean decoding = false;
+        private long count = 0;
+
+        DecodingInputStream(InputStream in, String contentEncoding, long limit) {
+            this.in = in;
+            this.contentEncoding = contentEncoding;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = decoder().read();
+            }
+            catch (ZipException | EOFException e) {
+                throw new MalformedEncodingException(contentEncoding, e);
+            }
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read;
+            try {
+                read = decoder().read(buffer, offset, length);
+            }
+            catch (ZipException | EOFException e) {
+                throw new MalformedEncodingException(contentEncoding, e);
+            }
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void count(int read) {
+            count += read;
+            if (count > limit) {
+                throw new RequestBodyTooLargeException(limit);
+            }
+        }
+
+        private InputStream decoder() throws IOException {
+            if (!decoding) {
+                String[] codings = contentEncoding.split(",");
+                for (int i = codings.length - 1; i >= 0; i--) {
+                    String coding = codings[i].trim().toLowerCase();
+                    switch (coding) {
+                        case "":
+                        case "identity":
+                            break;
+                        case "gzip":
+                        case "x-gzip":
+                            in = new GZIPInputStream(in, 8192);
+                            break;
+                        case "deflate":
+                            in = inflate(in);
+                            break;
+                        default:
+                            throw new IOException("Unsupported Content-Encoding " + coding);
+                    }
+                }
+                decoding = true;
+            }
+            return in;
+        }
+
+        /**
+         * HTTP's deflate is zlib-wrapped, but enough clients send raw deflate that both are accepted, told apart by
+         * the zlib header check.
+         */
+        private static InputStream inflate(InputStream in) throws IOException {
+            BufferedInputStream buffered = new BufferedInputStream(in, 8192);
+            buffered.mark(2);
+            int cmf = buffered.read();
+            int flg = buffered.read();
+            buffered.reset();
+            boolean zlib = cmf != -1 && flg != -1 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            Inflater inflater = new Inflater(!zlib);
+            return new InflaterInputStream(buffered, inflater, 8192) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inflater.end();
+                }
+            };
+        }
+    }
+
+    private static class CharSequenceReader extends Reader {
+        private final CharSequence chars;
+        private int position = 0;
+
+        CharSequenceReader(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) : -1;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= chars.length()) {
+                return -1;
+            }
+            int count = Math.min(length, chars.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = chars.charAt(position++);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Reads the chars of a base64 body as the ASCII bytes they stand for.
+     */
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence chars;
+        private int position = 0;
+
+        CharSequenceInputStream(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= chars.length()) {
+                return -1;
+            }
+            int count = Math.min(length, chars.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chars.length() - position;
+        }
+    }
+
+    private static class Utf8InputStream extends InputStream {
+        private final CharSequence chars;
+        private final byte[] pending = new byte[4];
+        private int position = 0;
+        private int pendingStart = 0;
+        private int pendingEnd = 0;
+
+        Utf8InputStream(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            if (pendingStart == pendingEnd && !encodeNext()) {
+                return -1;
+            }
+            return pending[pendingStart++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < length) {
+                if (pendingStart == pendingEnd && !encodeNext()) {
+                    break;
+                }
+                buffer[offset + count++] = pending[pendingStart++];
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        private boolean encodeNext() {
+            if (position >= chars.length()) {
+                return false;
+            }
+            pendingStart = 0;
+            int c = chars.charAt(position++);
+            if (Character.isHighSurrogate((char) c) && position < chars.length() && Character.isLowSurrogate(chars.charAt(position))) {
+                c = Character.toCodePoint((char) c, chars.charAt(position++));
+            }
+            else if (Character.isSurrogate((char) c)) {
+                c = '?';
+            }
+            if (c < 0x80) {
+                pending[0] = (byte) c;
+                pendingEnd = 1;
+            }
+            else if (c < 0x800) {
+                pending[0] = (byte) (0xC0 | (c >> 6));
+                pending[1] = (byte) (0x80 | (c & 0x3F));
+                pendingEnd = 2;
+            }
+            else if (c < 0x10000) {
+                pending[0] = (byte) (0xE0 | (c >> 12));
+                pending[1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                pending[2] = (byte) (0x80 | (c & 0x3F));
+                pendingEnd = 3;
+            }
+            else {
+                pending[0] = (byte) (0xF0 | (c >> 18));
+                pending[1] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                pending[2] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                pending[3] = (byte) (0x80 | (c & 0x3F));
+                pendingEnd = 4;
+            }
+            return true;
+        }
+    }
+}
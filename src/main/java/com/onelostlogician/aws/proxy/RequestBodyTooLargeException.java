@@ -0,0 +1,19 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * Thrown while reading a compressed request body once it has expanded beyond the allowed size. It is unchecked so that
+ * it passes through mappers that translate {@link java.io.IOException}s into 400 responses; {@link MethodHandler}
+ * answers it with a 413.
+ */
+public class RequestBodyTooLargeException extends RuntimeException {
+    private final long limit;
+
+    public RequestBodyTooLargeException(long limit) {
+        super(String.format("Request bodies larger than %s bytes are not supported", limit));
+        this.limit = limit;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
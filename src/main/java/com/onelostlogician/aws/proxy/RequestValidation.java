@@ -0,0 +1,91 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+public class RequestValidation {
+    enum Source {
+        HEADER("header"),
+        QUERY_PARAMETER("query parameter"),
+        PATH_PARAMETER("path parameter");
+
+        private final String description;
+
+        Source(String description) {
+            this.description = description;
+        }
+
+        String getDescription() {
+            return description;
+        }
+    }
+
+    static class Rule {
+        final Source source;
+        final String name;
+        final boolean required;
+        final ParameterType type;
+        final int maxLength;
+
+        private Rule(Source source, String name, boolean required, ParameterType type, int maxLength) {
+            this.source = source;
+            this.name = name;
+            this.required = required;
+            this.type = type;
+            this.maxLength = maxLength;
+        }
+    }
+
+    private final List<Rule> rules;
+
+    private RequestValidation(List<Rule> rules) {
+        this.rules = unmodifiableList(rules);
+    }
+
+    List<Rule> getRules() {
+        return rules;
+    }
+
+    public static class RequestValidationBuilder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        public RequestValidationBuilder withHeader(String name, boolean required) {
+            return withHeader(name, required, ParameterType.STRING, Integer.MAX_VALUE);
+        }
+
+        public RequestValidationBuilder withHeader(String name, boolean required, ParameterType type, int maxLength) {
+            return withRule(Source.HEADER, name.toLowerCase(), required, type, maxLength);
+        }
+
+        public RequestValidationBuilder withQueryParameter(String name, boolean required) {
+            return withQueryParameter(name, required, ParameterType.STRING, Integer.MAX_VALUE);
+        }
+
+        public RequestValidationBuilder withQueryParameter(String name, boolean required, ParameterType type, int maxLength) {
+            return withRule(Source.QUERY_PARAMETER, name, required, type, maxLength);
+        }
+
+        public RequestValidationBuilder withPathParameter(String name) {
+            return withPathParameter(name, ParameterType.STRING, Integer.MAX_VALUE);
+        }
+
+        public RequestValidationBuilder withPathParameter(String name, ParameterType type, int maxLength) {
+            return withRule(Source.PATH_PARAMETER, name, true, type, maxLength);
+        }
+
+        private RequestValidationBuilder withRule(Source source, String name, boolean required, ParameterType type, int maxLength) {
+            if (maxLength < 0) {
+                throw new IllegalArgumentException("Maximum length must not be negative: " + maxLength);
+            }
+            rules.add(new Rule(source, requireNonNull(name), required, requireNonNull(type), maxLength));
+            return this;
+        }
+
+        public RequestValidation build() {
+            return new RequestValidation(new ArrayList<>(rules));
+        }
+    }
+}
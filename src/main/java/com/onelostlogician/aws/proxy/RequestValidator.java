@@ -0,0 +1,144 @@
+package com.onelostlogician.aws.proxy;
+
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import com.onelostlogician.aws.proxy.RequestValidation.Rule;
+import com.onelostlogician.aws.proxy.RequestValidation.Source;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.BAD_REQUEST;
+
+/*
+ * A RequestValidation flattened into parallel arrays, so that validating a request is a single pass over the rules
+ * with no allocation unless the request turns out to be invalid.
+ */
+final class RequestValidator {
+    private final Source[] sources;
+    private final String[] names;
+    private final boolean[] required;
+    private final ParameterType[] types;
+    private final int[] maxLengths;
+
+    /**
+     * Validates the rules together with the method handler's required headers, which become required header rules
+     * listed first, so that one 400 reports everything that is wrong with a request.
+     *
+     * @param requiredHeaders lower-cased header names
+     */
+    RequestValidator(Collection<String> requiredHeaders, RequestValidation validation) {
+        List<Rule> rules = validation.getRules();
+        List<String> extraHeaders = new ArrayList<>();
+        for (String requiredHeader : requiredHeaders) {
+            if (!hasHeaderRule(rules, requiredHeader) && !extraHeaders.contains(requiredHeader)) {
+                extraHeaders.add(requiredHeader);
+            }
+        }
+        int size = extraHeaders.size() + rules.size();
+        sources = new Source[size];
+        names = new String[size];
+        required = new boolean[size];
+        types = new ParameterType[size];
+        maxLengths = new int[size];
+        int i = 0;
+        for (String extraHeader : extraHeaders) {
+            sources[i] = Source.HEADER;
+            names[i] = extraHeader;
+            required[i] = true;
+            types[i] = ParameterType.STRING;
+            maxLengths[i] = Integer.MAX_VALUE;
+            i++;
+        }
+        for (Rule rule : rules) {
+            sources[i] = rule.source;
+            names[i] = rule.name;
+            required[i] = rule.required || (rule.source == Source.HEADER && requiredHeaders.contains(rule.name));
+            types[i] = rule.type;
+            maxLengths[i] = rule.maxLength;
+            i++;
+        }
+    }
+
+    private static boolean hasHeaderRule(List<Rule> rules, String name) {
+        for (Rule rule : rules) {
+            if (rule.source == Source.HEADER && rule.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void validate(ApiGatewayProxyRequest request) throws LambdaException {
+        StringBuilder errors = null;
+        for (int i = 0; i < names.length; i++) {
+            String value;
+            switch (sources[i]) {
+                case HEADER:
+                    value = getHeader(request.getHeaders(), names[i]);
+                    break;
+                case QUERY_PARAMETER:
+                    value = get(request.getQueryStringParameters(), names[i]);
+                    break;
+                default:
+                    value = get(request.getPathParameters(), names[i]);
+            }
+
+            String error = null;
+            if (value == null) {
+                if (required[i]) {
+                    error = "is required";
+                }
+            }
+            else if (value.length() > maxLengths[i]) {
+                error = "must be at most " + maxLengths[i] + " characters";
+            }
+            else if (!types[i].matches(value)) {
+                error = "must be " + types[i].getDescription();
+            }
+
+            if (error != null) {
+                if (errors == null) {
+                    errors = new StringBuilder("Invalid request: ");
+                }
+                else {
+                    errors.append("; ");
+                }
+                errors.append(sources[i].getDescription())
+                        .append(' ')
+                        .append(names[i])
+                        .append(' ')
+                        .append(error);
+            }
+        }
+
+        if (errors != null) {
+            ApiGatewayProxyResponse invalidRequest = new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(BAD_REQUEST)
+                    .withBody(errors.toString())
+                    .build();
+            throw new LambdaException(invalidRequest);
+        }
+    }
+
+    private static String get(Map<String, String> parameters, String name) {
+        return parameters == null ? null : parameters.get(name);
+    }
+
+    static String getHeader(Map<String, String> headers, String lowerCaseName) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(lowerCaseName);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(lowerCaseName)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
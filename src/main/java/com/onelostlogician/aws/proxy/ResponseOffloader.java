@@ -0,0 +1,118 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.core.io.CharTypes;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import org.apache.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.SEE_OTHER;
+import static java.util.Objects.requireNonNull;
+
+/*
+ * Moves bodies that would take the response past the Lambda payload limit into a blob store, answering with a redirect
+ * to, or a pointer document for, the stored copy. Only successful responses are moved; an oversized error response
+ * still fails the invocation, since a client would not expect to download an error.
+ */
+final class ResponseOffloader {
+    // Lambda rejects response payloads over 6 MB; leave room for the headers and the JSON envelope.
+    static final long DEFAULT_MAX_BODY_SIZE = 6 * 1024 * 1024 - 64 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseOffloader.class);
+
+    private final BlobStore blobStore;
+    private final OffloadMode mode;
+    private final long maxBodySize;
+
+    ResponseOffloader(BlobStore blobStore, OffloadMode mode, long maxBodySize) {
+        if (maxBodySize <= 0) {
+            throw new IllegalArgumentException("Maximum body size must be positive: " + maxBodySize);
+        }
+        this.blobStore = requireNonNull(blobStore);
+        this.mode = requireNonNull(mode);
+        this.maxBodySize = maxBodySize;
+    }
+
+    ApiGatewayProxyResponse apply(ApiGatewayProxyResponse response) throws Exception {
+        String body = response.getBody();
+        int statusCode = response.getStatusCode();
+        // No character takes more than six bytes once escaped and encoded, so short bodies need not be measured.
+        if (body == null || body.length() <= maxBodySize / 6 || statusCode < 200 || statusCode >= 300) {
+            return response;
+        }
+        long size = response.getIsBase64Encoded() ? body.length() : escapedLength(body);
+        if (size <= maxBodySize) {
+            return response;
+        }
+
+        byte[] content = response.getIsBase64Encoded()
+                ? Base64.getDecoder().decode(body)
+                : body.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = new HashMap<>();
+        String contentType = null;
+        if (response.getHeaders() != null) {
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                String name = header.getKey().toLowerCase();
+                if (name.equals("content-type")) {
+                    contentType = header.getValue();
+                }
+                // The entity headers describe the stored copy, not the reply.
+                if (!name.startsWith("content-") && !name.equals("etag") && !name.equals("last-modified")) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+        }
+        String location = blobStore.put(UUID.randomUUID().toString(), content, contentType);
+        LOGGER.info(String.format("Moved a response body of %s bytes to %s.\n", content.length, location));
+
+        if (mode == OffloadMode.REDIRECT) {
+            headers.put("Location", location);
+            return new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(SEE_OTHER)
+                    .withHeaders(headers)
+                    .build();
+        }
+        ObjectNode pointer = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        pointer.put("location", location);
+        pointer.put("contentType", contentType);
+        pointer.put("size", content.length);
+        headers.put("Content-Type", "application/json");
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(statusCode)
+                .withHeaders(headers)
+                .withBody(JsonCodec.OBJECT_MAPPER.writeValueAsString(pointer))
+                .build();
+    }
+
+    /*
+     * Returns the size of the body once Lambda has escaped it into the JSON response and encoded that as UTF-8, which
+     * is what counts towards the payload limit.
+     */
+    private static long escapedLength(String body) {
+        int[] escapes = CharTypes.get7BitOutputEscapes();
+        long length = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c < 0x80) {
+                int escape = escapes[c];
+                length += escape == 0 ? 1 : escape < 0 ? 6 : 2;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,44 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stores bodies as objects in an S3 bucket, or any S3-compatible store the client is configured for, and hands out
+ * pre-signed URLs so that the bucket can stay private. Give the bucket a lifecycle rule that expires the prefix, since
+ * nothing else deletes the objects.
+ */
+public class S3BlobStore implements BlobStore {
+    private final AmazonS3 s3;
+    private final String bucket;
+    private final String prefix;
+    private final long urlTimeToLiveInMillis;
+
+    public S3BlobStore(AmazonS3 s3, String bucket, String prefix, long urlTimeToLiveInMillis) {
+        if (urlTimeToLiveInMillis <= 0) {
+            throw new IllegalArgumentException("URL time to live must be positive: " + urlTimeToLiveInMillis);
+        }
+        this.s3 = requireNonNull(s3);
+        this.bucket = requireNonNull(bucket);
+        this.prefix = requireNonNull(prefix);
+        this.urlTimeToLiveInMillis = urlTimeToLiveInMillis;
+    }
+
+    @Override
+    public String put(String key, byte[] content, String contentType) {
+        String objectKey = prefix + key;
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        s3.putObject(bucket, objectKey, new ByteArrayInputStream(content), metadata);
+        Date expiration = new Date(System.currentTimeMillis() + urlTimeToLiveInMillis);
+        return s3.generatePresignedUrl(bucket, objectKey, expiration).toString();
+    }
+}
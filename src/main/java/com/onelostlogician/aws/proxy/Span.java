@@ -0,0 +1,146 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A timed stage of a traced request. Spans are started through a {@link Tracer} and become the current span of the
+ * thread until they are ended, which hands them to the tracer's exporter. Requests that are not sampled get a span
+ * that records nothing but still carries their trace, with the sampled flag off, for propagation; threads that are
+ * not tracing at all get {@link #NOOP}.
+ */
+public class Span implements AutoCloseable {
+    public static final Span NOOP = new Span();
+
+    private final Tracer tracer;
+    private final boolean recording;
+    private final Span parent;
+    private final String name;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final long startTimeInMillis;
+    private final long startNanos;
+    private long durationInNanos = -1;
+    private Map<String, String> attributes;
+
+    private Span() {
+        this.tracer = null;
+        this.recording = false;
+        this.parent = null;
+        this.name = "";
+        this.traceId = null;
+        this.spanId = null;
+        this.parentSpanId = null;
+        this.startTimeInMillis = 0;
+        this.startNanos = 0;
+    }
+
+    /**
+     * Creates the non-recording root span of an unsampled request, which only propagates its trace.
+     */
+    Span(Tracer tracer, Span parent, String traceId, String spanId) {
+        this.tracer = tracer;
+        this.recording = false;
+        this.parent = parent;
+        this.name = "";
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = null;
+        this.startTimeInMillis = 0;
+        this.startNanos = 0;
+    }
+
+    Span(Tracer tracer, Span parent, String name, String traceId, String spanId, String parentSpanId) {
+        this.tracer = tracer;
+        this.recording = true;
+        this.parent = parent;
+        this.name = name;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.startTimeInMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public Span setAttribute(String key, String value) {
+        if (recording) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the context to propagate to downstream calls made while this span is current, or {@code null} for
+     * {@link #NOOP}.
+     */
+    public TraceContext getContext() {
+        return traceId == null ? null : new TraceContext(traceId, spanId, recording);
+    }
+
+    public void end() {
+        if (tracer != null && durationInNanos < 0) {
+            durationInNanos = recording ? System.nanoTime() - startNanos : 0;
+            tracer.end(this, parent);
+        }
+    }
+
+    @Override
+    public void close() {
+        end();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public long getStartTimeInMillis() {
+        return startTimeInMillis;
+    }
+
+    public long getDurationInNanos() {
+        return durationInNanos;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes == null ? emptyMap() : unmodifiableMap(attributes);
+    }
+
+    Tracer getTracer() {
+        return tracer;
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "name='" + name + '\'' +
+                ", traceId='" + traceId + '\'' +
+                ", spanId='" + spanId + '\'' +
+                ", parentSpanId='" + parentSpanId + '\'' +
+                ", durationInNanos=" + durationInNanos +
+                ", attributes=" + getAttributes() +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package com.onelostlogician.aws.proxy;
+
+/**
+ * Receives spans as they end. It is called on the request thread, so implementations should hand the span off rather
+ * than do I/O; see {@link BatchingSpanExporter}.
+ */
+@FunctionalInterface
+public interface SpanExporter {
+    void export(Span span);
+}
@@ -0,0 +1,233 @@
+package com.onelostlogician.aws.proxy;
+
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static com.onelostlogician.aws.proxy.HttpStatus.NOT_MODIFIED;
+import static com.onelostlogician.aws.proxy.HttpStatus.OK;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A response whose content only changes on deploy, such as a health check, a feature manifest or an OpenAPI document.
+ * It is serialised, hashed into a strong {@code ETag} and optionally gzipped once, when it is built, and is served by
+ * {@link LambdaProxyHandler#registerStaticResponse(HttpMethod, String, StaticResponse)} without a configuration,
+ * method handler or mapper.
+ */
+public final class StaticResponse {
+    private final MediaType mediaType;
+    private final MediaType mediaTypeWithoutParameters;
+    private final Map<String, String> headers;
+    private final String body;
+    private final boolean isBase64Encoded;
+    private final String entityTag;
+    private final String gzippedBody;
+    private final String gzippedEntityTag;
+
+    private StaticResponse(MediaType mediaType, Map<String, String> headers, byte[] content, boolean compress) {
+        this.mediaType = mediaType;
+        this.mediaTypeWithoutParameters = mediaType.withoutParameters();
+        String text = isText(mediaType) ? new String(content, StandardCharsets.UTF_8) : null;
+        // Only send text as is if it survives the round trip, so that the ETag always describes the bytes sent.
+        this.isBase64Encoded = text == null || !Arrays.equals(text.getBytes(StandardCharsets.UTF_8), content);
+        this.body = isBase64Encoded ? Base64.getEncoder().encodeToString(content) : text;
+        String hash = hash(content);
+        this.entityTag = '"' + hash + '"';
+        byte[] gzipped = compress ? gzip(content) : null;
+        if (gzipped != null && gzipped.length < content.length) {
+            this.gzippedBody = Base64.getEncoder().encodeToString(gzipped);
+            this.gzippedEntityTag = '"' + hash + "-gzip\"";
+        }
+        else {
+            this.gzippedBody = null;
+            this.gzippedEntityTag = null;
+        }
+        Map<String, String> allHeaders = new HashMap<>(headers);
+        allHeaders.put("Content-Type", mediaType.toString());
+        if (gzippedBody != null) {
+            allHeaders.put("Vary", "Accept-Encoding");
+        }
+        this.headers = Collections.unmodifiableMap(allHeaders);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    boolean isAcceptedAs(MediaType acceptType) {
+        return mediaTypeWithoutParameters.is(acceptType.withoutParameters());
+    }
+
+    /**
+     * Returns the response for a request, gzipped if the client accepts it, or {@code 304 Not Modified} if the
+     * request's {@code If-None-Match} already names it. The headers are a fresh copy, as later stages add to them.
+     */
+    ApiGatewayProxyResponse toResponse(ApiGatewayProxyRequest request) {
+        boolean gzip = gzippedBody != null && acceptsGzip(RequestValidator.getHeader(request.getHeaders(), "accept-encoding"));
+        String tag = gzip ? gzippedEntityTag : entityTag;
+        Map<String, String> responseHeaders = new HashMap<>(headers);
+        responseHeaders.put("ETag", tag);
+        if (matches(RequestValidator.getHeader(request.getHeaders(), "if-none-match"), tag)) {
+            responseHeaders.remove("Content-Type");
+            return new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(NOT_MODIFIED)
+                    .withHeaders(responseHeaders)
+                    .build();
+        }
+        if (gzip) {
+            responseHeaders.put("Content-Encoding", "gzip");
+        }
+        return new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK)
+                .withHeaders(responseHeaders)
+                .withBody(gzip ? gzippedBody : body)
+                .withBase64Encoded(gzip || isBase64Encoded)
+                .build();
+    }
+
+    private static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                // If-None-Match uses the weak comparison.
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = parts.length == 1 || !isZeroQuality(parts[1]);
+            if (name.equalsIgnoreCase("gzip")) {
+                // An explicit gzip entry takes precedence over "*", wherever each appears.
+                return accepted;
+            }
+            if (name.equals("*") && wildcard == null) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static boolean isZeroQuality(String parameter) {
+        String trimmed = parameter.trim();
+        if (!trimmed.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(trimmed.substring(2)) == 0;
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static boolean isText(MediaType mediaType) {
+        String subtype = mediaType.subtype();
+        return mediaType.type().equals("text") || subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml") || subtype.equals("javascript")
+                || subtype.equals("x-yaml") || subtype.equals("yaml");
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static class StaticResponseBuilder {
+        private MediaType mediaType;
+        private Map<String, String> headers = new HashMap<>();
+        private byte[] content = new byte[0];
+        private boolean compress = false;
+
+        public StaticResponseBuilder withMediaType(MediaType mediaType) {
+            this.mediaType = mediaType;
+            return this;
+        }
+
+        public StaticResponseBuilder withHeaders(Map<String, String> headers) {
+            this.headers = headers;
+            return this;
+        }
+
+        public StaticResponseBuilder withBody(byte[] content) {
+            this.content = content;
+            return this;
+        }
+
+        public StaticResponseBuilder withBody(String body) {
+            this.content = body.getBytes(StandardCharsets.UTF_8);
+            return this;
+        }
+
+        /**
+         * Serialises the object to JSON now, with the mapper the JSON mappers use.
+         */
+        public StaticResponseBuilder withJsonBody(Object body) {
+            try {
+                this.content = JsonCodec.OBJECT_MAPPER.writeValueAsBytes(body);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        /**
+         * Also keeps a gzipped copy, served to clients that accept it, if it is smaller.
+         */
+        public StaticResponseBuilder withCompression(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        public StaticResponse build() {
+            return new StaticResponse(requireNonNull(mediaType), requireNonNull(headers), requireNonNull(content), compress);
+        }
+    }
+}
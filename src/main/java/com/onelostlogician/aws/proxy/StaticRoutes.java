@@ -0,0 +1,70 @@
+package com.onelostlogician.aws.proxy;
+
+import com.google.common.net.MediaType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The registered static responses, compiled into a table indexed by {@link HttpMethod} and then by path, each with its
+ * responses in registration order.
+ */
+final class StaticRoutes {
+    static final StaticRoutes EMPTY = new StaticRoutes(new HashMap<>());
+
+    private final Map<String, StaticResponse[]>[] table;
+
+    // Java cannot create a generic array; the table is private and only ever holds Map<String, StaticResponse[]>.
+    @SuppressWarnings("unchecked")
+    private StaticRoutes(Map<HttpMethod, Map<String, List<StaticResponse>>> routes) {
+        table = new Map[HttpMethod.values().length];
+        routes.forEach((method, paths) -> {
+            Map<String, StaticResponse[]> responses = new HashMap<>();
+            paths.forEach((path, list) -> responses.put(path, list.toArray(new StaticResponse[0])));
+            table[method.ordinal()] = responses;
+        });
+    }
+
+    static StaticRoutes compile(Map<HttpMethod, Map<String, List<StaticResponse>>> routes) {
+        return routes.isEmpty() ? EMPTY : new StaticRoutes(routes);
+    }
+
+    /**
+     * Returns the response for the request, or {@code null} if no static response is registered for its method, path
+     * and {@code Accept} header, in which case the request is handled as usual.
+     */
+    ApiGatewayProxyResponse serve(HttpMethod method, ApiGatewayProxyRequest request) {
+        Map<String, StaticResponse[]> paths = method == null ? null : table[method.ordinal()];
+        if (paths == null || request.getPath() == null) {
+            return null;
+        }
+        StaticResponse[] responses = paths.get(request.getPath());
+        if (responses == null) {
+            return null;
+        }
+        StaticResponse response = negotiate(responses, RequestValidator.getHeader(request.getHeaders(), "accept"));
+        return response == null ? null : response.toResponse(request);
+    }
+
+    private static StaticResponse negotiate(StaticResponse[] responses, String accept) {
+        if (accept == null) {
+            return responses[0];
+        }
+        for (String acceptTypeString : accept.split(",")) {
+            MediaType acceptType;
+            try {
+                acceptType = MediaType.parse(acceptTypeString.trim());
+            }
+            catch (IllegalArgumentException e) {
+                continue;
+            }
+            for (StaticResponse response : responses) {
+                if (response.isAcceptedAs(acceptType)) {
+                    return response;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.Map;
+
+/**
+ * The trace a request belongs to, as carried between services by the {@code X-Amzn-Trace-Id} and W3C
+ * {@code traceparent} headers. Trace ids are held in the 32 hex digit W3C form; an X-Ray root of
+ * {@code 1-5759e988-bd862e3fe1be46a994272793} is the W3C trace id {@code 5759e988bd862e3fe1be46a994272793}.
+ */
+public final class TraceContext {
+    static final String X_AMZN_TRACE_ID = "x-amzn-trace-id";
+    static final String TRACEPARENT = "traceparent";
+
+    private final String traceId;
+    private final String spanId;
+    private final Boolean sampled;
+
+    TraceContext(String traceId, String spanId, Boolean sampled) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Returns the upstream sampling decision, or {@code null} if the caller left it to this service.
+     */
+    public Boolean getSampled() {
+        return sampled;
+    }
+
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + (Boolean.TRUE.equals(sampled) ? "-01" : "-00");
+    }
+
+    public String toXRayTraceHeader() {
+        return "Root=1-" + traceId.substring(0, 8) + "-" + traceId.substring(8)
+                + ";Parent=" + spanId
+                + ";Sampled=" + (Boolean.TRUE.equals(sampled) ? "1" : "0");
+    }
+
+    /**
+     * Adds both propagation headers to the headers of a downstream call.
+     */
+    public void inject(Map<String, String> headers) {
+        headers.put("traceparent", toTraceparent());
+        headers.put("X-Amzn-Trace-Id", toXRayTraceHeader());
+    }
+
+    /**
+     * Returns the context of the incoming headers, preferring {@code traceparent}, or {@code null} if neither header is
+     * present and well formed.
+     */
+    public static TraceContext fromHeaders(Map<String, String> headers) {
+        String traceparent = RequestValidator.getHeader(headers, TRACEPARENT);
+        if (traceparent != null) {
+            TraceContext context = parseTraceparent(traceparent.trim());
+            if (context != null) {
+                return context;
+            }
+        }
+        String xRay = RequestValidator.getHeader(headers, X_AMZN_TRACE_ID);
+        return xRay == null ? null : parseXRay(xRay);
+    }
+
+    static TraceContext parseTraceparent(String header) {
+        if (header.length() < 55 || header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-') {
+            return null;
+        }
+        String traceId = header.substring(3, 35);
+        String spanId = header.substring(36, 52);
+        if (!isHex(traceId) || !isHex(spanId) || !isHex(header.substring(53, 55))) {
+            return null;
+        }
+        boolean sampled = (Character.digit(header.charAt(54), 16) & 1) == 1;
+        return new TraceContext(traceId, spanId, sampled);
+    }
+
+    static TraceContext parseXRay(String header) {
+        String traceId = null;
+        String parent = null;
+        Boolean sampled = null;
+        for (String part : header.split(";")) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String key = part.substring(0, separator).trim();
+            String value = part.substring(separator + 1).trim();
+            if (key.equals("Root") && value.length() == 35 && value.startsWith("1-") && value.charAt(10) == '-') {
+                traceId = value.substring(2, 10) + value.substring(11);
+            }
+            else if (key.equals("Parent")) {
+                parent = value;
+            }
+            else if (key.equals("Sampled") && !value.equals("?")) {
+                sampled = value.equals("1");
+            }
+        }
+        if (traceId == null || !isHex(traceId)) {
+            return null;
+        }
+        return new TraceContext(traceId, parent != null && parent.length() == 16 && isHex(parent) ? parent : null, sampled);
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+}
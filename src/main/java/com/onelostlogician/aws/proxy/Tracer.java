@@ -0,0 +1,114 @@
+package com.onelostlogician.aws.proxy;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Starts spans for the stages of a request and tracks the current span of each thread.
+ *
+ * A request is traced when its {@code traceparent} or {@code X-Amzn-Trace-Id} header says it is sampled, or, when the
+ * caller left the decision open, with the configured probability. Untraced requests get a span that records nothing
+ * and only carries their trace to downstream calls, and their stages all see {@link Span#NOOP}.
+ *
+ * Trace ids started here begin with the current epoch seconds, as X-Ray requires of the root of a trace.
+ */
+public class Tracer {
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SpanExporter exporter;
+    private final double samplingProbability;
+
+    public Tracer(SpanExporter exporter, double samplingProbability) {
+        if (samplingProbability < 0 || samplingProbability > 1) {
+            throw new IllegalArgumentException("Sampling probability must be between 0 and 1: " + samplingProbability);
+        }
+        this.exporter = requireNonNull(exporter);
+        this.samplingProbability = samplingProbability;
+    }
+
+    /**
+     * Starts the root span of a request, continuing the trace of the incoming headers if there is one.
+     */
+    public Span startRequest(ApiGatewayProxyRequest request) {
+        Map<String, String> headers = request.getHeaders();
+        TraceContext incoming = headers == null ? null : TraceContext.fromHeaders(headers);
+        boolean sampled = incoming != null && incoming.getSampled() != null
+                ? incoming.getSampled()
+                : samplingProbability > 0 && ThreadLocalRandom.current().nextDouble() < samplingProbability;
+        String traceId = incoming == null ? newTraceId() : incoming.getTraceId();
+        String parentSpanId = incoming == null ? null : incoming.getSpanId();
+        if (!sampled) {
+            // Downstream calls continue from the incoming parent, since this service records no span of its own.
+            Span span = new Span(this, CURRENT.get(), traceId, parentSpanId == null ? randomHex(16) : parentSpanId);
+            CURRENT.set(span);
+            return span;
+        }
+        String route = request.getResource() != null ? request.getResource() : request.getPath();
+        Span span = new Span(this, CURRENT.get(), request.getHttpMethod() + " " + route, traceId, randomHex(16), parentSpanId);
+        span.setAttribute("http.method", request.getHttpMethod());
+        span.setAttribute("http.route", route);
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Starts a child of the current span of this thread, or returns {@link Span#NOOP} if the thread is not recording
+     * a trace.
+     */
+    public static Span startSpan(String name) {
+        Span parent = CURRENT.get();
+        if (parent == null || !parent.isRecording()) {
+            return Span.NOOP;
+        }
+        Span span = new Span(parent.getTracer(), parent, name, parent.getTraceId(), randomHex(16), parent.getSpanId());
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Returns the current span of this thread, which is {@link Span#NOOP} when the thread is not handling a request.
+     */
+    public static Span currentSpan() {
+        Span span = CURRENT.get();
+        return span == null ? Span.NOOP : span;
+    }
+
+    void end(Span span, Span parent) {
+        // Ending a span makes its parent current even if a child was never ended, so a request cannot leak spans
+        // into the next one on the same thread.
+        if (parent == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(parent);
+        }
+        if (span.isRecording()) {
+            exporter.export(span);
+        }
+    }
+
+    private static String newTraceId() {
+        long seconds = System.currentTimeMillis() / 1000;
+        char[] hex = new char[32];
+        for (int i = 0; i < 8; i++) {
+            hex[i] = HEX[(int) (seconds >>> (28 - 4 * i)) & 0xF];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 8; i < hex.length; i++) {
+            hex[i] = HEX[random.nextInt(16)];
+        }
+        return new String(hex);
+    }
+
+    private static String randomHex(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] hex = new char[length];
+        for (int i = 0; i < length; i++) {
+            hex[i] = HEX[random.nextInt(16)];
+        }
+        return new String(hex);
+    }
+}
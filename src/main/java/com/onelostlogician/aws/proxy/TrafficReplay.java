@@ -0,0 +1,182 @@
+package com.onelostlogician.aws.proxy;
+
+import org.json.simple.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays captured API Gateway proxy events, one JSON document per line, through a {@link LambdaProxyHandler} and
+ * reports throughput, latency percentiles and status codes per route. Events whose handler throws instead of returning
+ * a response are counted as errors, apart from the status codes.
+ *
+ * When a rate is given, events are released on a fixed schedule and latency is measured from each event's scheduled
+ * release time, so that queueing behind slow requests is included rather than hidden.
+ */
+public class TrafficReplay {
+    private static final int TIMEOUT_IN_MILLIS = 30_000;
+    private static final String USAGE = "Usage: TrafficReplay <handler class> <events.jsonl> [--concurrency n] [--rate requests/s]"
+            + " [--warmup events] [--report report.json] [--baseline previous-report.json]";
+
+    private final LambdaProxyHandler<?> handler;
+    private final int concurrency;
+    private final double ratePerSecond;
+    private final int warmUpEvents;
+
+    public TrafficReplay(LambdaProxyHandler<?> handler, int concurrency, double ratePerSecond, int warmUpEvents) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+        }
+        this.handler = requireNonNull(handler);
+        this.concurrency = concurrency;
+        this.ratePerSecond = ratePerSecond;
+        this.warmUpEvents = warmUpEvents;
+    }
+
+    public static List<ApiGatewayProxyRequest> readEvents(Path path) throws IOException {
+        List<ApiGatewayProxyRequest> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    events.add(JsonCodec.OBJECT_MAPPER.readValue(line, ApiGatewayProxyRequest.class));
+                }
+            }
+        }
+        return events;
+    }
+
+    public ReplayReport replay(List<ApiGatewayProxyRequest> events) throws InterruptedException {
+        for (int i = 0; i < warmUpEvents && !events.isEmpty(); i++) {
+            try {
+                invoke(events.get(i % events.size()));
+            }
+            catch (RuntimeException e) {
+                // Failures during warm-up are not reported.
+            }
+        }
+
+        ReplayReport report = new ReplayReport();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Semaphore permits = new Semaphore(concurrency);
+        long intervalNanos = ratePerSecond > 0 ? (long) (1_000_000_000L / ratePerSecond) : 0;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                ApiGatewayProxyRequest event = events.get(i);
+                long scheduled = start + i * intervalNanos;
+                if (intervalNanos > 0) {
+                    long delay;
+                    while ((delay = scheduled - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                }
+                permits.acquire();
+                long released = intervalNanos > 0 ? scheduled : System.nanoTime();
+                executor.execute(() -> {
+                    try {
+                        ApiGatewayProxyResponse response = invoke(event);
+                        report.record(getRoute(event), System.nanoTime() - released, response.getStatusCode());
+                    }
+                    catch (RuntimeException e) {
+                        report.recordError(getRoute(event), System.nanoTime() - released);
+                    }
+                    finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private ApiGatewayProxyResponse invoke(ApiGatewayProxyRequest event) {
+        LocalContext context = new LocalContext(handler.getClass().getSimpleName(), 1024, TIMEOUT_IN_MILLIS);
+        return requireNonNull(handler.handleRequest(event, context), "The handler returned no response");
+    }
+
+    static String getRoute(ApiGatewayProxyRequest event) {
+        String resource = event.getResource() != null ? event.getResource() : event.getPath();
+        return event.getHttpMethod() + " " + resource;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            exitWithUsage(null);
+            return;
+        }
+        int concurrency = 1;
+        double rate = 0;
+        int warmUp = 0;
+        Path reportPath = null;
+        Path baselinePath = null;
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                exitWithUsage("Option " + args[i] + " needs a value");
+                return;
+            }
+            switch (args[i]) {
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmUp = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--report":
+                    reportPath = Paths.get(args[i + 1]);
+                    break;
+                case "--baseline":
+                    baselinePath = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    exitWithUsage("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        LambdaProxyHandler<?> handler = (LambdaProxyHandler<?>) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        List<ApiGatewayProxyRequest> events = readEvents(Paths.get(args[1]));
+        JSONObject report = new TrafficReplay(handler, concurrency, rate, warmUp).replay(events).toJson();
+
+        PrintStream out = System.out;
+        ReplayReport.print(report, out);
+        if (reportPath != null) {
+            Files.write(reportPath, report.toJSONString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (baselinePath != null) {
+            out.println();
+            JSONObject baseline = ReplayReport.parse(new String(Files.readAllBytes(baselinePath), StandardCharsets.UTF_8));
+            ReplayReport.printDiff(baseline, report, out);
+        }
+    }
+
+    private static void exitWithUsage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,196 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.AllocationProfile;
+import com.onelostlogician.aws.proxy.fixtures.AllocationProfile.Stage;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static java.util.Collections.emptyList;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class AllocationBudgetTest {
+    private static final MediaType CONTENT_TYPE_1 = MediaType.create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = MediaType.create("application", "AcceptType1");
+    private static final String METHOD = "POST";
+    private static final int WARM_UP_INVOCATIONS = 5_000;
+    private static final int MEASURED_INVOCATIONS = 20;
+    private static final Path REPORT = Paths.get("target", "allocation-profile.txt");
+    private static final Map<String, String> REPORT_LINES = new LinkedHashMap<>();
+
+    private final AllocationProfile profile = new AllocationProfile();
+    private final Context context = mock(Context.class);
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() {
+        Assume.assumeTrue("Per-thread allocation accounting is not supported by this JVM", AllocationProfile.isSupported());
+        handler = new ProfiledLambdaProxyHandler();
+        handler.registerMethodHandler(METHOD, configuration -> {
+            SampleMethodHandler methodHandler = new ProfiledMethodHandler();
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) ->
+                    profile.record(Stage.INPUT_MAPPING, () -> Integer.valueOf(request.getBody())));
+            methodHandler.registerPerAccept(ACCEPT_TYPE_1, output ->
+                    profile.record(Stage.OUTPUT_MAPPING, () -> new ApiGatewayProxyResponseBuilder()
+                            .withStatusCode(OK.getStatusCode())
+                            .withBody(output.toString())
+                            .build()));
+            return methodHandler;
+        });
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        if (REPORT_LINES.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(REPORT.getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(REPORT, StandardCharsets.UTF_8))) {
+            writer.printf("%-24s %10s %10s %14s %10s %12s %12s %10s%n",
+                    "scenario", "total", "budget", "configuration", "input", "handler", "output", "pipeline");
+            REPORT_LINES.values().forEach(writer::println);
+        }
+    }
+
+    @Test
+    public void happyPathShouldStayWithinBudget() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        ApiGatewayProxyRequest request = requestBuilder(METHOD, headers)
+                .withBody("42")
+                .build();
+
+        assertWithinBudget("happy-path", request, OK.getStatusCode(), 32_000);
+    }
+
+    @Test
+    public void corsPreflightShouldStayWithinBudget() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Origin", "http://127.0.0.1:8888");
+        headers.put("Access-Control-Request-Method", METHOD);
+        headers.put("Access-Control-Request-Headers", "header1, header2");
+        ApiGatewayProxyRequest request = requestBuilder("OPTIONS", headers).build();
+
+        assertWithinBudget("cors-preflight", request, OK.getStatusCode(), 12_000);
+    }
+
+    @Test
+    public void unregisteredMethodShouldStayWithinBudget() {
+        ApiGatewayProxyRequest request = requestBuilder("DELETE", new HashMap<>()).build();
+
+        assertWithinBudget("bad-request", request, BAD_REQUEST.getStatusCode(), 6_000);
+    }
+
+    @Test
+    public void unsupportedMediaTypeShouldStayWithinBudget() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        ApiGatewayProxyRequest request = requestBuilder(METHOD, headers).build();
+
+        assertWithinBudget("unsupported-media-type", request, UNSUPPORTED_MEDIA_TYPE.getStatusCode(), 8_000);
+    }
+
+    @Test
+    public void serverErrorShouldStayWithinBudget() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        ApiGatewayProxyRequest request = requestBuilder(METHOD, headers)
+                .withBody("not a number")
+                .build();
+
+        assertWithinBudget("server-error", request, INTERNAL_SERVER_ERROR.getStatusCode(), 192_000);
+    }
+
+    private ApiGatewayProxyRequestBuilder requestBuilder(String method, Map<String, String> headers) {
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod(method)
+                .withHeaders(headers)
+                .withContext(context);
+    }
+
+    private void assertWithinBudget(String scenario, ApiGatewayProxyRequest request, int expectedStatusCode, long budget) {
+        assertThat(handler.handleRequest(request, context).getStatusCode()).isEqualTo(expectedStatusCode);
+        for (int i = 0; i < WARM_UP_INVOCATIONS; i++) {
+            handler.handleRequest(request, context);
+        }
+
+        long minimum = Long.MAX_VALUE;
+        long[] breakdown = new long[Stage.values().length];
+        for (int i = 0; i < MEASURED_INVOCATIONS; i++) {
+            long allocated = profile.measure(() -> handler.handleRequest(request, context));
+            if (allocated < minimum) {
+                minimum = allocated;
+                for (Stage stage : Stage.values()) {
+                    breakdown[stage.ordinal()] = profile.getBytes(stage);
+                }
+            }
+        }
+
+        REPORT_LINES.put(scenario, String.format("%-24s %10d %10d %14d %10d %12d %12d %10d",
+                scenario, minimum, budget,
+                breakdown[Stage.CONFIGURATION.ordinal()],
+                breakdown[Stage.INPUT_MAPPING.ordinal()],
+                breakdown[Stage.HANDLER.ordinal()],
+                breakdown[Stage.OUTPUT_MAPPING.ordinal()],
+                breakdown[Stage.PIPELINE.ordinal()]));
+        assertThat(minimum)
+                .as("Bytes allocated per invocation for scenario %s", scenario)
+                .isLessThanOrEqualTo(budget);
+    }
+
+    private class ProfiledMethodHandler extends SampleMethodHandler {
+        ProfiledMethodHandler() {
+            super(emptyList());
+        }
+
+        @Override
+        public Integer handle(Integer input) {
+            try {
+                return profile.record(Stage.HANDLER, () -> input + 1);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private class ProfiledLambdaProxyHandler extends LambdaProxyHandler<Configuration> {
+        private final Configuration configuration = new Configuration() {};
+
+        ProfiledLambdaProxyHandler() {
+            super(true);
+        }
+
+        @Override
+        protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+            try {
+                return profile.record(Stage.CONFIGURATION, () -> configuration);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -5,7 +5,12 @@ import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
 import org.json.simple.JSONObject;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,4 +44,47 @@ public class ApiGatewayProxyRequestTest {
         ApiGatewayProxyRequest actual = new ObjectMapper().readValue(jsonObject.toJSONString(), ApiGatewayProxyRequest.class);
         assertThat(actual).isEqualTo(expected);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldStreamTextBodyAsUtf8() throws IOException {
+        String body = "caf\u00e9 \u20ac \ud83d\ude00";
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(body)
+                .build();
+
+        assertThat(readFully(request.getBodyAsInputStream())).isEqualTo(body.getBytes(StandardCharsets.UTF_8));
+        assertThat(readFully(request.getBodyAsReader())).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldStreamBase64BodyDecoded() throws IOException {
+        String body = "caf\u00e9 \u20ac";
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8)))
+                .withIsBase64Encoded(true)
+                .build();
+
+        assertThat(readFully(request.getBodyAsInputStream())).isEqualTo(body.getBytes(StandardCharsets.UTF_8));
+        assertThat(readFully(request.getBodyAsReader())).isEqualTo(body);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String readFully(Reader in) throws IOException {
+        StringBuilder out = new StringBuilder();
+        char[] buffer = new char[3];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.append(buffer, 0, read);
+        }
+        return out.toString();
+    }
+}
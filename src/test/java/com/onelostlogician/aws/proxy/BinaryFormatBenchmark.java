@@ -0,0 +1,79 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import com.onelostlogician.aws.proxy.BinaryMapperTest.Sample;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+
+import java.util.concurrent.Callable;
+
+import static com.onelostlogician.aws.proxy.BinaryMapperTest.payloadSize;
+import static com.onelostlogician.aws.proxy.BinaryMapperTest.sample;
+import static com.onelostlogician.aws.proxy.BinaryMapperTest.sampleDescriptor;
+import static com.onelostlogician.aws.proxy.BinaryMapperTest.toMessage;
+import static com.onelostlogician.aws.proxy.BinaryMapperTest.toRequest;
+
+/**
+ * Compares payload size and encode/decode time of the JSON, CBOR, MessagePack and protobuf mappers on the
+ * {@link BinaryMapperTest} sample. It is kept out of the test run because timings are not stable enough to assert on;
+ * run it by hand from the test classpath, optionally passing the number of iterations.
+ */
+public class BinaryFormatBenchmark {
+    private static final int DEFAULT_ITERATIONS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        Context context = new LocalContext("binary-format-benchmark", 128, 3_000);
+        Sample sample = sample();
+        Descriptor descriptor = sampleDescriptor();
+        DynamicMessage message = toMessage(descriptor, sample);
+        JsonAcceptMapper<Sample> jsonAcceptMapper = new JsonAcceptMapper<>(Sample.class);
+        JsonContentTypeMapper<Sample> jsonContentTypeMapper = new JsonContentTypeMapper<>(Sample.class);
+        BinaryAcceptMapper<Sample> cborAcceptMapper = BinaryAcceptMapper.cbor(Sample.class);
+        BinaryContentTypeMapper<Sample> cborContentTypeMapper = BinaryContentTypeMapper.cbor(Sample.class);
+        BinaryAcceptMapper<Sample> messagePackAcceptMapper = BinaryAcceptMapper.messagePack(Sample.class);
+        BinaryContentTypeMapper<Sample> messagePackContentTypeMapper = BinaryContentTypeMapper.messagePack(Sample.class);
+        ProtobufAcceptMapper<DynamicMessage> protobufAcceptMapper = new ProtobufAcceptMapper<>();
+        ProtobufContentTypeMapper<DynamicMessage> protobufContentTypeMapper =
+                new ProtobufContentTypeMapper<>(DynamicMessage.getDefaultInstance(descriptor).getParserForType());
+
+        ApiGatewayProxyResponse json = jsonAcceptMapper.outputToResponse(sample);
+        ApiGatewayProxyResponse cbor = cborAcceptMapper.outputToResponse(sample);
+        ApiGatewayProxyResponse messagePack = messagePackAcceptMapper.outputToResponse(sample);
+        ApiGatewayProxyResponse protobuf = protobufAcceptMapper.outputToResponse(message);
+        ApiGatewayProxyRequest jsonRequest = new ApiGatewayProxyRequestBuilder().withBody(json.getBody()).build();
+        ApiGatewayProxyRequest cborRequest = toRequest(cbor);
+        ApiGatewayProxyRequest messagePackRequest = toRequest(messagePack);
+        ApiGatewayProxyRequest protobufRequest = toRequest(protobuf);
+
+        System.out.printf("%-12s %8s %12s %12s%n", "format", "bytes", "encode ns", "decode ns");
+        report(iterations, "json", json.getBody().length(),
+                () -> jsonAcceptMapper.outputToResponse(sample),
+                () -> jsonContentTypeMapper.toInput(jsonRequest, context));
+        report(iterations, "cbor", payloadSize(cbor),
+                () -> cborAcceptMapper.outputToResponse(sample),
+                () -> cborContentTypeMapper.toInput(cborRequest, context));
+        report(iterations, "msgpack", payloadSize(messagePack),
+                () -> messagePackAcceptMapper.outputToResponse(sample),
+                () -> messagePackContentTypeMapper.toInput(messagePackRequest, context));
+        report(iterations, "protobuf", payloadSize(protobuf),
+                () -> protobufAcceptMapper.outputToResponse(message),
+                () -> protobufContentTypeMapper.toInput(protobufRequest, context));
+    }
+
+    private static void report(int iterations, String format, int bytes, Callable<?> encode, Callable<?> decode) throws Exception {
+        System.out.printf("%-12s %8d %12d %12d%n", format, bytes, time(iterations, encode), time(iterations, decode));
+    }
+
+    private static long time(int iterations, Callable<?> callable) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            callable.call();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            callable.call();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+}
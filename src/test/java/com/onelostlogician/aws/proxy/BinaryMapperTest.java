@@ -0,0 +1,149 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class BinaryMapperTest {
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void shouldRoundTripCbor() throws Exception {
+        ApiGatewayProxyResponse response = BinaryAcceptMapper.cbor(Sample.class).outputToResponse(sample());
+
+        assertThat(response.getIsBase64Encoded()).isTrue();
+        assertThat(response.getHeaders().get(CONTENT_TYPE)).isEqualTo("application/cbor");
+        Sample input = BinaryContentTypeMapper.cbor(Sample.class).toInput(toRequest(response), context);
+        assertThat(input).isEqualToComparingFieldByField(sample());
+    }
+
+    @Test
+    public void shouldRoundTripMessagePack() throws Exception {
+        ApiGatewayProxyResponse response = BinaryAcceptMapper.messagePack(Sample.class).outputToResponse(sample());
+
+        assertThat(response.getHeaders().get(CONTENT_TYPE)).isEqualTo("application/msgpack");
+        Sample input = BinaryContentTypeMapper.messagePack(Sample.class).toInput(toRequest(response), context);
+        assertThat(input).isEqualToComparingFieldByField(sample());
+    }
+
+    @Test
+    public void shouldRoundTripProtobuf() throws Exception {
+        Descriptor descriptor = sampleDescriptor();
+        DynamicMessage message = toMessage(descriptor, sample());
+
+        ApiGatewayProxyResponse response = new ProtobufAcceptMapper<DynamicMessage>().outputToResponse(message);
+
+        assertThat(response.getHeaders().get(CONTENT_TYPE)).isEqualTo("application/x-protobuf");
+        DynamicMessage input = new ProtobufContentTypeMapper<>(DynamicMessage.getDefaultInstance(descriptor).getParserForType())
+                .toInput(toRequest(response), context);
+        assertThat(input).isEqualTo(message);
+    }
+
+    @Test
+    public void shouldRejectBodiesThatAreNotBase64Encoded() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("{}")
+                .build();
+
+        try {
+            BinaryContentTypeMapper.cbor(Sample.class).toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    @Test
+    public void binaryPayloadsShouldBeSmallerThanJson() throws Exception {
+        Sample sample = sample();
+        DynamicMessage message = toMessage(sampleDescriptor(), sample);
+
+        ApiGatewayProxyResponse json = new JsonAcceptMapper<>(Sample.class).outputToResponse(sample);
+        ApiGatewayProxyResponse cbor = BinaryAcceptMapper.cbor(Sample.class).outputToResponse(sample);
+        ApiGatewayProxyResponse messagePack = BinaryAcceptMapper.messagePack(Sample.class).outputToResponse(sample);
+        ApiGatewayProxyResponse protobuf = new ProtobufAcceptMapper<DynamicMessage>().outputToResponse(message);
+
+        assertThat(payloadSize(cbor)).isLessThan(json.getBody().length());
+        assertThat(payloadSize(messagePack)).isLessThan(json.getBody().length());
+        assertThat(payloadSize(protobuf)).isLessThan(json.getBody().length());
+    }
+
+    static int payloadSize(ApiGatewayProxyResponse response) {
+        return Base64.getDecoder().decode(response.getBody()).length;
+    }
+
+    static ApiGatewayProxyRequest toRequest(ApiGatewayProxyResponse response) {
+        return new ApiGatewayProxyRequestBuilder()
+                .withBody(response.getBody())
+                .withIsBase64Encoded(response.getIsBase64Encoded())
+                .build();
+    }
+
+    static Descriptor sampleDescriptor() throws Exception {
+        DescriptorProto sample = DescriptorProto.newBuilder()
+                .setName("Sample")
+                .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING, FieldDescriptorProto.Label.LABEL_OPTIONAL))
+                .addField(field("count", 2, FieldDescriptorProto.Type.TYPE_INT64, FieldDescriptorProto.Label.LABEL_OPTIONAL))
+                .addField(field("values", 3, FieldDescriptorProto.Type.TYPE_INT64, FieldDescriptorProto.Label.LABEL_REPEATED))
+                .build();
+        FileDescriptorProto file = FileDescriptorProto.newBuilder()
+                .setName("sample.proto")
+                .setSyntax("proto3")
+                .addMessageType(sample)
+                .build();
+        return FileDescriptor.buildFrom(file, new FileDescriptor[0]).findMessageTypeByName("Sample");
+    }
+
+    private static FieldDescriptorProto field(String name, int number, FieldDescriptorProto.Type type, FieldDescriptorProto.Label label) {
+        return FieldDescriptorProto.newBuilder()
+                .setName(name)
+                .setNumber(number)
+                .setType(type)
+                .setLabel(label)
+                .build();
+    }
+
+    static DynamicMessage toMessage(Descriptor descriptor, Sample sample) {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("name"), sample.name)
+                .setField(descriptor.findFieldByName("count"), sample.count);
+        for (Long value : sample.values) {
+            builder.addRepeatedField(descriptor.findFieldByName("values"), value);
+        }
+        return builder.build();
+    }
+
+    static Sample sample() {
+        Sample sample = new Sample();
+        sample.name = "sensor-42";
+        sample.count = 1_234_567L;
+        sample.values = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            sample.values.add(i * 1_000_003L);
+        }
+        return sample;
+    }
+
+    public static class Sample {
+        public String name;
+        public long count;
+        public List<Long> values;
+    }
+}
@@ -0,0 +1,281 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.net.MediaType.create;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class CircuitBreakerTest {
+    private static final MediaType CONTENT_TYPE_1 = create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = create("application", "AcceptType1");
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final List<String> transitions = new ArrayList<>();
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void shouldOpenOnceTheFailureRateIsReached() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+
+        succeedCalls(circuitBreaker, 3);
+        failCalls(circuitBreaker, 2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        failCalls(circuitBreaker, 1);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(transitions).containsExactly("CLOSED->OPEN");
+        try {
+            circuitBreaker.call(() -> "not called");
+            fail("Expected a CircuitBreakerOpenException");
+        }
+        catch (CircuitBreakerOpenException e) {
+            assertThat(e.getCircuitBreakerName()).isEqualTo("inventory");
+            assertThat(e.getRemainingOpenInMillis()).isEqualTo(10_000);
+        }
+    }
+
+    @Test
+    public void shouldOpenOnceTheSlowCallRateIsReached() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker()
+                .withSlowCalls(500, 0.5)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.call(() -> clock.addAndGet(600));
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void shouldCloseAfterSuccessfulTrialCallsAndReopenAfterAFailedOne() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+        failCalls(circuitBreaker, 5);
+
+        clock.addAndGet(10_000);
+        failCalls(circuitBreaker, 1);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        clock.addAndGet(10_000);
+        succeedCalls(circuitBreaker, 2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+
+        // The window starts afresh once closed.
+        failCalls(circuitBreaker, 4);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void shouldRecordErrorsThrownByTrialCalls() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+        failCalls(circuitBreaker, 5);
+        clock.addAndGet(10_000);
+
+        try {
+            circuitBreaker.call(() -> {
+                throw new StackOverflowError();
+            });
+            fail("Expected a StackOverflowError");
+        }
+        catch (StackOverflowError e) {
+            // expected
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        clock.addAndGet(10_000);
+        succeedCalls(circuitBreaker, 2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void shouldIgnoreExceptionsTheFailurePredicateRejects() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker()
+                .withFailurePredicate(exception -> !(exception instanceof IllegalArgumentException))
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                circuitBreaker.call(() -> {
+                    throw new IllegalArgumentException();
+                });
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void shouldNotCountClientErrorsAsFailuresByDefault() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                circuitBreaker.call(() -> {
+                    throw lambdaException(HttpStatus.BAD_REQUEST);
+                });
+            }
+            catch (LambdaException e) {
+                // expected
+            }
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                circuitBreaker.call(() -> {
+                    throw lambdaException(HttpStatus.BAD_GATEWAY);
+                });
+            }
+            catch (LambdaException e) {
+                // expected
+            }
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void shouldAnswerServiceUnavailableWhileOpen() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+        failCalls(circuitBreaker, 5);
+        MethodHandler<Integer, Integer> methodHandler = methodHandler(input -> input);
+        methodHandler.registerCircuitBreaker(circuitBreaker);
+
+        ApiGatewayProxyResponse response = handle(methodHandler, "1");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders()).containsEntry("Retry-After", "10");
+    }
+
+    @Test
+    public void shouldServeTheLastGoodOutputWhileOpen() throws Exception {
+        CircuitBreaker circuitBreaker = circuitBreaker().build();
+        CircuitBreakerFallback<Integer, Integer> fallback = CircuitBreakerFallback.lastGood(input -> input, 10);
+        AtomicLong calls = new AtomicLong();
+
+        MethodHandler<Integer, Integer> healthy = methodHandler(input -> (int) calls.incrementAndGet() * 100 + input);
+        healthy.registerCircuitBreaker(circuitBreaker, fallback);
+        assertThat(handle(healthy, "7").getBody()).isEqualTo("107");
+
+        MethodHandler<Integer, Integer> failing = methodHandler(input -> {
+            throw new IOException("timed out");
+        });
+        failing.registerCircuitBreaker(circuitBreaker, fallback);
+        failing.registerExceptionMap(IOException.class, e -> new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(HttpStatus.BAD_GATEWAY)
+                .build());
+        for (int i = 0; i < 4; i++) {
+            assertThat(handle(failing, "7").getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThat(handle(failing, "7").getBody()).isEqualTo("107");
+        assertThat(handle(failing, "8").getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void shouldShareBreakersByName() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+
+        assertThat(registry.get("inventory")).isSameAs(registry.get("inventory"));
+        assertThat(registry.get("pricing")).isNotSameAs(registry.get("inventory"));
+        assertThat(registry.getAll()).hasSize(2);
+    }
+
+    @Test
+    public void shouldPublishTransitionsInTheEmbeddedMetricFormat() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CircuitBreaker circuitBreaker = circuitBreaker()
+                .withListener(new EmfCircuitBreakerListener("Proxy", new PrintStream(out, true, "UTF-8")))
+                .build();
+
+        failCalls(circuitBreaker, 5);
+
+        JsonNode metric = JsonCodec.OBJECT_MAPPER.readTree(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        JsonNode directive = metric.get("_aws").get("CloudWatchMetrics").get(0);
+        assertThat(directive.get("Namespace").asText()).isEqualTo("Proxy");
+        assertThat(directive.get("Metrics").get(0).get("Name").asText()).isEqualTo("StateTransitions");
+        assertThat(metric.get("CircuitBreaker").asText()).isEqualTo("inventory");
+        assertThat(metric.get("ToState").asText()).isEqualTo("OPEN");
+        assertThat(metric.get("StateTransitions").asInt()).isEqualTo(1);
+        assertThat(metric.get("State").asInt()).isEqualTo(2);
+    }
+
+    private CircuitBreaker.CircuitBreakerBuilder circuitBreaker() {
+        return new CircuitBreaker.CircuitBreakerBuilder("inventory")
+                .withFailureRateThreshold(0.5)
+                .withWindow(10, 5)
+                .withOpenDuration(10_000, 2)
+                .withClock(clock::get)
+                .withListener((circuitBreaker, from, to) -> transitions.add(from + "->" + to));
+    }
+
+    private static void succeedCalls(CircuitBreaker circuitBreaker, int times) throws Exception {
+        for (int i = 0; i < times; i++) {
+            circuitBreaker.call(() -> "ok");
+        }
+    }
+
+    private static void failCalls(CircuitBreaker circuitBreaker, int times) throws Exception {
+        for (int i = 0; i < times; i++) {
+            try {
+                circuitBreaker.call(() -> {
+                    throw new IOException("timed out");
+                });
+            }
+            catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static LambdaException lambdaException(int statusCode) {
+        return new LambdaException(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(statusCode)
+                .build());
+    }
+
+    private interface Handler {
+        Integer handle(Integer input) throws Exception;
+    }
+
+    private static MethodHandler<Integer, Integer> methodHandler(Handler handler) {
+        MethodHandler<Integer, Integer> methodHandler = new MethodHandler<Integer, Integer>() {
+            @Override
+            public Integer handle(Integer input) throws Exception {
+                return handler.handle(input);
+            }
+        };
+        methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> Integer.valueOf(request.getBody()));
+        methodHandler.registerPerAccept(ACCEPT_TYPE_1, output -> new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(HttpStatus.OK)
+                .withBody(output.toString())
+                .build());
+        return methodHandler;
+    }
+
+    private ApiGatewayProxyResponse handle(MethodHandler<Integer, Integer> methodHandler, String body) throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(body)
+                .build();
+        return methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+    }
+}
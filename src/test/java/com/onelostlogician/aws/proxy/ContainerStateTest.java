@@ -0,0 +1,142 @@
+package com.onelostlogician.aws.proxy;
+
+import com.onelostlogician.aws.proxy.ContainerState.Key;
+import com.onelostlogician.aws.proxy.ContainerState.KeyBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ContainerStateTest {
+    private final AtomicLong now = new AtomicLong(0);
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<String> closed = new ArrayList<>();
+
+    @Test
+    public void shouldCreateValueOnceAndReuseIt() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        Key<String> key = key("client", 0, Long.MAX_VALUE);
+
+        assertThat(state.contains(key)).isFalse();
+        String first = state.get(key);
+        String second = state.get(key);
+
+        assertThat(second).isSameAs(first);
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(state.contains(key)).isTrue();
+    }
+
+    @Test
+    public void shouldEvictAndCloseIdleValues() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        Key<String> idle = key("idle", 0, 1_000);
+        Key<String> busy = key("busy", 0, Long.MAX_VALUE);
+        state.get(idle);
+
+        now.set(1_001);
+        state.get(busy);
+
+        assertThat(closed).containsExactly("idle");
+        assertThat(state.contains(idle)).isFalse();
+        state.get(idle);
+        assertThat(created.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedValuesOverCapacity() {
+        ContainerState state = new ContainerState(100, now::get);
+        Key<String> first = key("first", 40, Long.MAX_VALUE);
+        Key<String> second = key("second", 40, Long.MAX_VALUE);
+        Key<String> third = key("third", 40, Long.MAX_VALUE);
+        state.get(first);
+        state.get(second);
+        state.get(first);
+
+        state.get(third);
+
+        assertThat(closed).containsExactly("second");
+        assertThat(state.getWeightInBytes()).isEqualTo(80);
+        assertThat(state.contains(first)).isTrue();
+    }
+
+    @Test
+    public void shouldCloseEverythingOnClose() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        state.get(key("first", 10, Long.MAX_VALUE));
+        state.get(key("second", 10, Long.MAX_VALUE));
+
+        state.close();
+
+        assertThat(closed).containsExactlyInAnyOrder("first", "second");
+        assertThat(state.getWeightInBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldCloseAutoCloseableValuesByDefault() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        AtomicInteger closes = new AtomicInteger();
+        Key<AutoCloseable> key = new KeyBuilder<AutoCloseable>("closeable", () -> closes::incrementAndGet).build();
+        state.get(key);
+
+        state.evict(key);
+
+        assertThat(closes.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotLeakValuesCreatedForEvictedEntries() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        AtomicReference<Key<String>> self = new AtomicReference<>();
+        Key<String> key = new KeyBuilder<String>("racy", () -> {
+            String value = "racy-" + created.incrementAndGet();
+            if (value.equals("racy-1")) {
+                // Stands in for another request evicting the entry while its value is created.
+                state.evict(self.get());
+            }
+            return value;
+        })
+                .withCloseHook(closed::add)
+                .build();
+        self.set(key);
+
+        String value = state.get(key);
+
+        assertThat(value).isEqualTo("racy-2");
+        assertThat(closed).containsExactly("racy-1");
+        assertThat(state.contains(key)).isTrue();
+        assertThat(state.get(key)).isSameAs(value);
+    }
+
+    @Test
+    public void shouldGiveUpWhenEntryIsEvictedOnEveryAttempt() {
+        ContainerState state = new ContainerState(Long.MAX_VALUE, now::get);
+        AtomicReference<Key<String>> self = new AtomicReference<>();
+        Key<String> key = new KeyBuilder<String>("evicts-itself", () -> {
+            state.evict(self.get());
+            return "evicts-itself-" + created.incrementAndGet();
+        })
+                .withCloseHook(closed::add)
+                .build();
+        self.set(key);
+
+        assertThatThrownBy(() -> state.get(key))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("evicts-itself");
+        assertThat(closed).hasSize(created.get());
+        assertThat(state.contains(key)).isFalse();
+    }
+
+    private Key<String> key(String name, long weight, long idleTimeout) {
+        return new KeyBuilder<String>(name, () -> name + "-" + created.incrementAndGet())
+                .withWeight(weight)
+                .withIdleTimeout(idleTimeout)
+                .withCloseHook(value -> closed.add(name))
+                .build();
+    }
+}
@@ -0,0 +1,159 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.HmacSignatureVerifier.HmacSignatureVerifierBuilder;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class HmacSignatureVerifierTest {
+    private static final byte[] SECRET = "It's a Secret to Everybody".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OLD_SECRET = "previous".getBytes(StandardCharsets.US_ASCII);
+    private static final MediaType JSON = MediaType.create("application", "json");
+
+    private final Context context = mock(Context.class);
+    private final HmacSignatureVerifier verifier = new HmacSignatureVerifierBuilder()
+            .withSecret(SECRET)
+            .build();
+
+    @Test
+    public void shouldAcceptAValidSignatureOverATextBody() throws Exception {
+        // The example from the GitHub webhook documentation.
+        String body = "Hello, World!";
+
+        verifier.verify(request(body, false, "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17"));
+        verifier.verify(request(body, false, "SHA256=757107EA0EB2509FC211221CCE984B8A37570B6D7586C22C46F4379C8B043E17"));
+    }
+
+    @Test
+    public void shouldHashTheDecodedBytesOfABase64Body() throws Exception {
+        byte[] body = new byte[20_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 31);
+        }
+
+        verifier.verify(request(Base64.getEncoder().encodeToString(body), true, "sha256=" + hex(hmac(SECRET, body))));
+    }
+
+    @Test
+    public void shouldHashTheUtf8EncodingOfNonAsciiText() throws Exception {
+        String body = "{\"name\":\"Andr\u00e9 \ud83d\ude00\"}";
+
+        verifier.verify(request(body, false, "sha256=" + hex(hmac(SECRET, body.getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    @Test
+    public void shouldRejectMissingMalformedAndWrongSignatures() {
+        String body = "{\"amount\":100}";
+        String valid = hex(hmac(SECRET, body.getBytes(StandardCharsets.UTF_8)));
+
+        assertUnauthorised(request(body, false, null), "No x-signature header");
+        assertUnauthorised(request(body, false, valid), "Malformed signature");
+        assertUnauthorised(request(body, false, "sha256=" + valid.substring(2)), "Malformed signature");
+        assertUnauthorised(request(body, false, "sha256=zz" + valid.substring(2)), "Malformed signature");
+        assertUnauthorised(request("{\"amount\":999}", false, "sha256=" + valid), "Invalid signature");
+    }
+
+    @Test
+    public void shouldAcceptAnyConfiguredSecretAndBase64Signatures() throws Exception {
+        HmacSignatureVerifier rotating = new HmacSignatureVerifierBuilder()
+                .withSecret(SECRET)
+                .withSecret(OLD_SECRET)
+                .withHeader("X-Hub-Signature")
+                .withPrefix("")
+                .withBase64Signature(true)
+                .build();
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-hub-signature", Base64.getEncoder().encodeToString(hmac(OLD_SECRET, body)));
+
+        rotating.verify(new ApiGatewayProxyRequestBuilder().withHeaders(headers).withBody("{}").build());
+    }
+
+    @Test
+    public void shouldRejectBeforeTheConfigurationIsLoaded() {
+        AtomicInteger configurations = new AtomicInteger();
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                configurations.incrementAndGet();
+                return new Configuration() {};
+            }
+        };
+        handler.registerInterceptor(verifier);
+        ApiGatewayProxyRequest request = request("{}", false, "sha256=" + hex(hmac(OLD_SECRET, new byte[] {'{', '}'})));
+        request.setHttpMethod("POST");
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request, context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(configurations.get()).isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownAlgorithmsWhenBuilt() {
+        new HmacSignatureVerifierBuilder()
+                .withSecret(SECRET)
+                .withAlgorithm("HmacNothing")
+                .build();
+    }
+
+    private void assertUnauthorised(ApiGatewayProxyRequest request, String message) {
+        try {
+            verifier.verify(request);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+            assertThat(e.getResponse().getBody()).isEqualTo(message);
+        }
+    }
+
+    private ApiGatewayProxyRequest request(String body, boolean isBase64Encoded, String signature) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, JSON.toString());
+        headers.put(ACCEPT, JSON.toString());
+        if (signature != null) {
+            headers.put("X-Signature", signature);
+        }
+        return new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody(body)
+                .withIsBase64Encoded(isBase64Encoded)
+                .withContext(context)
+                .build();
+    }
+
+    private static byte[] hmac(byte[] secret, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(body);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.google.common.net.MediaType.create;
+import static java.util.Collections.singletonList;
+import static javax.ws.rs.core.Response.Status.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyTest {
+    private static final MediaType CONTENT_TYPE_1 = create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = create("application", "AcceptType1");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ContentTypeMapper<Integer> contentTypeMapper;
+    private AcceptMapper<Integer> acceptMapper;
+    private Context context;
+
+    @Before
+    public void setup() throws Exception {
+        context = mock(Context.class);
+        contentTypeMapper = mock(ContentTypeMapper.class);
+        acceptMapper = mock(AcceptMapper.class);
+        when(contentTypeMapper.toInput(any(), any())).thenReturn(0);
+        when(acceptMapper.outputToResponse(0)).thenReturn(response(CREATED.getStatusCode(), "created"));
+    }
+
+    @Test
+    public void shouldReplayStoredResponseWithoutHandlingAgain() throws Exception {
+        IdempotencyStore store = new InMemoryIdempotencyStore(60_000, 100);
+
+        ApiGatewayProxyResponse first = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        ApiGatewayProxyResponse second = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(first.getStatusCode()).isEqualTo(CREATED.getStatusCode());
+        assertThat(second.getStatusCode()).isEqualTo(CREATED.getStatusCode());
+        assertThat(second.getBody()).isEqualTo("created");
+        verify(contentTypeMapper, times(1)).toInput(any(), any());
+    }
+
+    @Test
+    public void shouldHandleRequestsWithDifferentKeysOrWithoutKey() throws Exception {
+        IdempotencyStore store = new InMemoryIdempotencyStore(60_000, 100);
+
+        methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        methodHandler(store).handle(request("key-2"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        methodHandler(store).handle(request(null), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        verify(contentTypeMapper, times(3)).toInput(any(), any());
+    }
+
+    @Test
+    public void shouldReturnConflictWhileOriginalRequestIsInProgress() throws Exception {
+        IdempotencyStore store = new InMemoryIdempotencyStore(60_000, 100);
+        store.begin("POST /orders key-1");
+
+        ApiGatewayProxyResponse response = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(CONFLICT.getStatusCode());
+        verifyZeroInteractions(contentTypeMapper);
+    }
+
+    @Test
+    public void shouldNotStoreServerErrors() throws Exception {
+        IdempotencyStore store = new InMemoryIdempotencyStore(60_000, 100);
+        when(acceptMapper.outputToResponse(0))
+                .thenReturn(response(INTERNAL_SERVER_ERROR.getStatusCode(), "failed"))
+                .thenReturn(response(CREATED.getStatusCode(), "created"));
+
+        ApiGatewayProxyResponse first = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        ApiGatewayProxyResponse second = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(first.getStatusCode()).isEqualTo(INTERNAL_SERVER_ERROR.getStatusCode());
+        assertThat(second.getStatusCode()).isEqualTo(CREATED.getStatusCode());
+    }
+
+    @Test
+    public void inMemoryStoreShouldEvictOldestEntriesWhenFull() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(60_000, 2);
+        store.complete("key-1", response(OK.getStatusCode(), "1"));
+        store.complete("key-2", response(OK.getStatusCode(), "2"));
+        store.complete("key-3", response(OK.getStatusCode(), "3"));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.begin("key-1").getState()).isEqualTo(IdempotencyRecord.State.ACQUIRED);
+        assertThat(store.begin("key-3").getResponse().getBody()).isEqualTo("3");
+    }
+
+    @Test
+    public void fileStoreShouldReplayAcrossInstances() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        FileIdempotencyStore store = new FileIdempotencyStore(directory, 60_000);
+
+        assertThat(store.begin("key-1").getState()).isEqualTo(IdempotencyRecord.State.ACQUIRED);
+        assertThat(new FileIdempotencyStore(directory, 60_000).begin("key-1").getState()).isEqualTo(IdempotencyRecord.State.IN_PROGRESS);
+        store.complete("key-1", response(CREATED.getStatusCode(), "created"));
+
+        IdempotencyRecord record = new FileIdempotencyStore(directory, 60_000).begin("key-1");
+        assertThat(record.getState()).isEqualTo(IdempotencyRecord.State.COMPLETED);
+        assertThat(record.getResponse().getStatusCode()).isEqualTo(CREATED.getStatusCode());
+        assertThat(record.getResponse().getBody()).isEqualTo("created");
+        assertThat(record.getResponse().getHeaders()).containsEntry("Location", "/orders/1");
+    }
+
+    @Test
+    public void shouldReplayTheWholeBodyOfBodySourceResponses() throws Exception {
+        IdempotencyStore store = new FileIdempotencyStore(temporaryFolder.getRoot().toPath(), 60_000);
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        when(acceptMapper.outputToResponse(0)).thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK.getStatusCode())
+                .withBodySource(RangeBodySource.of(content))
+                .build());
+
+        ApiGatewayProxyResponse first = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        ApiGatewayProxyResponse replayed = methodHandler(store).handle(request("key-1"), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(replayed.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(replayed.getIsBase64Encoded()).isTrue();
+        assertThat(Base64.getDecoder().decode(replayed.getBody())).isEqualTo(content);
+        assertThat(replayed.getBody()).isEqualTo(first.getBody());
+        assertThat(replayed.getHeaders()).containsEntry("Accept-Ranges", "bytes");
+        verify(contentTypeMapper, times(1)).toInput(any(), any());
+    }
+
+    @Test
+    public void fileStoreShouldTakeOverAbandonedClaims() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        FileIdempotencyStore store = new FileIdempotencyStore(directory, 60_000);
+        store.begin("key-1");
+        try (Stream<Path> files = Files.list(directory)) {
+            Path lock = files.findFirst().get();
+            Files.setLastModifiedTime(lock, FileTime.from(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS));
+        }
+
+        assertThat(store.begin("key-1").getState()).isEqualTo(IdempotencyRecord.State.ACQUIRED);
+    }
+
+    @Test
+    public void fileStoreShouldLetOnlyOneContainerTakeOverAnAbandonedClaim() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 50; i++) {
+                String key = "key-" + i;
+                new FileIdempotencyStore(directory, 60_000).begin(key);
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path lock : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".lock"))::iterator) {
+                        Files.setLastModifiedTime(lock, FileTime.from(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS));
+                    }
+                }
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Callable<IdempotencyRecord.State> takeOver = () -> {
+                    FileIdempotencyStore store = new FileIdempotencyStore(directory, 60_000);
+                    barrier.await();
+                    return store.begin(key).getState();
+                };
+                Future<IdempotencyRecord.State> first = executor.submit(takeOver);
+                Future<IdempotencyRecord.State> second = executor.submit(takeOver);
+
+                assertThat(Arrays.asList(first.get(), second.get()))
+                        .containsExactlyInAnyOrder(IdempotencyRecord.State.ACQUIRED, IdempotencyRecord.State.IN_PROGRESS);
+                new FileIdempotencyStore(directory, 60_000).release(key);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SampleMethodHandler methodHandler(IdempotencyStore store) {
+        SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+        methodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper);
+        methodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper);
+        methodHandler.registerIdempotencyStore(store);
+        return methodHandler;
+    }
+
+    private ApiGatewayProxyRequest request(String idempotencyKey) {
+        Map<String, String> headers = new HashMap<>();
+        if (idempotencyKey != null) {
+            headers.put("Idempotency-Key", idempotencyKey);
+        }
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("POST")
+                .withPath("/orders")
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+    }
+
+    private static ApiGatewayProxyResponse response(int statusCode, String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Location", "/orders/1");
+        return new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(statusCode)
+                .withHeaders(headers)
+                .withBody(body)
+                .build();
+    }
+}
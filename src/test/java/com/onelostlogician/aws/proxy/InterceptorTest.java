@@ -0,0 +1,181 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class InterceptorTest {
+    private static final MediaType CONTENT_TYPE_1 = MediaType.create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = MediaType.create("application", "AcceptType1");
+
+    private final List<String> calls = new ArrayList<>();
+    private final Context context = mock(Context.class);
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() {
+        handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                calls.add("getConfiguration");
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.POST, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> {
+                calls.add("toInput");
+                return Integer.valueOf(request.getBody());
+            });
+            methodHandler.registerPerAccept(ACCEPT_TYPE_1, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(OK.getStatusCode())
+                    .withBody(output.toString())
+                    .build());
+            return methodHandler;
+        });
+    }
+
+    @Test
+    public void shouldRunHooksInOrder() {
+        handler.registerInterceptor(new RecordingInterceptor("a", null));
+        handler.registerInterceptor(new RecordingInterceptor("b", null));
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("1"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(calls).containsExactly(
+                "a.beforeConfiguration", "b.beforeConfiguration",
+                "getConfiguration",
+                "a.beforeMapping", "b.beforeMapping",
+                "toInput",
+                "b.afterHandle", "a.afterHandle",
+                "b.afterResponse", "a.afterResponse");
+    }
+
+    @Test
+    public void shouldShortCircuitBeforeConfiguration() {
+        ApiGatewayProxyResponse unauthorised = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(UNAUTHORIZED.getStatusCode())
+                .build();
+        handler.registerInterceptor(new RecordingInterceptor("a", unauthorised));
+        handler.registerInterceptor(new RecordingInterceptor("b", null));
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("1"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(UNAUTHORIZED.getStatusCode());
+        assertThat(response.getHeaders()).containsEntry("Access-Control-Allow-Origin", "*");
+        assertThat(calls).containsExactly("a.beforeConfiguration", "b.afterResponse", "a.afterResponse");
+    }
+
+    @Test
+    public void shouldRunAfterResponseOnErrors() {
+        handler.registerInterceptor(new RecordingInterceptor("a", null));
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("not a number"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(INTERNAL_SERVER_ERROR.getStatusCode());
+        assertThat(calls).endsWith("toInput", "a.afterResponse");
+        assertThat(calls).doesNotContain("a.afterHandle");
+    }
+
+    @Test
+    public void shouldLetAfterHooksReplaceResponse() {
+        handler.registerInterceptor(new Interceptor() {
+            @Override
+            public ApiGatewayProxyResponse afterHandle(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+                response.getHeaders().put("X-Tenant", "tenant-1");
+                return response;
+            }
+        });
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("1"), context);
+
+        assertThat(response.getHeaders()).containsEntry("X-Tenant", "tenant-1");
+    }
+
+    @Test
+    public void shouldKeepResponseWhenAfterResponseFails() {
+        handler.registerInterceptor(new Interceptor() {
+            @Override
+            public ApiGatewayProxyResponse afterResponse(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+                throw new IllegalStateException("Audit log unavailable");
+            }
+        });
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("1"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(response.getBody()).isEqualTo("0");
+        assertThat(response.getHeaders()).containsEntry("Access-Control-Allow-Origin", "*");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectInterceptorsAfterFreeze() {
+        handler.freeze();
+
+        handler.registerInterceptor(new RecordingInterceptor("a", null));
+    }
+
+    private ApiGatewayProxyRequest request(String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("POST")
+                .withHeaders(headers)
+                .withContext(context)
+                .withBody(body)
+                .build();
+    }
+
+    private class RecordingInterceptor implements Interceptor {
+        private final String name;
+        private final ApiGatewayProxyResponse shortCircuit;
+
+        RecordingInterceptor(String name, ApiGatewayProxyResponse shortCircuit) {
+            this.name = name;
+            this.shortCircuit = shortCircuit;
+        }
+
+        @Override
+        public Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) {
+            calls.add(name + ".beforeConfiguration");
+            return Optional.ofNullable(shortCircuit);
+        }
+
+        @Override
+        public Optional<ApiGatewayProxyResponse> beforeMapping(ApiGatewayProxyRequest request, Context context) {
+            calls.add(name + ".beforeMapping");
+            return Optional.empty();
+        }
+
+        @Override
+        public ApiGatewayProxyResponse afterHandle(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+            calls.add(name + ".afterHandle");
+            return response;
+        }
+
+        @Override
+        public ApiGatewayProxyResponse afterResponse(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+            calls.add(name + ".afterResponse");
+            return response;
+        }
+    }
+}
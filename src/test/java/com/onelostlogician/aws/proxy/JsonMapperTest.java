@@ -0,0 +1,102 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.OK;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class JsonMapperTest {
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void shouldMapBodyToInput() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("{\"name\":\"hello\",\"count\":3,\"ignored\":true}")
+                .build();
+
+        Sample input = new JsonContentTypeMapper<>(Sample.class).toInput(request, context);
+
+        assertThat(input.name).isEqualTo("hello");
+        assertThat(input.count).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldMapBase64EncodedBodyToInput() throws Exception {
+        String json = "{\"name\":\"hello\",\"count\":3}";
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)))
+                .withIsBase64Encoded(true)
+                .build();
+
+        Sample input = new JsonContentTypeMapper<>(Sample.class).toInput(request, context);
+
+        assertThat(input.name).isEqualTo("hello");
+        assertThat(input.count).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldReturnBadRequestForMalformedBody() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("{\"name\":")
+                .build();
+
+        try {
+            new JsonContentTypeMapper<>(Sample.class).toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+            assertThat(e.getResponse().getBody()).contains("Malformed JSON body");
+        }
+    }
+
+    @Test
+    public void shouldReturnBadRequestForMissingBody() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder().build();
+        request.setBody(null);
+
+        try {
+            new JsonContentTypeMapper<>(Sample.class).toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+            assertThat(e.getResponse().getBody()).isEqualTo("Malformed JSON body. The request has no body");
+        }
+        try {
+            JsonContentTypeMapper.readTree(request);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    @Test
+    public void shouldMapOutputToResponse() throws Exception {
+        Sample output = new Sample();
+        output.name = "world";
+        output.count = 7;
+
+        ApiGatewayProxyResponse response = new JsonAcceptMapper<>(Sample.class).outputToResponse(output);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(response.getHeaders().get(CONTENT_TYPE)).isEqualTo(MediaType.JSON_UTF_8.toString());
+        assertThat(response.getBody()).isEqualTo("{\"name\":\"world\",\"count\":7}");
+    }
+
+    public static class Sample {
+        public String name;
+        public int count;
+    }
+}
@@ -0,0 +1,227 @@
+package com.onelostlogician.aws.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.onelostlogician.aws.proxy.JwtVerifier.JwtVerifierBuilder;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class JwtVerifierTest {
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private KeyPair rsaKeyPair;
+    private KeyPair ecKeyPair;
+    private String jwks;
+    private AtomicInteger loads;
+    private JwtVerifier verifier;
+
+    @Before
+    public void setup() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        rsaKeyPair = rsa.generateKeyPair();
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        ecKeyPair = ec.generateKeyPair();
+        jwks = jwks(rsaKeyPair, ecKeyPair);
+        loads = new AtomicInteger();
+        verifier = new JwtVerifierBuilder()
+                .withJwksSource(() -> {
+                    loads.incrementAndGet();
+                    return jwks;
+                })
+                .withIssuer("https://issuer.example")
+                .withAudience("orders")
+                .withKeyTimeToLive(0)
+                .build();
+    }
+
+    @Test
+    public void shouldVerifyRsaSignedToken() throws Exception {
+        JsonNode claims = verifier.verify(token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims(3600)));
+
+        assertThat(claims.get("sub").asText()).isEqualTo("user-1");
+    }
+
+    @Test
+    public void shouldVerifyEcdsaSignedToken() throws Exception {
+        JsonNode claims = verifier.verify(token("ES256", "ec-1", ecKeyPair.getPrivate(), claims(3600)));
+
+        assertThat(claims.get("sub").asText()).isEqualTo("user-1");
+    }
+
+    @Test
+    public void shouldSkipSignatureCheckForRepeatedToken() throws Exception {
+        String token = token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims(3600));
+
+        verifier.verify(token);
+        jwks = "{\"keys\":[]}";
+        JsonNode claims = verifier.verify(token);
+
+        assertThat(claims.get("sub").asText()).isEqualTo("user-1");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(verifier.getCachedTokenCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotShareCachedClaimsBetweenCallers() throws Exception {
+        String token = token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims(3600));
+
+        ((ObjectNode) verifier.verify(token)).put("sub", "admin");
+        ((ObjectNode) verifier.verify(token)).put("sub", "admin");
+
+        assertThat(verifier.verify(token).get("sub").asText()).isEqualTo("user-1");
+    }
+
+    @Test
+    public void shouldRejectTamperedToken() throws Exception {
+        String token = token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims(3600));
+        ObjectNode tampered = claims(3600);
+        tampered.put("sub", "admin");
+        String[] parts = token.split("\\.");
+        String tamperedToken = parts[0] + "." + encode(tampered.toString()) + "." + parts[2];
+
+        assertUnauthorised(tamperedToken, "Invalid token signature");
+    }
+
+    @Test
+    public void shouldRejectExpiredToken() throws Exception {
+        assertUnauthorised(token("ES256", "ec-1", ecKeyPair.getPrivate(), claims(-3600)), "Token has expired");
+    }
+
+    @Test
+    public void shouldRejectWrongAudience() throws Exception {
+        ObjectNode claims = claims(3600);
+        claims.put("aud", "payments");
+
+        assertUnauthorised(token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims), "Token has the wrong audience");
+    }
+
+    @Test
+    public void shouldRejectUnknownKeyAndUnsignedTokens() throws Exception {
+        assertUnauthorised(token("RS256", "rsa-2", rsaKeyPair.getPrivate(), claims(3600)), "Token is not signed by a known key");
+        assertUnauthorised(encode("{\"alg\":\"none\"}") + "." + encode(claims(3600).toString()) + ".", "Unsupported token algorithm");
+    }
+
+    @Test
+    public void interceptorShouldRejectRequestsWithoutBearerToken() throws Exception {
+        JwtInterceptor interceptor = new JwtInterceptor(verifier);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("authorization", "bearer " + token("RS256", "rsa-1", rsaKeyPair.getPrivate(), claims(3600)));
+        ApiGatewayProxyRequest authorised = request("GET", headers);
+
+        assertThat(interceptor.beforeConfiguration(authorised, null)).isEmpty();
+        assertThat(authorised.getAttachment(JwtInterceptor.CLAIMS).get("sub").asText()).isEqualTo("user-1");
+        assertThat(interceptor.beforeConfiguration(request("OPTIONS", new HashMap<>()), null)).isEmpty();
+        try {
+            interceptor.beforeConfiguration(request("GET", new HashMap<>()), null);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(UNAUTHORIZED.getStatusCode());
+        }
+    }
+
+    @Test
+    public void shouldConvertRawEcdsaSignatureToDer() {
+        byte[] raw = new byte[64];
+        raw[31] = 1;
+        raw[32] = (byte) 0x80;
+
+        byte[] der = JwtVerifier.toDer(raw, 32);
+
+        byte[] expectedS = new byte[33];
+        expectedS[1] = (byte) 0x80;
+        assertThat(Arrays.copyOfRange(der, 0, 5)).containsExactly(0x30, 38, 0x02, 1, 1);
+        assertThat(Arrays.copyOfRange(der, 5, 7)).containsExactly(0x02, 33);
+        assertThat(Arrays.copyOfRange(der, 7, der.length)).isEqualTo(expectedS);
+    }
+
+    private void assertUnauthorised(String token, String message) {
+        try {
+            verifier.verify(token);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(UNAUTHORIZED.getStatusCode());
+            assertThat(e.getResponse().getBody()).isEqualTo(message);
+        }
+    }
+
+    private ApiGatewayProxyRequest request(String method, Map<String, String> headers) {
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod(method)
+                .withHeaders(headers)
+                .withContext(mock(com.amazonaws.services.lambda.runtime.Context.class))
+                .build();
+    }
+
+    private static ObjectNode claims(long expiresInSeconds) {
+        ObjectNode claims = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        claims.put("sub", "user-1");
+        claims.put("iss", "https://issuer.example");
+        claims.putArray("aud").add("orders");
+        claims.put("exp", System.currentTimeMillis() / 1000 + expiresInSeconds);
+        return claims;
+    }
+
+    private static String token(String algorithm, String keyId, PrivateKey key, ObjectNode claims) throws Exception {
+        String signingInput = encode("{\"alg\":\"" + algorithm + "\",\"kid\":\"" + keyId + "\"}") + "." + encode(claims.toString());
+        Signature signer = Signature.getInstance(algorithm.startsWith("RS") ? "SHA256withRSA" : "SHA256withECDSAinP1363Format");
+        signer.initSign(key);
+        signer.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + BASE64_URL.encodeToString(signer.sign());
+    }
+
+    private static String jwks(KeyPair rsaKeyPair, KeyPair ecKeyPair) {
+        RSAPublicKey rsa = (RSAPublicKey) rsaKeyPair.getPublic();
+        ECPublicKey ec = (ECPublicKey) ecKeyPair.getPublic();
+        ObjectNode jwks = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        ObjectNode rsaJwk = jwks.putArray("keys").addObject();
+        rsaJwk.put("kty", "RSA");
+        rsaJwk.put("kid", "rsa-1");
+        rsaJwk.put("n", unsigned(rsa.getModulus(), 0));
+        rsaJwk.put("e", unsigned(rsa.getPublicExponent(), 0));
+        ObjectNode ecJwk = jwks.withArray("keys").addObject();
+        ecJwk.put("kty", "EC");
+        ecJwk.put("kid", "ec-1");
+        ecJwk.put("crv", "P-256");
+        ecJwk.put("x", unsigned(ec.getW().getAffineX(), 32));
+        ecJwk.put("y", unsigned(ec.getW().getAffineY(), 32));
+        return jwks.toString();
+    }
+
+    private static String unsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        int start = bytes[0] == 0 && bytes.length > 1 ? 1 : 0;
+        int size = Math.max(length, bytes.length - start);
+        byte[] padded = new byte[size];
+        System.arraycopy(bytes, start, padded, size - (bytes.length - start), bytes.length - start);
+        return BASE64_URL.encodeToString(padded);
+    }
+
+    private static String encode(String json) {
+        return BASE64_URL.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -184,7 +184,7 @@ public class LambdaProxyHandlerTest {
                 .build();
         Map<String, String> responseHeaders = new ConcurrentHashMap<>();
         responseHeaders.put(someHeader, someValue);
-        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context))
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
                 .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                         .withStatusCode(OK.getStatusCode())
                         .withHeaders(responseHeaders)
@@ -216,7 +216,7 @@ public class LambdaProxyHandlerTest {
         responseHeaders.put(someHeader, someValue);
         List<MediaType> contentTypes = asList(CONTENT_TYPE_1, CONTENT_TYPE_2);
         List<MediaType> acceptTypes = asList(ACCEPT_TYPE_1, ACCEPT_TYPE_2);
-        when(methodHandler.handle(eq(request), eq(contentTypes), eq(acceptTypes), eq(context)))
+        when(methodHandler.handle(eq(request), eq(contentTypes), eq(acceptTypes), eq((String) null), eq(context)))
                 .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                         .withStatusCode(OK.getStatusCode())
                         .withHeaders(responseHeaders)
@@ -225,7 +225,30 @@ public class LambdaProxyHandlerTest {
 
         handler.handleRequest(request, context);
 
-        verify(methodHandler).handle(request, contentTypes, acceptTypes, context);
+        verify(methodHandler).handle(request, contentTypes, acceptTypes, null, context);
+    }
+
+    @Test
+    public void shouldPassContentEncodingToMethodHandler() throws Exception {
+        Map<String, String> requestHeaders = new ConcurrentHashMap<>();
+        requestHeaders.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        requestHeaders.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        requestHeaders.put("CONTENT-encoding", "gzip");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod(METHOD)
+                .withHeaders(requestHeaders)
+                .withContext(context)
+                .build();
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), "gzip", context))
+                .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(OK.getStatusCode())
+                        .build());
+        handler.registerMethodHandler(METHOD, c -> methodHandler);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request, context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        verify(methodHandler).handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), "gzip", context);
     }
 
     @Test
@@ -250,7 +273,7 @@ public class LambdaProxyHandlerTest {
         responseHeaders.put(someHeader, someValue);
         List<MediaType> contentTypes = asList(contentType, CONTENT_TYPE_2);
         List<MediaType> acceptTypes = asList(ACCEPT_TYPE_1, ACCEPT_TYPE_2);
-        when(methodHandler.handle(request, contentTypes, acceptTypes, context)
+        when(methodHandler.handle(request, contentTypes, acceptTypes, null, context)
         )
         .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                 .withStatusCode(OK.getStatusCode())
@@ -260,7 +283,7 @@ public class LambdaProxyHandlerTest {
 
         handler.handleRequest(request, context);
 
-        verify(methodHandler).handle(request, contentTypes, acceptTypes, context);
+        verify(methodHandler).handle(request, contentTypes, acceptTypes, null, context);
     }
 
     @Test
@@ -278,7 +301,7 @@ public class LambdaProxyHandlerTest {
                 .build();
         Map<String, String> responseHeaders = new ConcurrentHashMap<>();
         responseHeaders.put(someHeader, someValue);
-        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context))
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
                 .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                         .withStatusCode(OK.getStatusCode())
                         .withHeaders(responseHeaders)
@@ -318,7 +341,7 @@ public class LambdaProxyHandlerTest {
         int lineNumber2 = 2;
         expectedStackTrace[1] = new StackTraceElement(declaringClass2, methodName2, fileName2, lineNumber2);
         cause.setStackTrace(expectedStackTrace);
-        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context))
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
                 .thenThrow(new RuntimeException(message, cause));
         handler.registerMethodHandler(METHOD, c -> methodHandler);
 
@@ -566,7 +589,7 @@ public class LambdaProxyHandlerTest {
         responseHeaders.put(someHeader, someValue);
         String accessControlAllowOriginKey = "Access-Control-Allow-Origin";
         String accessControlAllowOriginValue = "*";
-        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context))
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
                 .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                         .withStatusCode(OK.getStatusCode())
                         .withHeaders(responseHeaders)
@@ -595,7 +618,7 @@ public class LambdaProxyHandlerTest {
                 .build();
         Map<String, String> responseHeaders = new ConcurrentHashMap<>();
         responseHeaders.put(someHeader, someValue);
-        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context))
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
                 .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
                         .withStatusCode(OK.getStatusCode())
                         .withHeaders(responseHeaders)
@@ -604,7 +627,70 @@ public class LambdaProxyHandlerTest {
 
         handler.handleRequest(request, context);
 
-        verify(methodHandler).handle(any(), eq(singletonList(CONTENT_TYPE_1)), eq(singletonList(ACCEPT_TYPE_1)), any());
+        verify(methodHandler).handle(any(), eq(singletonList(CONTENT_TYPE_1)), eq(singletonList(ACCEPT_TYPE_1)), any(), any());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectRegistrationAfterFreeze() {
+        handler.registerMethodHandler(METHOD, c -> methodHandler);
+        handler.freeze();
+
+        handler.registerMethodHandler("POST", c -> methodHandler);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFreezeOnFirstRequest() {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod(METHOD)
+                .withHeaders(new ConcurrentHashMap<>())
+                .withContext(context)
+                .build();
+        handler.handleRequest(request, context);
+
+        handler.registerMethodHandler(METHOD, c -> methodHandler);
+    }
+
+    @Test
+    public void shouldDispatchMethodsOutsideTheEnumByName() throws Exception {
+        Map<String, String> headers = new ConcurrentHashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("propfind")
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+        when(methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), null, context))
+                .thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(OK.getStatusCode())
+                        .build());
+        handler.registerMethodHandler("PROPFIND", c -> methodHandler);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request, context);
+        ApiGatewayProxyResponse unregistered = handler.handleRequest(new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("FETCH")
+                .withHeaders(headers)
+                .withContext(context)
+                .build(), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(unregistered.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(unregistered.getBody()).isEqualTo("Lambda cannot handle the method fetch");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectRegistrationOfUnknownMethodAfterFreeze() {
+        handler.freeze();
+
+        handler.registerMethodHandler("PROPFIND", c -> methodHandler);
+    }
+
+    @Test
+    public void shouldParseMethodsIgnoringCase() {
+        assertThat(HttpMethod.parse("get")).isEqualTo(HttpMethod.GET);
+        assertThat(HttpMethod.parse("Options")).isEqualTo(HttpMethod.OPTIONS);
+        assertThat(HttpMethod.parse("GETS")).isNull();
+        assertThat(HttpMethod.parse(null)).isNull();
     }
 
     private class TestLambdaProxyHandler extends LambdaProxyHandler<Configuration> {
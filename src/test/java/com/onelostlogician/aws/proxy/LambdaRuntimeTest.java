@@ -0,0 +1,164 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LambdaRuntimeTest {
+    private static final String REQUEST_ID = "8476a536-e9f4-11e8-9739-2dfe598c3fcd";
+
+    private final Map<String, byte[]> posted = new ConcurrentHashMap<>();
+    private final Map<String, String> errorTypes = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/2018-06-01/runtime/invocation/", this::serve);
+        server.start();
+        handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+    }
+
+    @After
+    public void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldPostTheHandlerResponseForTheInvocation() throws Exception {
+        handler.registerMethodHandler(HttpMethod.GET, configuration -> {
+            throw new IllegalStateException("unused");
+        });
+
+        runtime().processNext();
+
+        JsonNode response = JsonCodec.OBJECT_MAPPER.readTree(posted.get("/2018-06-01/runtime/invocation/" + REQUEST_ID + "/response"));
+        assertThat(response.get("statusCode").asInt()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.get("body").asText()).isEqualTo("Lambda cannot handle the method delete");
+    }
+
+    @Test
+    public void shouldBackOffAndGiveUpWhenTheRuntimeApiIsUnreachable() {
+        server.stop(0);
+        List<Long> pauses = new ArrayList<>();
+        LambdaRuntime runtime = new LambdaRuntime(handler, runtimeApi()) {
+            @Override
+            void pause(long millis) {
+                pauses.add(millis);
+            }
+        };
+
+        runtime.run();
+
+        assertThat(pauses).containsExactly(50L, 100L, 200L, 400L, 800L, 1_600L, 2_000L, 2_000L, 2_000L);
+    }
+
+    @Test
+    public void shouldPostAnErrorWhenTheHandlerThrows() throws Exception {
+        LambdaProxyHandler<Configuration> failing = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            public ApiGatewayProxyResponse handleRequest(ApiGatewayProxyRequest request, Context context) {
+                throw new IllegalStateException("Broken \"handler\"");
+            }
+
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return null;
+            }
+        };
+
+        new LambdaRuntime(failing, runtimeApi()).processNext();
+
+        String path = "/2018-06-01/runtime/invocation/" + REQUEST_ID + "/error";
+        JsonNode error = JsonCodec.OBJECT_MAPPER.readTree(posted.get(path));
+        assertThat(error.get("errorMessage").asText()).isEqualTo("Broken \"handler\"");
+        assertThat(error.get("errorType").asText()).isEqualTo(IllegalStateException.class.getName());
+        assertThat(errorTypes.get(path)).isEqualTo(IllegalStateException.class.getName());
+    }
+
+    @Test
+    public void streamingWriterShouldMatchDataBinding() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/plain; charset=utf-8");
+        headers.put("X-Empty", null);
+        ApiGatewayProxyResponse response = new ApiGatewayProxyResponseBuilder()
+                .withStatusCode(HttpStatus.OK)
+                .withHeaders(headers)
+                .withBody("caf\u00e9 \"quoted\"")
+                .withBase64Encoded(false)
+                .build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        LambdaProxyStreamHandler.writeResponse(response, output);
+
+        JsonNode expected = JsonCodec.OBJECT_MAPPER.readTree(JsonCodec.writerFor(ApiGatewayProxyResponse.class).writeValueAsBytes(response));
+        assertThat(JsonCodec.OBJECT_MAPPER.readTree(output.toByteArray())).isEqualTo(expected);
+    }
+
+    private LambdaRuntime runtime() {
+        return new LambdaRuntime(handler, runtimeApi());
+    }
+
+    private String runtimeApi() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.endsWith("/next")) {
+            body = ("{\"httpMethod\":\"DELETE\",\"path\":\"/orders\",\"headers\":{},\"body\":null,"
+                    + "\"isBase64Encoded\":false}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Lambda-Runtime-Aws-Request-Id", REQUEST_ID);
+            exchange.getResponseHeaders().set("Lambda-Runtime-Deadline-Ms", Long.toString(System.currentTimeMillis() + 3_000));
+        }
+        else {
+            posted.put(path, readFully(exchange.getRequestBody()));
+            String errorType = exchange.getRequestHeaders().getFirst("Lambda-Runtime-Function-Error-Type");
+            if (errorType != null) {
+                errorTypes.put(path, errorType);
+            }
+            body = "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8);
+        }
+        exchange.sendResponseHeaders(202, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.AllocationProfile;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static javax.ws.rs.core.Response.Status.CREATED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class LazyApiGatewayProxyRequestTest {
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void shouldDecodeFieldsLikeThePlainRequest() throws Exception {
+        byte[] event = event("{\"message\":\"caf\u00e9\"}");
+
+        LazyApiGatewayProxyRequest lazy = new LazyApiGatewayProxyRequest(event);
+        ApiGatewayProxyRequest eager = JsonCodec.OBJECT_MAPPER.readValue(event, ApiGatewayProxyRequest.class);
+
+        assertThat(lazy).isEqualTo(eager);
+        assertThat(lazy.getHeaders()).containsEntry("Content-Type", "application/json");
+        assertThat(lazy.getQueryStringParameters()).isNull();
+        assertThat(lazy.getBody()).isEqualTo("{\"message\":\"caf\u00e9\"}");
+        assertThat(lazy.getRequestContext().path("identity").path("sourceIp").asText()).isEqualTo("192.0.2.1");
+    }
+
+    @Test
+    public void shouldPreferValuesThatHaveBeenSet() throws Exception {
+        LazyApiGatewayProxyRequest request = new LazyApiGatewayProxyRequest(event("{}"));
+
+        request.setBody("replaced");
+        request.setBase64Encoded(true);
+
+        assertThat(request.getBody()).isEqualTo("replaced");
+        assertThat(request.getIsBase64Encoded()).isTrue();
+    }
+
+    @Test
+    public void streamHandlerShouldDispatchLazyRequest() throws Exception {
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.POST, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+            methodHandler.registerPerContentType(MediaType.JSON_UTF_8, (request, context) -> request.getBody().length());
+            methodHandler.registerPerAccept(MediaType.JSON_UTF_8, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(CREATED.getStatusCode())
+                    .withBody("{}")
+                    .build());
+            return methodHandler;
+        });
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new LambdaProxyStreamHandler(handler).handleRequest(new ByteArrayInputStream(event("{}")), output, context);
+
+        JsonNode response = JsonCodec.OBJECT_MAPPER.readTree(output.toByteArray());
+        assertThat(response.get("statusCode").asInt()).isEqualTo(CREATED.getStatusCode());
+        assertThat(response.get("isBase64Encoded").asBoolean()).isFalse();
+        assertThat(response.get("headers").get("Access-Control-Allow-Origin").asText()).isEqualTo("*");
+    }
+
+    @Test
+    public void shouldAllocateLessThanEagerDecodingForLargeBodies() throws Exception {
+        Assume.assumeTrue(AllocationProfile.isSupported());
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 1_000_000) {
+            body.append("{\"id\":12345,\"name\":\"item\"},");
+        }
+        byte[] event = event(body.toString());
+        for (int i = 0; i < 50; i++) {
+            JsonCodec.OBJECT_MAPPER.readValue(event, ApiGatewayProxyRequest.class).getHeaders();
+            new LazyApiGatewayProxyRequest(event).getHeaders();
+        }
+
+        long before = AllocationProfile.allocatedBytes();
+        JsonCodec.OBJECT_MAPPER.readValue(event, ApiGatewayProxyRequest.class).getHeaders();
+        long eager = AllocationProfile.allocatedBytes() - before;
+        before = AllocationProfile.allocatedBytes();
+        new LazyApiGatewayProxyRequest(event).getHeaders();
+        long lazy = AllocationProfile.allocatedBytes() - before;
+
+        assertThat(lazy)
+                .as("Bytes allocated to read the headers of a %d byte event: eager %d, lazy %d", event.length, eager, lazy)
+                .isLessThan(eager / 10);
+    }
+
+    private static byte[] event(String body) throws Exception {
+        ObjectNode event = JsonCodec.OBJECT_MAPPER.createObjectNode();
+        event.put("resource", "/orders/{id}");
+        event.put("path", "/orders/1");
+        event.put("httpMethod", "POST");
+        ObjectNode headers = event.putObject("headers");
+        headers.put("Content-Type", "application/json");
+        headers.put("Accept", "application/json");
+        event.putNull("queryStringParameters");
+        event.putObject("pathParameters").put("id", "1");
+        event.putObject("stageVariables").put("stage", "test");
+        event.putObject("requestContext").putObject("identity").put("sourceIp", "192.0.2.1");
+        event.put("body", body);
+        event.put("isBase64Encoded", false);
+        return JsonCodec.OBJECT_MAPPER.writeValueAsBytes(event);
+    }
+}
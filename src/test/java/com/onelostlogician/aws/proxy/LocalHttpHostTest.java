@@ -0,0 +1,137 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Collections.emptyList;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.OK;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalHttpHostTest {
+    private static final MediaType TEXT = MediaType.PLAIN_TEXT_UTF_8.withoutParameters();
+
+    private ExecutorService serverExecutor;
+    private LocalHttpHost host;
+
+    @Before
+    public void setup() throws IOException {
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler("POST", configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(emptyList()) {
+                @Override
+                public Integer handle(Integer input) {
+                    return input * 2;
+                }
+            };
+            methodHandler.registerPerContentType(TEXT, (request, context) ->
+                    Integer.parseInt(request.getBody()) + Integer.parseInt(request.getQueryStringParameters().get("offset")));
+            methodHandler.registerPerAccept(TEXT, output -> {
+                Map<String, String> headers = new HashMap<>();
+                headers.put(CONTENT_TYPE, TEXT.toString());
+                return new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(OK.getStatusCode())
+                        .withHeaders(headers)
+                        .withBody(output.toString())
+                        .build();
+            });
+            return methodHandler;
+        });
+        serverExecutor = Executors.newFixedThreadPool(4);
+        host = new LocalHttpHost(handler, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), serverExecutor);
+        host.start();
+    }
+
+    @After
+    public void tearDown() {
+        host.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void shouldServeConcurrentRequestsThroughHandler() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int value = i;
+                responses.add(clients.submit(() -> post("/double?offset=1", String.valueOf(value), OK.getStatusCode())));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(responses.get(i).get()).isEqualTo(String.valueOf((i + 1) * 2));
+            }
+        }
+        finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReturnHandlerErrors() throws Exception {
+        HttpURLConnection connection = open("/double");
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty(ACCEPT, TEXT.toString());
+
+        assertThat(connection.getResponseCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(read(connection.getErrorStream())).isEqualTo("Lambda cannot handle the method get");
+    }
+
+    private String post(String path, String body, int expectedStatusCode) throws IOException {
+        HttpURLConnection connection = open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty(CONTENT_TYPE, TEXT.toString());
+        connection.setRequestProperty(ACCEPT, TEXT.toString());
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(connection.getResponseCode()).isEqualTo(expectedStatusCode);
+        assertThat(connection.getHeaderField("Access-Control-Allow-Origin")).isEqualTo("*");
+        return read(connection.getInputStream());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        InetSocketAddress address = host.getAddress();
+        URL url = new URL("http", address.getHostString(), address.getPort(), path);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,157 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.GeneratedSample;
+import com.onelostlogician.aws.proxy.fixtures.GeneratedSampleFormMapper;
+import com.onelostlogician.aws.proxy.fixtures.GeneratedSampleJsonMapper;
+import org.junit.Test;
+
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class MapperProcessorTest {
+    private final ObjectMapper referenceMapper = new ObjectMapper();
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void generatedJsonOutputShouldMatchReflectiveMapper() throws Exception {
+        GeneratedSample sample = sample();
+
+        ApiGatewayProxyResponse response = new GeneratedSampleJsonMapper().outputToResponse(sample);
+
+        assertThat(response.getHeaders().get(CONTENT_TYPE)).isEqualTo(GeneratedSampleJsonMapper.MEDIA_TYPE.toString());
+        assertThat(referenceMapper.readTree(response.getBody())).isEqualTo(referenceMapper.readTree(referenceMapper.writeValueAsString(sample)));
+    }
+
+    @Test
+    public void generatedJsonOutputShouldMatchReflectiveMapperForNulls() throws Exception {
+        GeneratedSample sample = new GeneratedSample();
+
+        ApiGatewayProxyResponse response = new GeneratedSampleJsonMapper().outputToResponse(sample);
+
+        assertThat(referenceMapper.readTree(response.getBody())).isEqualTo(referenceMapper.readTree(referenceMapper.writeValueAsString(sample)));
+    }
+
+    @Test
+    public void generatedJsonInputShouldMatchReflectiveMapper() throws Exception {
+        String body = referenceMapper.writeValueAsString(sample());
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(body.replace("{", "{\"unknown\":{\"nested\":[1,2]},"))
+                .build();
+
+        GeneratedSample input = new GeneratedSampleJsonMapper().toInput(request, context);
+
+        assertThat(referenceMapper.writeValueAsString(input)).isEqualTo(body);
+    }
+
+    @Test
+    public void generatedJsonInputShouldRejectNestedValuesInStringFields() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("{\"name\":{\"count\":5},\"total\":7}")
+                .build();
+
+        try {
+            new GeneratedSampleJsonMapper().toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+            assertThat(e.getResponse().getBody()).isEqualTo("Field name must be a string");
+        }
+    }
+
+    @Test
+    public void generatedJsonInputShouldReturnBadRequestForMalformedBody() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("{\"count\":\"many\"}")
+                .build();
+
+        try {
+            new GeneratedSampleJsonMapper().toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    @Test
+    public void generatedFormOutputShouldMatchReflectiveMapper() throws Exception {
+        GeneratedSample sample = sample();
+
+        ApiGatewayProxyResponse response = new GeneratedSampleFormMapper().outputToResponse(sample);
+
+        assertThat(parseForm(response.getBody())).isEqualTo(referenceForm(sample));
+    }
+
+    @Test
+    public void generatedFormInputShouldMatchReflectiveMapper() throws Exception {
+        GeneratedSample sample = sample();
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody(new GeneratedSampleFormMapper().outputToResponse(sample).getBody())
+                .build();
+
+        GeneratedSample input = new GeneratedSampleFormMapper().toInput(request, context);
+
+        JsonNode actual = referenceMapper.valueToTree(input);
+        JsonNode expected = referenceMapper.valueToTree(sample);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void generatedFormInputShouldReturnBadRequestForInvalidField() throws Exception {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withBody("name=x&enabled=maybe")
+                .build();
+
+        try {
+            new GeneratedSampleFormMapper().toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+            assertThat(e.getResponse().getBody()).isEqualTo("Field enabled must be a boolean");
+        }
+    }
+
+    private static GeneratedSample sample() {
+        GeneratedSample sample = new GeneratedSample();
+        sample.name = "a name & \"quotes\"";
+        sample.count = 3;
+        sample.total = 1234567890123L;
+        sample.setEnabled(true);
+        sample.setRatio(0.25);
+        sample.setWeight(1.5f);
+        return sample;
+    }
+
+    private Map<String, String> referenceForm(GeneratedSample sample) {
+        Map<String, String> form = new HashMap<>();
+        JsonNode tree = referenceMapper.valueToTree(sample);
+        tree.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) {
+                form.put(field.getKey(), field.getValue().asText());
+            }
+        });
+        return form;
+    }
+
+    private static Map<String, String> parseForm(String body) throws Exception {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            form.put(keyValue[0], URLDecoder.decode(keyValue[1], "UTF-8"));
+        }
+        return form;
+    }
+}
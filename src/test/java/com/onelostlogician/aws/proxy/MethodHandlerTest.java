@@ -9,11 +9,22 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.google.common.net.MediaType.create;
 import static com.onelostlogician.aws.proxy.Util.randomiseKeyValues;
@@ -231,4 +242,186 @@ public class MethodHandlerTest {
         assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
         assertThat(response.getBody()).contains("The following required headers are not present: " + requiredHeaders.get(lastElementIndex).toLowerCase());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturnRequestEntityTooLargeBeforeMappingIfBodyExceedsMaximumSize() throws Exception {
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper1);
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper1);
+        sampleMethodHandler.registerMaxBodySize(4);
+        ApiGatewayProxyRequest requestWithLargeBody = new ApiGatewayProxyRequestBuilder()
+                .withContext(context)
+                .withBody("\u00e9\u00e9\u00e9")
+                .build();
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(requestWithLargeBody, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(413);
+        verifyZeroInteractions(contentTypeMapper1);
+    }
+
+    @Test
+    public void shouldMapBodiesWithinMaximumSize() throws Exception {
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper1);
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper1);
+        sampleMethodHandler.registerMaxBodySize(4);
+        ApiGatewayProxyRequest requestWithBase64Body = new ApiGatewayProxyRequestBuilder()
+                .withContext(context)
+                .withBody("AAECAw==")
+                .withIsBase64Encoded(true)
+                .build();
+        int output = 0;
+        when(contentTypeMapper1.toInput(requestWithBase64Body, context)).thenReturn(output);
+        when(acceptMapper1.outputToResponse(output)).thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK.getStatusCode())
+                .build());
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(requestWithBase64Body, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+    }
+
+    @Test
+    public void shouldDecompressGzipBodiesForTheMapper() throws Exception {
+        byte[][] mapped = new byte[1][];
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> {
+            mapped[0] = readFully(request.getBodyAsInputStream());
+            return mapped[0].length;
+        });
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper1);
+        byte[] body = RandomStringUtils.randomAlphanumeric(10_000).getBytes(StandardCharsets.UTF_8);
+        when(acceptMapper1.outputToResponse(0)).thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK.getStatusCode())
+                .build());
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(compressedRequest("gzip", gzip(body)), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(mapped[0]).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldDecompressZlibAndRawDeflateBodies() throws Exception {
+        byte[] body = "{\"orders\":[1,2,3]}".getBytes(StandardCharsets.UTF_8);
+
+        ApiGatewayProxyRequest zlib = compressedRequest("deflate", deflate(body, false));
+        ApiGatewayProxyRequest raw = compressedRequest("Deflate", deflate(body, true));
+
+        assertThat(readFully(zlib.getBodyAsInputStream())).isEqualTo(body);
+        assertThat(readFully(raw.getBodyAsInputStream())).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldReturnRequestEntityTooLargeWhenDecompressedBodyExceedsMaximumSize() throws Exception {
+        ContentTypeMapper<Integer> bodyLengthMapper = (request, context) -> readFully(request.getBodyAsInputStream()).length;
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, bodyLengthMapper);
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper1);
+        sampleMethodHandler.registerMaxBodySize(64 * 1024);
+        byte[] bomb = gzip(new byte[1024 * 1024]);
+        assertThat(bomb.length).isLessThan(64 * 1024);
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(compressedRequest("gzip", bomb), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(413);
+        verifyZeroInteractions(acceptMapper1);
+    }
+
+    public static class Payload {
+        public String value;
+    }
+
+    @Test
+    public void shouldReturnRequestEntityTooLargeFromTheJsonAndBinaryMappers() throws Exception {
+        Payload payload = new Payload();
+        payload.value = new String(new char[1024 * 1024]).replace('\0', 'a');
+        byte[] json = gzip(JsonCodec.OBJECT_MAPPER.writeValueAsBytes(payload));
+        byte[] cbor = gzip(BinaryFormat.CBOR.writerFor(Payload.class).writeValueAsBytes(payload));
+
+        ApiGatewayProxyResponse jsonResponse = payloadHandler(new JsonContentTypeMapper<>(Payload.class))
+                .handle(compressedRequest("gzip", json), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        ApiGatewayProxyResponse cborResponse = payloadHandler(BinaryContentTypeMapper.cbor(Payload.class))
+                .handle(compressedRequest("gzip", cbor), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(jsonResponse.getStatusCode()).isEqualTo(413);
+        assertThat(cborResponse.getStatusCode()).isEqualTo(413);
+    }
+
+    @Test
+    public void shouldReportCorruptCompressedBodiesAsSuch() throws Exception {
+        byte[] truncated = gzip("{\"value\":\"abc\"}".getBytes(StandardCharsets.UTF_8));
+        truncated = Arrays.copyOf(truncated, truncated.length - 12);
+
+        ApiGatewayProxyResponse response = payloadHandler(new JsonContentTypeMapper<>(Payload.class))
+                .handle(compressedRequest("gzip", truncated), singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(response.getBody()).startsWith("Malformed compressed body.");
+    }
+
+    private static MethodHandler<Payload, Integer> payloadHandler(ContentTypeMapper<Payload> contentTypeMapper) {
+        MethodHandler<Payload, Integer> methodHandler = new MethodHandler<Payload, Integer>() {
+            @Override
+            public Integer handle(Payload payload) {
+                return payload.value.length();
+            }
+        };
+        methodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper);
+        methodHandler.registerPerAccept(ACCEPT_TYPE_1, output -> new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK.getStatusCode())
+                .build());
+        methodHandler.registerMaxBodySize(64 * 1024);
+        return methodHandler;
+    }
+
+    @Test
+    public void shouldReturnUnsupportedMediaTypeForUnknownOrUnencodedCompressedBodies() throws Exception {
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper1);
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper1);
+        ApiGatewayProxyRequest brotli = compressedRequest("br", new byte[] {1, 2, 3});
+        ApiGatewayProxyRequest notBase64 = compressedRequest("gzip", gzip(new byte[] {1, 2, 3}));
+        notBase64.setBase64Encoded(false);
+
+        ApiGatewayProxyResponse brotliResponse = sampleMethodHandler.handle(brotli, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+        ApiGatewayProxyResponse notBase64Response = sampleMethodHandler.handle(notBase64, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(brotliResponse.getStatusCode()).isEqualTo(UNSUPPORTED_MEDIA_TYPE.getStatusCode());
+        assertThat(notBase64Response.getStatusCode()).isEqualTo(UNSUPPORTED_MEDIA_TYPE.getStatusCode());
+        verifyZeroInteractions(contentTypeMapper1);
+    }
+
+    private ApiGatewayProxyRequest compressedRequest(String contentEncoding, byte[] body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Encoding", contentEncoding);
+        return new ApiGatewayProxyRequestBuilder()
+                .withContext(context)
+                .withHeaders(headers)
+                .withBody(Base64.getEncoder().encodeToString(body))
+                .withIsBase64Encoded(true)
+                .build();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
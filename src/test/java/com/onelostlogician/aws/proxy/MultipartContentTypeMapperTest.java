@@ -0,0 +1,181 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class MultipartContentTypeMapperTest {
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    private final Context context = mock(Context.class);
+    private Path spillDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        spillDirectory = Files.createTempDirectory("multipart-test");
+    }
+
+    @After
+    public void teardown() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.delete(spillDirectory);
+    }
+
+    @Test
+    public void shouldParseFieldsAndSpillLargeFilesToDisk() throws Exception {
+        byte[] file = new byte[5_000];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        write(body, "preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                + "Quarterly \"report\"\r\n--" + BOUNDARY + "\r\n"
+                + "content-disposition: form-data; name=\"upload\"; filename=\"data;1.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n");
+        body.write(file);
+        write(body, "\r\n--" + BOUNDARY + "--\r\nepilogue");
+        MultipartContentTypeMapper mapper = new MultipartContentTypeMapper(1024, spillDirectory);
+
+        MultipartForm form = mapper.toInput(request(body.toByteArray()), context);
+
+        assertThat(form.getParts()).hasSize(2);
+        MultipartForm.Part title = form.getPart("title").get();
+        assertThat(title.isInMemory()).isTrue();
+        assertThat(new String(readFully(title.getInputStream()), StandardCharsets.UTF_8)).isEqualTo("Quarterly \"report\"");
+        MultipartForm.Part upload = form.getPart("upload").get();
+        assertThat(upload.getFilename()).contains("data;1.bin");
+        assertThat(upload.getContentType()).contains("application/octet-stream");
+        assertThat(upload.getHeaders()).containsKey("Content-Disposition");
+        assertThat(upload.getSize()).isEqualTo(file.length);
+        assertThat(upload.isInMemory()).isFalse();
+        assertThat(readFully(upload.getInputStream())).isEqualTo(file);
+        assertThat(spillFiles()).isEqualTo(1);
+
+        form.close();
+
+        assertThat(spillFiles()).isZero();
+    }
+
+    @Test
+    public void shouldFindBoundariesThatStraddleReads() throws Exception {
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 40_000) {
+            value.append("\r\n--").append(BOUNDARY, 0, 10);
+        }
+        String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"field\"\r\n\r\n"
+                + value + "\r\n--" + BOUNDARY + "--";
+        MultipartContentTypeMapper mapper = new MultipartContentTypeMapper(100_000, spillDirectory);
+
+        try (MultipartForm form = mapper.toInput(request(body.getBytes(StandardCharsets.UTF_8)), context)) {
+            byte[] content = readFully(form.getPart("field").get().getInputStream());
+            assertThat(new String(content, StandardCharsets.UTF_8)).isEqualTo(value.toString());
+        }
+    }
+
+    @Test
+    public void shouldRejectTruncatedBodiesAndRemoveSpilledParts() throws Exception {
+        String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"upload\"\r\n\r\n"
+                + new String(new char[4_096]).replace('\0', 'x');
+        MultipartContentTypeMapper mapper = new MultipartContentTypeMapper(16, spillDirectory);
+
+        try {
+            mapper.toInput(request(body.getBytes(StandardCharsets.UTF_8)), context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+        assertThat(spillFiles()).isZero();
+
+        // The base64 encoding breaks only once the part has spilled to disk.
+        String spilled = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"upload\"\r\n\r\n"
+                + new String(new char[100_000]).replace('\0', 'x');
+        String encoded = Base64.getEncoder().encodeToString(spilled.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, "multipart/form-data; boundary=\"" + BOUNDARY + "\"");
+        ApiGatewayProxyRequest invalidBase64 = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody(encoded.substring(0, encoded.length() - 8) + "!!!!" + encoded.substring(encoded.length() - 4))
+                .withIsBase64Encoded(true)
+                .build();
+        try {
+            mapper.toInput(invalidBase64, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+        assertThat(spillFiles()).isZero();
+    }
+
+    @Test
+    public void shouldRejectContentTypesWithoutBoundary() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, "multipart/form-data");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody("")
+                .build();
+
+        try {
+            new MultipartContentTypeMapper().toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private ApiGatewayProxyRequest request(byte[] body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, "multipart/form-data; boundary=\"" + BOUNDARY + "\"");
+        return new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody(Base64.getEncoder().encodeToString(body))
+                .withIsBase64Encoded(true)
+                .build();
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The request pipeline scenarios that the {@code native} profile runs inside a native image. They use no Mockito, whose
+ * run-time proxies a native image cannot define, so every collaborator here is a plain class.
+ */
+public class NativeImageScenarioTest {
+    private static final MediaType JSON = MediaType.create("application", "json");
+
+    private final Context context = new LocalContext("native-image-scenarios", 128, 3_000);
+    private LambdaProxyHandler<Configuration> handler;
+
+    public static class Order {
+        public String item;
+        public int quantity;
+    }
+
+    @Before
+    public void setup() {
+        handler = new LambdaProxyHandler<Configuration>(true) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.POST, configuration -> {
+            MethodHandler<Order, Order> methodHandler = new MethodHandler<Order, Order>(new HashSet<>()) {
+                @Override
+                public Order handle(Order order) {
+                    if (order.quantity <= 0) {
+                        throw new IllegalArgumentException("Quantity must be positive");
+                    }
+                    order.quantity *= 2;
+                    return order;
+                }
+            };
+            methodHandler.registerPerContentType(JSON, new JsonContentTypeMapper<>(Order.class));
+            methodHandler.registerPerAccept(JSON, new JsonAcceptMapper<>(Order.class));
+            methodHandler.registerExceptionMap(IllegalArgumentException.class, e -> new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(HttpStatus.BAD_REQUEST)
+                    .withBody(e.getMessage())
+                    .build());
+            return methodHandler;
+        });
+    }
+
+    @Test
+    public void shouldMapJsonThroughTheHandler() throws Exception {
+        ApiGatewayProxyResponse response = handler.handleRequest(request("POST", JSON, "{\"item\":\"book\",\"quantity\":2}"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JsonNode order = JsonCodec.OBJECT_MAPPER.readTree(response.getBody());
+        assertThat(order.get("item").asText()).isEqualTo("book");
+        assertThat(order.get("quantity").asInt()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldMapRegisteredExceptions() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request("POST", JSON, "{\"item\":\"book\",\"quantity\":0}"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Quantity must be positive");
+    }
+
+    @Test
+    public void shouldRejectUnregisteredMethodsAndMediaTypes() {
+        ApiGatewayProxyResponse unregistered = handler.handleRequest(request("GET", JSON, ""), context);
+        ApiGatewayProxyResponse unsupported = handler.handleRequest(request("POST", MediaType.create("text", "plain"), "book"), context);
+
+        assertThat(unregistered.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(unregistered.getBody()).isEqualTo("Lambda cannot handle the method get");
+        assertThat(unsupported.getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void shouldAnswerCorsPreflightRequests() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Origin", "http://127.0.0.1:8888");
+        headers.put("Access-Control-Request-Method", "POST");
+        headers.put("Access-Control-Request-Headers", "");
+        headers.put(CONTENT_TYPE, JSON.toString());
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("OPTIONS")
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request, context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders()).containsEntry("Access-Control-Allow-Origin", "http://127.0.0.1:8888");
+        assertThat(response.getHeaders()).containsEntry("Access-Control-Allow-Methods", "POST");
+    }
+
+    @Test
+    public void shouldHandleRawEventsThroughTheStreamHandler() throws Exception {
+        String event = "{\"httpMethod\":\"POST\",\"path\":\"/orders\",\"headers\":{\"Content-Type\":\"application/json\","
+                + "\"Accept\":\"application/json\"},\"body\":\"{\\\"item\\\":\\\"pen\\\",\\\"quantity\\\":1}\",\"isBase64Encoded\":false}";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new LambdaProxyStreamHandler(handler).handleRequest(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), output, context);
+
+        JsonNode response = JsonCodec.OBJECT_MAPPER.readTree(output.toByteArray());
+        assertThat(response.get("statusCode").asInt()).isEqualTo(HttpStatus.OK);
+        assertThat(JsonCodec.OBJECT_MAPPER.readTree(response.get("body").asText()).get("quantity").asInt()).isEqualTo(2);
+    }
+
+    private ApiGatewayProxyRequest request(String method, MediaType contentType, String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, contentType.toString());
+        headers.put(ACCEPT, JSON.toString());
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod(method)
+                .withHeaders(headers)
+                .withContext(context)
+                .withBody(body)
+                .build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+public class ParameterBinderTest {
+    private final Context context = mock(Context.class);
+
+    enum Sort {
+        NEWEST, OLDEST
+    }
+
+    static class Search {
+        @PathParam("accountId")
+        private UUID accountId;
+        @QueryParam("limit")
+        @DefaultValue("20")
+        private int limit;
+        @QueryParam("offset")
+        private long offset;
+        @QueryParam("minimumScore")
+        private float minimumScore;
+        @QueryParam("exact")
+        private Boolean exact;
+        @QueryParam("sort")
+        private Sort sort;
+        @QueryParam("tags")
+        private List<String> tags;
+        @QueryParam("ids")
+        private List<Integer> ids;
+        @HeaderParam("X-Request-Id")
+        private String requestId;
+
+        private Search() {}
+    }
+
+    static class Comment {
+        @PathParam("postId")
+        long postId;
+        @FormParam("text")
+        String text;
+        @FormParam("rating")
+        @DefaultValue("3")
+        int rating;
+    }
+
+    @Test
+    public void shouldBindTypedParameters() throws Exception {
+        UUID accountId = UUID.randomUUID();
+        Map<String, String> pathParameters = new HashMap<>();
+        pathParameters.put("accountId", accountId.toString());
+        Map<String, String> query = new HashMap<>();
+        query.put("offset", "40");
+        query.put("minimumScore", "0.5");
+        query.put("exact", "TRUE");
+        query.put("sort", "OLDEST");
+        query.put("tags", "red, green");
+        query.put("ids", "1,2,3");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-request-id", "abc");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .build();
+        request.setPathParameters(pathParameters);
+        request.setQueryStringParameters(query);
+
+        Search search = new ParameterBinder<>(Search.class).toInput(request, context);
+
+        assertThat(search.accountId).isEqualTo(accountId);
+        assertThat(search.limit).isEqualTo(20);
+        assertThat(search.offset).isEqualTo(40L);
+        assertThat(search.minimumScore).isEqualTo(0.5f);
+        assertThat(search.exact).isTrue();
+        assertThat(search.sort).isEqualTo(Sort.OLDEST);
+        assertThat(search.tags).containsExactly("red", "green");
+        assertThat(search.ids).containsExactly(1, 2, 3);
+        assertThat(search.requestId).isEqualTo("abc");
+    }
+
+    @Test
+    public void shouldReportEveryInvalidParameterInOneBadRequest() throws Exception {
+        Map<String, String> query = new HashMap<>();
+        query.put("limit", "ten");
+        query.put("sort", "RANDOM");
+        query.put("ids", "1,two");
+        query.put("minimumScore", "0.1");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder().build();
+        request.setPathParameters(new HashMap<>());
+        request.setQueryStringParameters(query);
+
+        try {
+            new ParameterBinder<>(Search.class).toInput(request, context);
+            fail("Expected a LambdaException");
+        }
+        catch (LambdaException e) {
+            assertThat(e.getResponse().getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+            assertThat(asList(e.getResponse().getBody().split("; "))).containsExactlyInAnyOrder(
+                    "Invalid request: query parameter limit must be an integer",
+                    "query parameter offset is required",
+                    "query parameter sort must be one of NEWEST, OLDEST",
+                    "query parameter ids values must be an integer");
+        }
+    }
+
+    @Test
+    public void shouldBindFormParameters() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/x-www-form-urlencoded");
+        Map<String, String> pathParameters = new HashMap<>();
+        pathParameters.put("postId", "7");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody("text=Nice+post%21")
+                .build();
+        request.setPathParameters(pathParameters);
+
+        Comment comment = new ParameterBinder<>(Comment.class).toInput(request, context);
+
+        assertThat(comment.postId).isEqualTo(7L);
+        assertThat(comment.text).isEqualTo("Nice post!");
+        assertThat(comment.rating).isEqualTo(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedFieldTypesAtConstruction() {
+        new ParameterBinder<>(Unsupported.class);
+    }
+
+    static class Unsupported {
+        @QueryParam("when")
+        Object when;
+    }
+}
@@ -0,0 +1,194 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class RangeRequestTest {
+    private static final MediaType CONTENT_TYPE_1 = MediaType.create("application", "ContentType1");
+    private static final MediaType EXPORT = MediaType.create("text", "csv");
+    private static final MediaType TEXT = MediaType.create("text", "plain");
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    private final Context context = mock(Context.class);
+    private final List<long[]> produced = new ArrayList<>();
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() {
+        handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.GET, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> 0);
+            methodHandler.registerPerAccept(EXPORT, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(HttpStatus.OK)
+                    .withBodySource(new RecordingSource())
+                    .build());
+            methodHandler.registerPerAccept(TEXT, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(HttpStatus.OK)
+                    .withBody(new String(CONTENT, StandardCharsets.US_ASCII))
+                    .build());
+            return methodHandler;
+        });
+    }
+
+    @Test
+    public void shouldProduceOnlyTheRequestedRange() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request(EXPORT, "bytes=5-9", null), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getHeaders()).containsEntry("Content-Range", "bytes 5-9/20");
+        assertThat(response.getHeaders()).containsEntry("Accept-Ranges", "bytes");
+        assertThat(decode(response)).isEqualTo("56789");
+        assertThat(produced).hasSize(1);
+        assertThat(produced.get(0)).containsExactly(5L, 5L);
+    }
+
+    @Test
+    public void shouldSupportSuffixAndOpenEndedRanges() {
+        assertThat(decode(handler.handleRequest(request(EXPORT, "bytes=-3", null), context))).isEqualTo("hij");
+        assertThat(decode(handler.handleRequest(request(EXPORT, "bytes=17-", null), context))).isEqualTo("hij");
+        assertThat(decode(handler.handleRequest(request(EXPORT, "bytes=18-100", null), context))).isEqualTo("ij");
+    }
+
+    @Test
+    public void shouldProduceTheWholeBodyWithoutRange() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request(EXPORT, null, null), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getIsBase64Encoded()).isTrue();
+        assertThat(response.getHeaders()).containsEntry("ETag", "\"v1\"");
+        assertThat(decode(response)).isEqualTo(new String(CONTENT, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void shouldReturnRangeNotSatisfiableForRangesPastTheEnd() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request(EXPORT, "bytes=20-", null), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getHeaders()).containsEntry("Content-Range", "bytes */20");
+        assertThat(produced).isEmpty();
+    }
+
+    @Test
+    public void shouldIgnoreRangeWhenIfRangeDoesNotMatch() {
+        ApiGatewayProxyResponse stale = handler.handleRequest(request(EXPORT, "bytes=0-1", "\"v0\""), context);
+        ApiGatewayProxyResponse current = handler.handleRequest(request(EXPORT, "bytes=0-1", "\"v1\""), context);
+
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(decode(stale)).hasSize(CONTENT.length);
+        assertThat(current.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(decode(current)).isEqualTo("01");
+    }
+
+    @Test
+    public void shouldIgnoreMalformedAndMultipleRanges() {
+        assertThat(handler.handleRequest(request(EXPORT, "bytes=a-b", null), context).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(handler.handleRequest(request(EXPORT, "bytes=0-1,4-5", null), context).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(handler.handleRequest(request(EXPORT, "items=0-1", null), context).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void shouldSliceBodiesWithoutASource() {
+        ApiGatewayProxyResponse ranged = handler.handleRequest(request(TEXT, "bytes=0-3", null), context);
+        ApiGatewayProxyResponse whole = handler.handleRequest(request(TEXT, null, null), context);
+
+        assertThat(ranged.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(ranged.getIsBase64Encoded()).isFalse();
+        assertThat(ranged.getBody()).isEqualTo("0123");
+        assertThat(whole.getIsBase64Encoded()).isFalse();
+        assertThat(whole.getBody()).isEqualTo(new String(CONTENT, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void shouldKeepTextualBodiesAsTextUnlessTheRangeSplitsACharacter() {
+        handler.registerMethodHandler(HttpMethod.GET, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> 0);
+            methodHandler.registerPerAccept(EXPORT, output -> {
+                Map<String, String> headers = new HashMap<>();
+                headers.put(CONTENT_TYPE, EXPORT.withCharset(StandardCharsets.UTF_8).toString());
+                return new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(HttpStatus.OK)
+                        .withHeaders(headers)
+                        .withBodySource(RangeBodySource.of("caf\u00e9,cr\u00e8me".getBytes(StandardCharsets.UTF_8)))
+                        .build();
+            });
+            return methodHandler;
+        });
+
+        ApiGatewayProxyResponse whole = handler.handleRequest(request(EXPORT, null, null), context);
+        ApiGatewayProxyResponse ranged = handler.handleRequest(request(EXPORT, "bytes=0-4", null), context);
+        ApiGatewayProxyResponse split = handler.handleRequest(request(EXPORT, "bytes=0-3", null), context);
+
+        assertThat(whole.getIsBase64Encoded()).isFalse();
+        assertThat(whole.getBody()).isEqualTo("caf\u00e9,cr\u00e8me");
+        assertThat(ranged.getIsBase64Encoded()).isFalse();
+        assertThat(ranged.getBody()).isEqualTo("caf\u00e9");
+        assertThat(split.getIsBase64Encoded()).isTrue();
+        assertThat(Base64.getDecoder().decode(split.getBody())).hasSize(4);
+    }
+
+    private ApiGatewayProxyRequest request(MediaType accept, String range, String ifRange) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, accept.toString());
+        if (range != null) {
+            headers.put("Range", range);
+        }
+        if (ifRange != null) {
+            headers.put("If-Range", ifRange);
+        }
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("GET")
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+    }
+
+    private static String decode(ApiGatewayProxyResponse response) {
+        return new String(Base64.getDecoder().decode(response.getBody()), StandardCharsets.US_ASCII);
+    }
+
+    private class RecordingSource implements RangeBodySource {
+        @Override
+        public long getLength() {
+            return CONTENT.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out, long offset, long length) throws IOException {
+            produced.add(new long[] {offset, length});
+            out.write(CONTENT, (int) offset, (int) length);
+        }
+
+        @Override
+        public String getEntityTag() {
+            return "v1";
+        }
+    }
+}
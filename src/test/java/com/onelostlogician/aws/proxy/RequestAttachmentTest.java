@@ -0,0 +1,178 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyRequest.AttachmentKey;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class RequestAttachmentTest {
+    private static final AttachmentKey<String> KEY = new AttachmentKey<>("key");
+    private static final MediaType JSON = MediaType.create("application", "json");
+
+    private final Context context = mock(Context.class);
+
+    public static class Order {
+        public String item;
+        public int quantity;
+        public BigDecimal amount;
+    }
+
+    @Test
+    public void shouldLoadEachAttachmentOnce() {
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder().build();
+        AtomicInteger loads = new AtomicInteger();
+
+        String first = request.computeAttachmentIfAbsent(KEY, () -> "value" + loads.incrementAndGet());
+        String second = request.computeAttachmentIfAbsent(KEY, () -> "value" + loads.incrementAndGet());
+
+        assertThat(first).isEqualTo("value1");
+        assertThat(second).isSameAs(first);
+        assertThat(request.getAttachment(KEY)).isSameAs(first);
+        assertThat(request.getAttachment(new AttachmentKey<String>("key"))).isNull();
+    }
+
+    @Test
+    public void shouldShareTheParsedFormBetweenStages() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, "application/x-www-form-urlencoded");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withBody("a=1&b=2")
+                .build();
+
+        Map<String, String> form = GeneratedMapperSupport.readForm(request);
+
+        assertThat(GeneratedMapperSupport.readForm(request)).isSameAs(form);
+        assertThat(form).containsEntry("a", "1").containsEntry("b", "2");
+    }
+
+    @Test
+    public void shouldBindJsonInputFromATreeParsedByAnEarlierStage() {
+        AtomicInteger quantities = new AtomicInteger();
+        LambdaProxyHandler<Configuration> handler = handler(order -> quantities.set(order.quantity));
+        handler.registerInterceptor(new Interceptor() {
+            @Override
+            public Optional<ApiGatewayProxyResponse> beforeMapping(ApiGatewayProxyRequest request, Context context) throws Exception {
+                JsonNode order = JsonContentTypeMapper.readTree(request);
+                if (order.path("quantity").asInt() <= 0) {
+                    return Optional.of(new ApiGatewayProxyResponseBuilder()
+                            .withStatusCode(HttpStatus.BAD_REQUEST)
+                            .withBody("Quantity must be positive")
+                            .build());
+                }
+                // Proves that the mapper reuses the tree rather than parsing the body again.
+                request.setBody("not json");
+                return Optional.empty();
+            }
+        });
+
+        ApiGatewayProxyResponse valid = handler.handleRequest(request("{\"item\":\"book\",\"quantity\":3}"), context);
+        ApiGatewayProxyResponse invalid = handler.handleRequest(request("{\"item\":\"book\",\"quantity\":0}"), context);
+
+        assertThat(valid.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(quantities.get()).isEqualTo(3);
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void shouldKeepDecimalPrecisionWhenBindingFromATree() {
+        List<BigDecimal> amounts = new ArrayList<>();
+        LambdaProxyHandler<Configuration> handler = handler(order -> amounts.add(order.amount));
+        handler.registerInterceptor(new Interceptor() {
+            @Override
+            public Optional<ApiGatewayProxyResponse> beforeMapping(ApiGatewayProxyRequest request, Context context) throws Exception {
+                JsonContentTypeMapper.readTree(request);
+                return Optional.empty();
+            }
+        });
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("{\"item\":\"book\",\"quantity\":1,\"amount\":12345678901234567.891}"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(amounts).containsExactly(new BigDecimal("12345678901234567.891"));
+    }
+
+    @Test
+    public void shouldCloseAttachmentsOnceTheResponseIsProduced() {
+        List<String> closed = new ArrayList<>();
+        AttachmentKey<AutoCloseable> resource = new AttachmentKey<>("resource");
+        LambdaProxyHandler<Configuration> handler = handler(order -> {});
+        handler.registerInterceptor(new Interceptor() {
+            @Override
+            public Optional<ApiGatewayProxyResponse> beforeConfiguration(ApiGatewayProxyRequest request, Context context) {
+                request.setAttachment(resource, () -> closed.add("resource"));
+                request.setAttachment(KEY, "not closeable");
+                return Optional.empty();
+            }
+
+            @Override
+            public ApiGatewayProxyResponse afterResponse(ApiGatewayProxyRequest request, ApiGatewayProxyResponse response) {
+                assertThat(closed).isEmpty();
+                return response;
+            }
+        });
+        ApiGatewayProxyRequest request = request("{\"item\":\"book\",\"quantity\":1}");
+
+        handler.handleRequest(request, context);
+
+        assertThat(closed).containsExactly("resource");
+        assertThat(request.getAttachment(resource)).isNull();
+        assertThat(request.getAttachment(KEY)).isNull();
+    }
+
+    private interface OrderHandler {
+        void handle(Order order);
+    }
+
+    private LambdaProxyHandler<Configuration> handler(OrderHandler orderHandler) {
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.POST, configuration -> {
+            MethodHandler<Order, Order> methodHandler = new MethodHandler<Order, Order>() {
+                @Override
+                public Order handle(Order order) {
+                    orderHandler.handle(order);
+                    return order;
+                }
+            };
+            methodHandler.registerPerContentType(JSON, new JsonContentTypeMapper<>(Order.class));
+            methodHandler.registerPerAccept(JSON, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(HttpStatus.OK)
+                    .build());
+            return methodHandler;
+        });
+        return handler;
+    }
+
+    private ApiGatewayProxyRequest request(String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, JSON.toString());
+        headers.put(ACCEPT, JSON.toString());
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("POST")
+                .withHeaders(headers)
+                .withBody(body)
+                .withContext(context)
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.RequestValidation.RequestValidationBuilder;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static com.google.common.net.MediaType.create;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.OK;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RequestValidationTest {
+    private static final MediaType CONTENT_TYPE_1 = create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = create("application", "AcceptType1");
+
+    private SampleMethodHandler sampleMethodHandler;
+    private ContentTypeMapper<Integer> contentTypeMapper;
+    private Context context;
+
+    @Before
+    public void setup() throws Exception {
+        context = mock(Context.class);
+        contentTypeMapper = mock(ContentTypeMapper.class);
+        AcceptMapper<Integer> acceptMapper = mock(AcceptMapper.class);
+        when(contentTypeMapper.toInput(any(), any())).thenReturn(0);
+        when(acceptMapper.outputToResponse(0)).thenReturn(new ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder()
+                .withStatusCode(OK.getStatusCode())
+                .build());
+        sampleMethodHandler = new SampleMethodHandler(new HashSet<>());
+        sampleMethodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper);
+        sampleMethodHandler.registerPerAccept(ACCEPT_TYPE_1, acceptMapper);
+        sampleMethodHandler.registerRequestValidation(new RequestValidationBuilder()
+                .withHeader("X-Api-Key", true, ParameterType.STRING, 8)
+                .withHeader("X-Request-Id", false, ParameterType.UUID, 36)
+                .withQueryParameter("page", false, ParameterType.INTEGER, 10)
+                .withQueryParameter("debug", false, ParameterType.BOOLEAN, 5)
+                .withPathParameter("ratio", ParameterType.NUMBER, 20)
+                .build());
+    }
+
+    @Test
+    public void shouldPassValidRequestToContentTypeMapper() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-API-key", "secret");
+        headers.put("X-Request-Id", "123e4567-e89b-12d3-a456-426614174000");
+        Map<String, String> queryStringParameters = new HashMap<>();
+        queryStringParameters.put("page", "-12");
+        queryStringParameters.put("debug", "TRUE");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withQueryStringParameters(queryStringParameters)
+                .withPathParameters(singletonMap("ratio", "1.5e3"))
+                .build();
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        verify(contentTypeMapper).toInput(request, context);
+    }
+
+    @Test
+    public void shouldRejectInvalidRequestWithAggregatedMessageBeforeMapping() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Request-Id", "not-a-uuid");
+        Map<String, String> queryStringParameters = new HashMap<>();
+        queryStringParameters.put("page", "12345678901");
+        queryStringParameters.put("debug", "yes");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .withQueryStringParameters(queryStringParameters)
+                .withPathParameters(singletonMap("ratio", "1.5.3"))
+                .build();
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(response.getBody()).isEqualTo("Invalid request: "
+                + "header x-api-key is required; "
+                + "header x-request-id must be a UUID; "
+                + "query parameter page must be at most 10 characters; "
+                + "query parameter debug must be a boolean; "
+                + "path parameter ratio must be a number");
+        verify(contentTypeMapper, never()).toInput(any(), any());
+    }
+
+    @Test
+    public void shouldReportMissingRequiredHeadersInTheSameResponse() throws Exception {
+        SampleMethodHandler methodHandler = new SampleMethodHandler(asList("X-Tenant", "X-Request-Id"));
+        methodHandler.registerPerContentType(CONTENT_TYPE_1, contentTypeMapper);
+        methodHandler.registerPerAccept(ACCEPT_TYPE_1, mock(AcceptMapper.class));
+        methodHandler.registerRequestValidation(new RequestValidationBuilder()
+                .withHeader("X-Request-Id", false, ParameterType.UUID, 36)
+                .withQueryParameter("page", false, ParameterType.INTEGER, 10)
+                .build());
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(new HashMap<>())
+                .withQueryStringParameters(singletonMap("page", "first"))
+                .build();
+
+        ApiGatewayProxyResponse response = methodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(response.getBody()).isEqualTo("Invalid request: "
+                + "header x-tenant is required; "
+                + "header x-request-id is required; "
+                + "query parameter page must be an integer");
+    }
+
+    @Test
+    public void shouldRejectMissingPathParameter() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Api-Key", "secret");
+        ApiGatewayProxyRequest request = new ApiGatewayProxyRequestBuilder()
+                .withHeaders(headers)
+                .build();
+
+        ApiGatewayProxyResponse response = sampleMethodHandler.handle(request, singletonList(CONTENT_TYPE_1), singletonList(ACCEPT_TYPE_1), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST.getStatusCode());
+        assertThat(response.getBody()).isEqualTo("Invalid request: path parameter ratio is required");
+    }
+
+    @Test
+    public void shouldRecogniseParameterTypes() {
+        assertThat(ParameterType.INTEGER.matches("9223372036854775807")).isTrue();
+        assertThat(ParameterType.INTEGER.matches("-9223372036854775808")).isTrue();
+        assertThat(ParameterType.INTEGER.matches("9223372036854775808")).isFalse();
+        assertThat(ParameterType.INTEGER.matches("-")).isFalse();
+        assertThat(ParameterType.NUMBER.matches("-.5")).isTrue();
+        assertThat(ParameterType.NUMBER.matches("1e")).isFalse();
+        assertThat(ParameterType.NUMBER.matches(".")).isFalse();
+        assertThat(ParameterType.BOOLEAN.matches("False")).isTrue();
+        assertThat(ParameterType.UUID.matches("123E4567-E89B-12D3-A456-426614174000")).isTrue();
+        assertThat(ParameterType.UUID.matches("123e4567e89b12d3a456426614174000")).isFalse();
+    }
+
+    private static Map<String, String> singletonMap(String key, String value) {
+        Map<String, String> map = new HashMap<>();
+        map.put(key, value);
+        return map;
+    }
+}
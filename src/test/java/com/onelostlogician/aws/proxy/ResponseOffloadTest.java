@@ -0,0 +1,168 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ResponseOffloadTest {
+    private static final MediaType CONTENT_TYPE_1 = MediaType.create("application", "ContentType1");
+    private static final MediaType EXPORT = MediaType.create("text", "csv");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Context context = mock(Context.class);
+
+    @Test
+    public void shouldRedirectToTheStoredCopyOfAnOversizedBody() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        String body = repeat("r\u00e9sum\u00e9,", 100);
+        LambdaProxyHandler<Configuration> handler = handler(body);
+        handler.registerBlobStore(new FileBlobStore(directory, "https://downloads.example.com/exports"), OffloadMode.REDIRECT, 256);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request(), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SEE_OTHER);
+        assertThat(response.getBody()).isEmpty();
+        assertThat(response.getHeaders()).doesNotContainKey("Content-Type");
+        assertThat(response.getHeaders()).containsEntry("Cache-Control", "no-store");
+        String location = response.getHeaders().get("Location");
+        assertThat(location).startsWith("https://downloads.example.com/exports/");
+        Path stored = directory.resolve(location.substring(location.lastIndexOf('/') + 1));
+        assertThat(new String(Files.readAllBytes(stored), StandardCharsets.UTF_8)).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldAnswerWithAPointerDocument() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        LambdaProxyHandler<Configuration> handler = handler(repeat("x", 300));
+        handler.registerBlobStore(new FileBlobStore(directory, "file:///exports/"), OffloadMode.POINTER, 256);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request(), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders()).containsEntry("Content-Type", "application/json");
+        JsonNode pointer = JsonCodec.OBJECT_MAPPER.readTree(response.getBody());
+        assertThat(pointer.get("location").asText()).startsWith("file:///exports/");
+        assertThat(pointer.get("contentType").asText()).isEqualTo("text/csv");
+        assertThat(pointer.get("size").asInt()).isEqualTo(300);
+    }
+
+    @Test
+    public void shouldLeaveBodiesWithinTheLimitAlone() throws Exception {
+        BlobStore blobStore = mock(BlobStore.class);
+        LambdaProxyHandler<Configuration> handler = handler(repeat("x", 256));
+        handler.registerBlobStore(blobStore, OffloadMode.REDIRECT, 256);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request(), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(256);
+        verifyZeroInteractions(blobStore);
+    }
+
+    @Test
+    public void shouldMeasureBodiesAsEscapedInTheResponse() throws Exception {
+        BlobStore blobStore = mock(BlobStore.class);
+        when(blobStore.put(any(String.class), any(byte[].class), any(String.class))).thenReturn("https://downloads.example.com/quoted");
+        // 200 characters, but 400 bytes once each quote is escaped.
+        LambdaProxyHandler<Configuration> handler = handler(repeat("\"", 200));
+        handler.registerBlobStore(blobStore, OffloadMode.REDIRECT, 256);
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request(), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SEE_OTHER);
+        assertThat(response.getHeaders()).containsEntry("Location", "https://downloads.example.com/quoted");
+    }
+
+    @Test
+    public void shouldPutObjectsInS3AndPresignTheirUrls() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.generatePresignedUrl(eq("bucket"), eq("exports/key"), any(Date.class)))
+                .thenReturn(new URL("https://bucket.s3.amazonaws.com/exports/key?X-Amz-Signature=abc"));
+        BlobStore blobStore = new S3BlobStore(s3, "bucket", "exports/", 60_000);
+
+        String location = blobStore.put("key", new byte[] {1, 2, 3}, "text/csv");
+
+        assertThat(location).isEqualTo("https://bucket.s3.amazonaws.com/exports/key?X-Amz-Signature=abc");
+        ArgumentCaptor<ObjectMetadata> metadata = ArgumentCaptor.forClass(ObjectMetadata.class);
+        verify(s3).putObject(eq("bucket"), eq("exports/key"), any(InputStream.class), metadata.capture());
+        assertThat(metadata.getValue().getContentLength()).isEqualTo(3L);
+        assertThat(metadata.getValue().getContentType()).isEqualTo("text/csv");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotStoreFilesOutsideTheDirectory() throws Exception {
+        new FileBlobStore(temporaryFolder.getRoot().toPath(), "file:///").put("../escaped", new byte[0], null);
+    }
+
+    private LambdaProxyHandler<Configuration> handler(String body) {
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerMethodHandler(HttpMethod.GET, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>());
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> 0);
+            methodHandler.registerPerAccept(EXPORT, output -> {
+                Map<String, String> headers = new HashMap<>();
+                headers.put("Content-Type", EXPORT.toString());
+                headers.put("Cache-Control", "no-store");
+                return new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(HttpStatus.OK)
+                        .withHeaders(headers)
+                        .withBody(body)
+                        .build();
+            });
+            return methodHandler;
+        });
+        return handler;
+    }
+
+    private ApiGatewayProxyRequest request() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, EXPORT.toString());
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("GET")
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class StaticResponseTest {
+    private static final MediaType JSON = MediaType.create("application", "json");
+    private static final MediaType YAML = MediaType.create("application", "x-yaml");
+
+    private final Context context = mock(Context.class);
+    private final AtomicInteger configurations = new AtomicInteger();
+    private String document;
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() {
+        StringBuilder paths = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            paths.append(i == 0 ? "" : ",").append("\"/resource").append(i).append("\":{}");
+        }
+        document = "{\"openapi\":\"3.0.0\",\"paths\":{" + paths + "}}";
+        handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                configurations.incrementAndGet();
+                return new Configuration() {};
+            }
+        };
+        handler.registerStaticResponse(HttpMethod.GET, "/openapi", new StaticResponse.StaticResponseBuilder()
+                .withMediaType(JSON)
+                .withHeaders(Collections.singletonMap("Cache-Control", "max-age=300"))
+                .withBody(document)
+                .withCompression(true)
+                .build());
+        handler.registerStaticResponse(HttpMethod.GET, "/openapi", new StaticResponse.StaticResponseBuilder()
+                .withMediaType(YAML)
+                .withBody("openapi: 3.0.0\n")
+                .build());
+        handler.registerStaticResponse(HttpMethod.GET, "/health", new StaticResponse.StaticResponseBuilder()
+                .withMediaType(JSON)
+                .withJsonBody(Collections.singletonMap("status", "UP"))
+                .build());
+    }
+
+    @Test
+    public void shouldServeWithoutConfigurationOrMethodHandler() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request("/health", null, null, null), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("{\"status\":\"UP\"}");
+        assertThat(response.getIsBase64Encoded()).isFalse();
+        assertThat(response.getHeaders()).containsEntry("Content-Type", "application/json");
+        assertThat(response.getHeaders()).containsKey("ETag");
+        assertThat(configurations.get()).isZero();
+    }
+
+    @Test
+    public void shouldNegotiateTheMediaType() {
+        ApiGatewayProxyResponse yaml = handler.handleRequest(request("/openapi", "application/x-yaml, application/json", null, null), context);
+        ApiGatewayProxyResponse json = handler.handleRequest(request("/openapi", "application/*", null, null), context);
+
+        assertThat(yaml.getBody()).isEqualTo("openapi: 3.0.0\n");
+        assertThat(json.getBody()).isEqualTo(document);
+        assertThat(json.getHeaders()).containsEntry("Cache-Control", "max-age=300");
+        assertThat(json.getHeaders()).containsEntry("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    public void shouldServeTheGzippedCopyToClientsThatAcceptIt() throws IOException {
+        ApiGatewayProxyResponse plain = handler.handleRequest(request("/openapi", "application/json", "gzip;q=0, br", null), context);
+        ApiGatewayProxyResponse gzipped = handler.handleRequest(request("/openapi", "application/json", "br, gzip", null), context);
+
+        assertThat(plain.getHeaders()).doesNotContainKey("Content-Encoding");
+        assertThat(gzipped.getHeaders()).containsEntry("Content-Encoding", "gzip");
+        assertThat(gzipped.getIsBase64Encoded()).isTrue();
+        assertThat(gzipped.getBody().length()).isLessThan(document.length());
+        assertThat(gunzip(gzipped.getBody())).isEqualTo(document);
+        assertThat(gzipped.getHeaders().get("ETag")).isNotEqualTo(plain.getHeaders().get("ETag"));
+    }
+
+    @Test
+    public void shouldLetAnExplicitGzipEntryOverrideTheWildcard() {
+        ApiGatewayProxyResponse gzipped = handler.handleRequest(request("/openapi", "application/json", "*;q=0, gzip", null), context);
+        ApiGatewayProxyResponse plain = handler.handleRequest(request("/openapi", "application/json", "*, gzip;q=0", null), context);
+        ApiGatewayProxyResponse wildcard = handler.handleRequest(request("/openapi", "application/json", "br, *", null), context);
+
+        assertThat(gzipped.getHeaders()).containsEntry("Content-Encoding", "gzip");
+        assertThat(plain.getHeaders()).doesNotContainKey("Content-Encoding");
+        assertThat(wildcard.getHeaders()).containsEntry("Content-Encoding", "gzip");
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedForAMatchingEntityTag() {
+        String entityTag = handler.handleRequest(request("/health", null, null, null), context).getHeaders().get("ETag");
+
+        ApiGatewayProxyResponse response = handler.handleRequest(request("/health", null, null, "\"other\", W/" + entityTag), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isEmpty();
+        assertThat(response.getHeaders()).containsEntry("ETag", entityTag);
+    }
+
+    @Test
+    public void shouldFallThroughWhenNoStaticResponseMatches() {
+        ApiGatewayProxyResponse otherPath = handler.handleRequest(request("/other", "application/json", null, null), context);
+        ApiGatewayProxyResponse otherType = handler.handleRequest(request("/health", "text/html", null, null), context);
+
+        assertThat(otherPath.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(otherType.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(configurations.get()).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotRegisterAfterFreezing() {
+        handler.freeze();
+        handler.registerStaticResponse(HttpMethod.GET, "/late", new StaticResponse.StaticResponseBuilder()
+                .withMediaType(JSON)
+                .build());
+    }
+
+    private ApiGatewayProxyRequest request(String path, String accept, String acceptEncoding, String ifNoneMatch) {
+        Map<String, String> headers = new HashMap<>();
+        if (accept != null) {
+            headers.put(ACCEPT, accept);
+        }
+        if (acceptEncoding != null) {
+            headers.put("Accept-Encoding", acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            headers.put("If-None-Match", ifNoneMatch);
+        }
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("GET")
+                .withPath(path)
+                .withHeaders(headers)
+                .withContext(context)
+                .build();
+    }
+
+    private static String gunzip(String body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(body)))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
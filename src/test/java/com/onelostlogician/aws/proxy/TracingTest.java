@@ -0,0 +1,172 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.fixtures.ApiGatewayProxyRequestBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import static java.util.stream.Collectors.toList;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.Response.Status.OK;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TracingTest {
+    private static final MediaType CONTENT_TYPE_1 = MediaType.create("application", "ContentType1");
+    private static final MediaType ACCEPT_TYPE_1 = MediaType.create("application", "AcceptType1");
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    private final List<Span> spans = Collections.synchronizedList(new ArrayList<>());
+    private final List<TraceContext> propagated = new ArrayList<>();
+    private final Context context = mock(Context.class);
+    private LambdaProxyHandler<Configuration> handler;
+
+    @Before
+    public void setup() {
+        handler = newHandler(new Tracer(spans::add, 0));
+    }
+
+    private LambdaProxyHandler<Configuration> newHandler(Tracer tracer) {
+        LambdaProxyHandler<Configuration> handler = new LambdaProxyHandler<Configuration>(false) {
+            @Override
+            protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+                return new Configuration() {};
+            }
+        };
+        handler.registerTracer(tracer);
+        handler.registerMethodHandler(HttpMethod.POST, configuration -> {
+            SampleMethodHandler methodHandler = new SampleMethodHandler(new HashSet<>()) {
+                @Override
+                public Integer handle(Integer input) {
+                    propagated.add(Tracer.currentSpan().getContext());
+                    return input;
+                }
+            };
+            methodHandler.registerPerContentType(CONTENT_TYPE_1, (request, context) -> Integer.valueOf(request.getBody()));
+            methodHandler.registerPerAccept(ACCEPT_TYPE_1, output -> new ApiGatewayProxyResponseBuilder()
+                    .withStatusCode(OK.getStatusCode())
+                    .withBody(output.toString())
+                    .build());
+            return methodHandler;
+        });
+        return handler;
+    }
+
+    @Test
+    public void shouldContinueSampledW3CTrace() {
+        ApiGatewayProxyResponse response = handler.handleRequest(request("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01"), context);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK.getStatusCode());
+        assertThat(spans.stream().map(Span::getName).collect(toList()))
+                .containsExactly("configuration", "negotiation", "input-mapping", "handler", "output-mapping", "POST /orders");
+        Span root = spans.get(spans.size() - 1);
+        assertThat(root.getTraceId()).isEqualTo(TRACE_ID);
+        assertThat(root.getParentSpanId()).isEqualTo("00f067aa0ba902b7");
+        assertThat(root.getAttributes()).containsEntry("http.status_code", "200");
+        assertThat(spans.subList(0, 5)).allMatch(span -> span.getParentSpanId().equals(root.getSpanId()));
+        assertThat(Tracer.currentSpan()).isSameAs(Span.NOOP);
+    }
+
+    @Test
+    public void shouldExposeContextForPropagation() {
+        handler.handleRequest(request("X-Amzn-Trace-Id", "Root=1-5759e988-bd862e3fe1be46a994272793;Parent=53995c3f42cd8ad8;Sampled=1"), context);
+
+        TraceContext downstream = propagated.get(0);
+        Span handlerSpan = spans.stream().filter(span -> span.getName().equals("handler")).findFirst().get();
+        assertThat(downstream.getTraceId()).isEqualTo("5759e988bd862e3fe1be46a994272793");
+        assertThat(downstream.getSpanId()).isEqualTo(handlerSpan.getSpanId());
+        assertThat(downstream.toXRayTraceHeader())
+                .isEqualTo("Root=1-5759e988-bd862e3fe1be46a994272793;Parent=" + handlerSpan.getSpanId() + ";Sampled=1");
+        Map<String, String> headers = new HashMap<>();
+        downstream.inject(headers);
+        assertThat(headers.get("traceparent")).isEqualTo("00-5759e988bd862e3fe1be46a994272793-" + handlerSpan.getSpanId() + "-01");
+    }
+
+    @Test
+    public void shouldRecordNothingForUnsampledRequests() {
+        handler.handleRequest(request("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-00"), context);
+        handler.handleRequest(request("X-Amzn-Trace-Id", "Root=1-5759e988-bd862e3fe1be46a994272793"), context);
+
+        assertThat(spans).isEmpty();
+        assertThat(propagated.get(0).toTraceparent()).isEqualTo("00-" + TRACE_ID + "-00f067aa0ba902b7-00");
+        assertThat(propagated.get(1).getTraceId()).isEqualTo("5759e988bd862e3fe1be46a994272793");
+        assertThat(propagated.get(1).getSpanId()).hasSize(16);
+        assertThat(propagated.get(1).getSampled()).isFalse();
+        assertThat(Tracer.currentSpan()).isSameAs(Span.NOOP);
+    }
+
+    @Test
+    public void shouldStartTracesWithTheCurrentEpochSeconds() {
+        long before = System.currentTimeMillis() / 1000;
+        handler.handleRequest(request("Unrelated", "header"), context);
+        long after = System.currentTimeMillis() / 1000;
+
+        TraceContext started = propagated.get(0);
+        assertThat(started.getSampled()).isFalse();
+        assertThat(Long.parseLong(started.getTraceId().substring(0, 8), 16)).isBetween(before, after);
+        assertThat(started.toXRayTraceHeader()).startsWith("Root=1-" + started.getTraceId().substring(0, 8) + "-");
+    }
+
+    @Test
+    public void batchingExporterShouldWriteJsonLines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BatchingSpanExporter exporter = new BatchingSpanExporter(
+                BatchingSpanExporter.toJsonLines(new PrintStream(out, true, "UTF-8")), 100, 2, 10_000)) {
+            newHandler(new Tracer(exporter, 1)).handleRequest(request("Unrelated", "header"), context);
+            exporter.flush();
+
+            String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertThat(lines).hasSize(6);
+            JsonNode root = JsonCodec.OBJECT_MAPPER.readTree(lines[5]);
+            assertThat(root.get("name").asText()).isEqualTo("POST /orders");
+            assertThat(root.get("traceId").asText()).hasSize(32);
+            assertThat(root.has("parentSpanId")).isFalse();
+            assertThat(root.get("attributes").get("http.method").asText()).isEqualTo("POST");
+            assertThat(exporter.getDroppedSpans()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void batchingExporterFlushShouldNotWaitForADeadWorkerOrAfterClose() throws Exception {
+        BatchingSpanExporter exporter = new BatchingSpanExporter(batch -> {
+            throw new Error("Sink failed");
+        }, 100, 1, 10_000);
+        new Tracer(exporter, 1).startRequest(request("Unrelated", "header")).end();
+
+        assertThat(exporter.flush(200)).isFalse();
+
+        exporter.close();
+        long start = System.nanoTime();
+        assertThat(exporter.flush(10_000)).isFalse();
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+    }
+
+    private ApiGatewayProxyRequest request(String traceHeader, String traceHeaderValue) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(CONTENT_TYPE, CONTENT_TYPE_1.toString());
+        headers.put(ACCEPT, ACCEPT_TYPE_1.toString());
+        headers.put(traceHeader, traceHeaderValue);
+        return new ApiGatewayProxyRequestBuilder()
+                .withHttpMethod("POST")
+                .withResource("/orders")
+                .withHeaders(headers)
+                .withContext(context)
+                .withBody("1")
+                .build();
+    }
+}
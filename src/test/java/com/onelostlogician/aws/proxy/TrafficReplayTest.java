@@ -0,0 +1,146 @@
+package com.onelostlogician.aws.proxy;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.common.net.MediaType;
+import com.onelostlogician.aws.proxy.ApiGatewayProxyResponse.ApiGatewayProxyResponseBuilder;
+import com.onelostlogician.aws.proxy.fixtures.SampleMethodHandler;
+import org.json.simple.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static javax.ws.rs.core.Response.Status.OK;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrafficReplayTest {
+    private static final MediaType TEXT = MediaType.PLAIN_TEXT_UTF_8.withoutParameters();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReportLatencyAndStatusCodesPerRoute() throws Exception {
+        Path events = temporaryFolder.newFile("events.jsonl").toPath();
+        String headers = "{\"Content-Type\":\"text/plain\",\"Accept\":\"text/plain\"}";
+        Files.write(events, asList(
+                "{\"resource\":\"/items\",\"path\":\"/items\",\"httpMethod\":\"POST\",\"headers\":" + headers
+                        + ",\"body\":\"1\",\"isBase64Encoded\":false,\"requestContext\":{\"stage\":\"prod\"}}",
+                "",
+                "{\"resource\":\"/items\",\"path\":\"/items\",\"httpMethod\":\"POST\",\"headers\":" + headers
+                        + ",\"body\":\"2\",\"isBase64Encoded\":false}",
+                "{\"resource\":\"/items/{id}\",\"path\":\"/items/3\",\"httpMethod\":\"DELETE\",\"headers\":" + headers
+                        + ",\"body\":\"\"}"
+        ), StandardCharsets.UTF_8);
+
+        List<ApiGatewayProxyRequest> requests = TrafficReplay.readEvents(events);
+        JSONObject report = new TrafficReplay(new TestLambdaProxyHandler(), 2, 1000, 5).replay(requests).toJson();
+
+        JSONObject routes = (JSONObject) report.get("routes");
+        assertThat(routes.keySet()).containsOnly("POST /items", "DELETE /items/{id}");
+        JSONObject items = (JSONObject) routes.get("POST /items");
+        assertThat(items.get("count")).isEqualTo(2L);
+        assertThat(((JSONObject) items.get("statusCodes")).get("200")).isEqualTo(1L);
+        assertThat(((JSONObject) items.get("statusCodes")).get("500")).isEqualTo(1L);
+        JSONObject total = (JSONObject) report.get("total");
+        assertThat(total.get("count")).isEqualTo(3L);
+        assertThat(((JSONObject) total.get("statusCodes")).get("400")).isEqualTo(1L);
+        assertThat((Double) total.get("p99Millis")).isGreaterThanOrEqualTo((Double) total.get("p50Millis"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ReplayReport.printDiff(report, ReplayReport.parse(report.toJSONString()), new PrintStream(output, true, "UTF-8"));
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).contains("POST /items", "+0.0%");
+    }
+
+    @Test
+    public void shouldCountHandlerExceptionsAsErrors() throws Exception {
+        LambdaProxyHandler<Configuration> handler = new TestLambdaProxyHandler() {
+            @Override
+            public ApiGatewayProxyResponse handleRequest(ApiGatewayProxyRequest request, Context context) {
+                if (request.getPath().equals("/broken")) {
+                    throw new IllegalStateException("Handler failed");
+                }
+                return super.handleRequest(request, context);
+            }
+        };
+        Path events = temporaryFolder.newFile("events.jsonl").toPath();
+        String headers = "{\"Content-Type\":\"text/plain\",\"Accept\":\"text/plain\"}";
+        Files.write(events, asList(
+                "{\"path\":\"/items\",\"httpMethod\":\"POST\",\"headers\":" + headers + ",\"body\":\"1\"}",
+                "{\"path\":\"/broken\",\"httpMethod\":\"POST\",\"headers\":" + headers + ",\"body\":\"1\"}"
+        ), StandardCharsets.UTF_8);
+
+        JSONObject report = new TrafficReplay(handler, 1, 0, 2).replay(TrafficReplay.readEvents(events)).toJson();
+
+        JSONObject broken = (JSONObject) ((JSONObject) report.get("routes")).get("POST /broken");
+        assertThat(broken.get("count")).isEqualTo(1L);
+        assertThat(broken.get("errors")).isEqualTo(1L);
+        assertThat((JSONObject) broken.get("statusCodes")).isEmpty();
+        JSONObject total = (JSONObject) report.get("total");
+        assertThat(total.get("errors")).isEqualTo(1L);
+        assertThat(((JSONObject) total.get("statusCodes")).get("200")).isEqualTo(1L);
+        assertThat(((JSONObject) total.get("statusCodes")).get("503")).isNull();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ReplayReport.print(report, new PrintStream(output, true, "UTF-8"));
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).contains("errors", "POST /broken");
+    }
+
+    @Test
+    public void shouldUseNearestRankPercentiles() {
+        long[] sorted = new long[1000];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+
+        assertThat(ReplayReport.percentile(sorted, 0.5)).isEqualTo(500);
+        assertThat(ReplayReport.percentile(sorted, 0.99)).isEqualTo(990);
+        assertThat(ReplayReport.percentile(sorted, 0.999)).isEqualTo(999);
+        assertThat(ReplayReport.percentile(new long[]{7}, 0.999)).isEqualTo(7);
+        assertThat(ReplayReport.percentile(new long[0], 0.5)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReportRelativeChange() throws Exception {
+        JSONObject baseline = ReplayReport.parse("{\"p99Millis\":10.0}");
+        JSONObject current = ReplayReport.parse("{\"p99Millis\":12.5}");
+
+        assertThat(ReplayReport.change(baseline, current, "p99Millis")).isEqualTo("+25.0%");
+    }
+
+    private static class TestLambdaProxyHandler extends LambdaProxyHandler<Configuration> {
+        TestLambdaProxyHandler() {
+            super(false);
+            registerMethodHandler("POST", configuration -> {
+                SampleMethodHandler methodHandler = new SampleMethodHandler(emptyList()) {
+                    @Override
+                    public Integer handle(Integer input) {
+                        if (input > 1) {
+                            throw new IllegalStateException("Too large");
+                        }
+                        return input;
+                    }
+                };
+                methodHandler.registerPerContentType(TEXT, (request, context) -> Integer.parseInt(request.getBody()));
+                methodHandler.registerPerAccept(TEXT, output -> new ApiGatewayProxyResponseBuilder()
+                        .withStatusCode(OK.getStatusCode())
+                        .withBody(output.toString())
+                        .build());
+                return methodHandler;
+            });
+        }
+
+        @Override
+        protected Configuration getConfiguration(ApiGatewayProxyRequest request, Context context) {
+            return new Configuration() {};
+        }
+    }
+}
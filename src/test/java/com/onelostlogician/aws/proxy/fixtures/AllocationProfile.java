@@ -0,0 +1,66 @@
+package com.onelostlogician.aws.proxy.fixtures;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+public class AllocationProfile {
+    public enum Stage {
+        CONFIGURATION,
+        INPUT_MAPPING,
+        HANDLER,
+        OUTPUT_MAPPING,
+        PIPELINE
+    }
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final long[] bytesPerStage = new long[Stage.values().length];
+    private boolean recording = false;
+
+    public static boolean isSupported() {
+        return THREAD_MX_BEAN.isThreadAllocatedMemorySupported() && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+    }
+
+    public static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public <T> T record(Stage stage, Callable<T> callable) throws Exception {
+        if (!recording) {
+            return callable.call();
+        }
+        long before = allocatedBytes();
+        try {
+            return callable.call();
+        }
+        finally {
+            bytesPerStage[stage.ordinal()] += allocatedBytes() - before;
+        }
+    }
+
+    public long measure(Runnable invocation) {
+        for (int i = 0; i < bytesPerStage.length; i++) {
+            bytesPerStage[i] = 0;
+        }
+        recording = true;
+        long before = allocatedBytes();
+        try {
+            invocation.run();
+        }
+        finally {
+            recording = false;
+        }
+        long total = allocatedBytes() - before;
+        long attributed = 0;
+        for (Stage stage : Stage.values()) {
+            attributed += bytesPerStage[stage.ordinal()];
+        }
+        bytesPerStage[Stage.PIPELINE.ordinal()] = total - attributed;
+        return total;
+    }
+
+    public long getBytes(Stage stage) {
+        return bytesPerStage[stage.ordinal()];
+    }
+}
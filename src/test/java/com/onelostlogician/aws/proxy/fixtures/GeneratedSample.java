@@ -0,0 +1,37 @@
+package com.onelostlogician.aws.proxy.fixtures;
+
+import com.onelostlogician.aws.proxy.GenerateMappers;
+
+@GenerateMappers
+public class GeneratedSample {
+    public String name;
+    public int count;
+    public Long total;
+    private boolean enabled;
+    private double ratio;
+    private Float weight;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public void setRatio(double ratio) {
+        this.ratio = ratio;
+    }
+
+    public Float getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Float weight) {
+        this.weight = weight;
+    }
+}